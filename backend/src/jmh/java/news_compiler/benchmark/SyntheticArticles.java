@@ -0,0 +1,132 @@
+package news_compiler.benchmark;
+
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.Article;
+import news_compiler.entity.Category;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates articles shaped like those sent by the scraper, for the benchmarks.
+ * <p>
+ * Articles are spread over the last 24 hours, across every category and a few dozen sources, with
+ * times in a handful of offsets. The same seed always gives the same articles.
+ */
+public class SyntheticArticles {
+    /** Words titles and bodies are made of */
+    private static final String[] WORDS = {
+            "government", "election", "market", "shares", "climate", "storm", "team", "season", "court",
+            "ruling", "study", "researchers", "company", "report", "minister", "talks", "city", "council",
+            "health", "hospital", "school", "students", "film", "festival", "price", "inflation", "energy",
+            "oil", "border", "police", "investigation", "vote", "senate", "bill", "trade", "tariffs", "space",
+            "launch", "rocket", "game", "victory", "coach", "players", "travel", "airline", "flight", "food",
+            "restaurant", "chef", "opinion", "the", "of", "and", "in", "to", "a", "on", "after", "over", "new"
+    };
+
+    /** Offsets the times of the articles are given in */
+    private static final ZoneOffset[] OFFSETS = {
+            ZoneOffset.UTC, ZoneOffset.ofHours(-5), ZoneOffset.ofHours(1), ZoneOffset.ofHours(9)
+    };
+
+    /** Number of distinct sources */
+    private static final int SOURCES = 40;
+
+    /** Number of words in each title */
+    private static final int TITLE_WORDS = 10;
+
+    /** Number of words in each body */
+    private static final int BODY_WORDS = 120;
+
+    /** Length of the window the articles are spread over, in seconds */
+    private static final int WINDOW_SECONDS = 24 * 60 * 60;
+
+    /**
+     * Generates articles as DTOs.
+     * @param count the number of articles to generate
+     * @param unpublishedShare the share of articles without a time published, from 0 to 1
+     * @param seed the seed of the random generator
+     * @return the articles, in no particular order
+     */
+    public static List<ArticleDto> dtos(int count, double unpublishedShare, long seed) {
+        Random random = new Random(seed);
+        Instant now = Instant.parse("2024-12-01T12:00:00Z");
+        Category[] categories = Category.values();
+
+        List<ArticleDto> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            OffsetDateTime fetched = now.minusSeconds(random.nextInt(WINDOW_SECONDS))
+                    .atOffset(OFFSETS[random.nextInt(OFFSETS.length)]);
+            OffsetDateTime published = random.nextDouble() < unpublishedShare ? null
+                    : fetched.minusSeconds(random.nextInt(WINDOW_SECONDS));
+
+            articles.add(new ArticleDto(
+                    i + 1L,
+                    words(TITLE_WORDS, random) + i,
+                    words(BODY_WORDS, random),
+                    published,
+                    fetched,
+                    "source" + random.nextInt(SOURCES),
+                    "https://example.com/articles/" + i,
+                    "https://example.com/images/" + i + ".jpg",
+                    categories[random.nextInt(categories.length)]
+            ));
+        }
+
+        return articles;
+    }
+
+    /**
+     * Generates articles as entities.
+     * @param count the number of articles to generate
+     * @param unpublishedShare the share of articles without a time published, from 0 to 1
+     * @param seed the seed of the random generator
+     * @return the articles, in no particular order
+     */
+    public static List<Article> articles(int count, double unpublishedShare, long seed) {
+        return dtos(count, unpublishedShare, seed).stream()
+                .map(dto -> new Article(dto.getId(), dto.getTitle(), dto.getBody(), dto.getTimePublished(),
+                        dto.getTimeFetched(), dto.getSource(), dto.getArticleUrl(), dto.getImageUrl(),
+                        dto.getCategory()))
+                .toList();
+    }
+
+    /**
+     * Copies an article, giving its times in another offset.
+     * The copy is equal to the original, but shares none of its fields' instances.
+     * @param article the article to copy
+     * @return the copy
+     */
+    public static ArticleDto copy(ArticleDto article) {
+        return new ArticleDto(
+                article.getId(),
+                new String(article.getTitle()),
+                article.getBody() == null ? null : new String(article.getBody()),
+                article.getTimePublished() == null ? null
+                        : article.getTimePublished().withOffsetSameInstant(ZoneOffset.ofHours(2)),
+                article.getTimeFetched().withOffsetSameInstant(ZoneOffset.ofHours(2)),
+                new String(article.getSource()),
+                new String(article.getArticleUrl()),
+                new String(article.getImageUrl()),
+                article.getCategory()
+        );
+    }
+
+    /**
+     * Draws random words.
+     * @param count the number of words to draw
+     * @param random the source of randomness
+     * @return the words, separated by spaces
+     */
+    private static String words(int count, Random random) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; ++i)
+            words.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+
+        return words.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package news_compiler.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import news_compiler.benchmark.SyntheticArticles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work done on each <code>ArticleDto</code> of the recent feed: sorting them,
+ * serializing them to JSON and comparing them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleDtoBenchmark {
+    /**
+     * Order of the recent feed: most recently published first, articles without a time published
+     * last, then most recently fetched first, then highest ID first.
+     * This was the comparator of <code>ArticleService.getRecentlyFetched</code> before the sort
+     * moved into the database, kept here to weigh sorting in memory against it.
+     */
+    private static final Comparator<ArticleDto> RECENT_ORDER = Comparator
+            .comparing(ArticleDto::getTimePublished, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(ArticleDto::getTimeFetched, Comparator.reverseOrder())
+            .thenComparing(ArticleDto::getId, Comparator.reverseOrder());
+
+    /** Number of articles */
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    /** Articles with their body, a tenth of them without a time published */
+    private List<ArticleDto> articles;
+
+    /** The same articles without their body, as served by the lite endpoints */
+    private List<ArticleDto> liteArticles;
+
+    /** Articles with every field set, as <code>ArticleDto.equals</code> expects */
+    private List<ArticleDto> completeArticles;
+
+    /** Equal copies of the complete articles, with their times in another offset */
+    private List<ArticleDto> copies;
+
+    /** Configured as Spring Boot configures the mapper of the controllers */
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        articles = SyntheticArticles.dtos(size, 0.1, 42);
+        liteArticles = articles.stream()
+                .map(article -> new ArticleDto(article.getId(), article.getTitle(), article.getTimePublished(),
+                        article.getTimeFetched(), article.getSource(), article.getArticleUrl(),
+                        article.getImageUrl(), article.getCategory()))
+                .toList();
+
+        completeArticles = SyntheticArticles.dtos(size, 0, 42);
+        copies = completeArticles.stream().map(SyntheticArticles::copy).toList();
+
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    /** Sorts the articles into the order of the recent feed, including copying the list. */
+    @Benchmark
+    public List<ArticleDto> sortRecent() {
+        List<ArticleDto> sorted = new ArrayList<>(articles);
+        sorted.sort(RECENT_ORDER);
+        return sorted;
+    }
+
+    /** Serializes the articles with their body, as the full endpoints do. */
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(articles);
+    }
+
+    /** Serializes the articles without their body, as the lite endpoints do. */
+    @Benchmark
+    public byte[] serializeLite() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(liteArticles);
+    }
+
+    /** Compares each article to an equal copy, which checks every field. */
+    @Benchmark
+    public int equalsCopy() {
+        int equal = 0;
+        for (int i = 0; i < size; ++i) {
+            if (completeArticles.get(i).equals(copies.get(i)))
+                ++equal;
+        }
+
+        return equal;
+    }
+
+    /** Compares each article to the next one, which differs from the title on. */
+    @Benchmark
+    public int equalsOther() {
+        int equal = 0;
+        for (int i = 0; i < size; ++i) {
+            if (completeArticles.get(i).equals(completeArticles.get((i + 1) % size)))
+                ++equal;
+        }
+
+        return equal;
+    }
+}
@@ -0,0 +1,119 @@
+package news_compiler.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.config.CborConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Weighs the CBOR encoding of the lite article lists against JSON, encoding and decoding them.
+ * <p>
+ * The size of each encoding, as-is and gzipped as the endpoints send it, is printed once per
+ * size before the measurements start.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleWireFormatBenchmark {
+    /** Type the lists are decoded as */
+    private static final TypeReference<List<ArticleDto>> LIST_TYPE = new TypeReference<>() {};
+
+    /** Number of articles */
+    @Param({"1000", "10000"})
+    private int size;
+
+    /** Articles without their body, as served by the lite endpoints */
+    private List<ArticleDto> liteArticles;
+
+    /** Configured as Spring Boot configures the mapper of the controllers */
+    private ObjectMapper jsonMapper;
+
+    /** Configured as the CBOR responses are encoded */
+    private ObjectMapper cborMapper;
+
+    /** The articles encoded as JSON */
+    private byte[] json;
+
+    /** The articles encoded as CBOR */
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        liteArticles = SyntheticArticles.dtos(size, 0.1, 42).stream()
+                .map(article -> new ArticleDto(article.getId(), article.getTitle(), article.getTimePublished(),
+                        article.getTimeFetched(), article.getSource(), article.getArticleUrl(),
+                        article.getImageUrl(), article.getCategory()))
+                .toList();
+
+        jsonMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        cborMapper = CborConfig.cborMapper();
+
+        json = jsonMapper.writeValueAsBytes(liteArticles);
+        cbor = cborMapper.writeValueAsBytes(liteArticles);
+        System.out.printf("%n%d articles: JSON %,d bytes (%,d gzipped), CBOR %,d bytes (%,d gzipped)%n",
+                size, json.length, gzip(json).length, cbor.length, gzip(cbor).length);
+    }
+
+    /** Encodes the articles as JSON. */
+    @Benchmark
+    public byte[] serializeJson() throws IOException {
+        return jsonMapper.writeValueAsBytes(liteArticles);
+    }
+
+    /** Encodes the articles as CBOR. */
+    @Benchmark
+    public byte[] serializeCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(liteArticles);
+    }
+
+    /** Decodes the articles from JSON. */
+    @Benchmark
+    public List<ArticleDto> parseJson() throws IOException {
+        return jsonMapper.readValue(json, LIST_TYPE);
+    }
+
+    /** Decodes the articles from CBOR. */
+    @Benchmark
+    public List<ArticleDto> parseCbor() throws IOException {
+        return cborMapper.readValue(cbor, LIST_TYPE);
+    }
+
+    /**
+     * Compresses bytes as the endpoints do.
+     * @param bytes the bytes to compress
+     * @return the compressed bytes
+     */
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(bytes);
+        }
+
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,84 @@
+package news_compiler.entity;
+
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.dto.ArticleDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures storing and reading the bodies of a set of articles, plain and compressed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleBodyCodecBenchmark {
+    /** Number of articles */
+    @Param({"1000", "10000"})
+    private int size;
+
+    /** The body of each article */
+    private List<String> bodies;
+
+    /** The bodies encoded as plain UTF-8 */
+    private List<byte[]> plain;
+
+    /** The bodies encoded compressed */
+    private List<byte[]> compressed;
+
+    @Setup
+    public void setUp() {
+        bodies = SyntheticArticles.dtos(size, 0.1, 42).stream()
+                .map(ArticleDto::getBody)
+                .toList();
+
+        plain = bodies.stream().map(body -> ArticleBodyCodec.encode(body, false)).toList();
+        compressed = bodies.stream().map(body -> ArticleBodyCodec.encode(body, true)).toList();
+        System.out.printf("%n%d bodies: plain %,d bytes, compressed %,d bytes%n",
+                size, plain.stream().mapToLong(body -> body.length).sum(),
+                compressed.stream().mapToLong(body -> body.length).sum());
+    }
+
+    /** Encodes every body as plain UTF-8. */
+    @Benchmark
+    public void encodePlain(Blackhole blackhole) {
+        for (String body : bodies)
+            blackhole.consume(ArticleBodyCodec.encode(body, false));
+    }
+
+    /** Encodes every body compressed. */
+    @Benchmark
+    public void encodeCompressed(Blackhole blackhole) {
+        for (String body : bodies)
+            blackhole.consume(ArticleBodyCodec.encode(body, true));
+    }
+
+    /** Decodes every body stored as plain UTF-8. */
+    @Benchmark
+    public void decodePlain(Blackhole blackhole) {
+        for (byte[] body : plain)
+            blackhole.consume(ArticleBodyCodec.decode(body));
+    }
+
+    /** Decodes every body stored compressed. */
+    @Benchmark
+    public void decodeCompressed(Blackhole blackhole) {
+        for (byte[] body : compressed)
+            blackhole.consume(ArticleBodyCodec.decode(body));
+    }
+}
@@ -0,0 +1,58 @@
+package news_compiler.mapper;
+
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.Article;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping articles between entities and DTOs, as done for every article read or written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleMapperBenchmark {
+    /** Number of articles */
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    /** Articles as entities */
+    private List<Article> articles;
+
+    /** The same articles as DTOs */
+    private List<ArticleDto> dtos;
+
+    @Setup
+    public void setUp() {
+        articles = SyntheticArticles.articles(size, 0.1, 42);
+        dtos = SyntheticArticles.dtos(size, 0.1, 42);
+    }
+
+    /** Maps every entity to a DTO. */
+    @Benchmark
+    public List<ArticleDto> articleToDto() {
+        return articles.stream().map(ArticleMapper::articleToDto).toList();
+    }
+
+    /** Maps every DTO to an entity. */
+    @Benchmark
+    public List<Article> dtoToArticle() {
+        return dtos.stream().map(ArticleMapper::dtoToArticle).toList();
+    }
+}
@@ -0,0 +1,127 @@
+package news_compiler.service;
+
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.entity.Article;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up the original of unrelated articles, which have none, and of edited copies of
+ * indexed articles, as the number of indexed articles grows. Lookups should cost about the same at
+ * every size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleDuplicateDetectorBenchmark {
+    /** Number of articles looked up by each benchmark */
+    private static final int LOOKUPS = 100;
+
+    /** One word in this many is replaced in the edited copies */
+    private static final int EDITED_WORD_INTERVAL = 25;
+
+    /** Number of indexed articles */
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    /** The detector being measured, indexing every article */
+    private ArticleDuplicateDetector detector;
+
+    /** Articles unrelated to the indexed ones */
+    private List<Article> unrelated;
+
+    /** Edited copies of indexed articles */
+    private List<Article> edited;
+
+    @Setup
+    public void setUp() {
+        detector = new ArticleDuplicateDetector();
+        ReflectionTestUtils.setField(detector, "window", Duration.ofDays(7));
+
+        // Articles are fetched now, as older ones fall outside the window
+        List<Article> articles = fetchedNow(SyntheticArticles.articles(size, 0.1, 42));
+        for (Article article : articles)
+            detector.index(article.getId(), article.getBodySignature(), null, article.getTimeFetched());
+
+        unrelated = fetchedNow(SyntheticArticles.articles(LOOKUPS, 0.1, 7));
+        unrelated.forEach(article -> article.setId(null));
+        edited = articles.subList(0, LOOKUPS).stream()
+                .map(ArticleDuplicateDetectorBenchmark::edit)
+                .toList();
+
+        long caught = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            if (Objects.equals(detector.findOriginal(edited.get(i), List.of()), articles.get(i).getId()))
+                ++caught;
+        }
+        System.out.printf("%n%d articles: %d of %d edited copies caught%n", size, caught, LOOKUPS);
+    }
+
+    /** Looks up the original of articles unrelated to the indexed ones. */
+    @Benchmark
+    public void findOriginalUnrelated(Blackhole blackhole) {
+        for (Article article : unrelated)
+            blackhole.consume(detector.findOriginal(article, List.of()));
+    }
+
+    /** Looks up the original of edited copies of indexed articles. */
+    @Benchmark
+    public void findOriginalEdited(Blackhole blackhole) {
+        for (Article article : edited)
+            blackhole.consume(detector.findOriginal(article, List.of()));
+    }
+
+    /**
+     * Moves the time the articles were fetched to now, and computes their hashes.
+     * @param articles the articles
+     * @return the same articles
+     */
+    private static List<Article> fetchedNow(List<Article> articles) {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (Article article : articles) {
+            article.setTimeFetched(now);
+            article.updateHashes();
+        }
+
+        return articles;
+    }
+
+    /**
+     * Copies an article as another outlet would publish it, with a few words replaced and a
+     * sign-off added.
+     * @param article the article to copy
+     * @return the copy, without an ID and with its hashes computed
+     */
+    private static Article edit(Article article) {
+        String[] words = article.getBody().split(" ");
+        for (int i = 0; i < words.length; i += EDITED_WORD_INTERVAL)
+            words[i] = "edited";
+
+        Article copy = new Article(null, article.getTitle() + " (copy)",
+                String.join(" ", words) + " Reporting by staff.", article.getTimePublished(),
+                article.getTimeFetched(), article.getSource(), article.getArticleUrl(), article.getImageUrl(),
+                article.getCategory());
+        copy.updateHashes();
+        return copy;
+    }
+}
@@ -0,0 +1,100 @@
+package news_compiler.service;
+
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.dto.ArticleDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the search index, and answering queries of terms found in most articles, in
+ * a single article, and several terms together.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleSearchIndexBenchmark {
+    /** Maximum number of matches returned, as by default on the search endpoint */
+    private static final int LIMIT = 20;
+
+    /** Number of articles */
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    /** The articles to index */
+    private List<ArticleDto> articles;
+
+    /** The index of every article, searched by the queries */
+    private ArticleSearchIndex index;
+
+    /** A term found in most articles */
+    private Set<String> commonTerm;
+
+    /** A term found in the title of a single article */
+    private Set<String> rareTerm;
+
+    /** Several terms found in most articles */
+    private Set<String> threeTerms;
+
+    @Setup
+    public void setUp() {
+        articles = SyntheticArticles.dtos(size, 0.1, 42);
+        index = build();
+
+        // Titles end with the number of the article, which appears nowhere else
+        commonTerm = ArticleSearchIndex.terms("market");
+        rareTerm = ArticleSearchIndex.terms(String.valueOf(size / 2));
+        threeTerms = ArticleSearchIndex.terms("election market storm");
+    }
+
+    /** Builds an index of every article. */
+    @Benchmark
+    public ArticleSearchIndex index() {
+        return build();
+    }
+
+    /** Searches for a term found in most articles. */
+    @Benchmark
+    public List<ArticleSearchIndex.Match> searchCommonTerm() {
+        return index.search(commonTerm, LIMIT);
+    }
+
+    /** Searches for a term found in a single article. */
+    @Benchmark
+    public List<ArticleSearchIndex.Match> searchRareTerm() {
+        return index.search(rareTerm, LIMIT);
+    }
+
+    /** Searches for several terms found in most articles. */
+    @Benchmark
+    public List<ArticleSearchIndex.Match> searchThreeTerms() {
+        return index.search(threeTerms, LIMIT);
+    }
+
+    /**
+     * Builds an index of every article, without a database to rebuild it from.
+     * @return the index, ready to be searched
+     */
+    private ArticleSearchIndex build() {
+        ArticleSearchIndex built = new ArticleSearchIndex();
+        built.index(articles);
+        ReflectionTestUtils.setField(built, "ready", true);
+        return built;
+    }
+}
@@ -0,0 +1,128 @@
+package news_compiler.service;
+
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.dto.ArticleDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures placing a chunk of written articles into the stories of a full window, and clustering
+ * the whole window in one go, as the stories are rebuilt at startup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleStoryServiceBenchmark {
+    /** Number of articles written at once, as the scraper sends them */
+    private static final int CHUNK_SIZE = 100;
+
+    /** Number of articles covering each event */
+    private static final int ARTICLES_PER_EVENT = 5;
+
+    /** Number of distinct words the articles are made of, besides the words of their event */
+    private static final int VOCABULARY_SIZE = 20_000;
+
+    /** Number of words in each title, besides the words of its event */
+    private static final int TITLE_WORDS = 6;
+
+    /** Number of words in each body, besides the words of its event */
+    private static final int BODY_WORDS = 120;
+
+    /** Number of articles in the window, up to about a day of articles */
+    @Param({"1000", "10000"})
+    private int size;
+
+    /** The articles of the window */
+    private List<ArticleDto> articles;
+
+    /** The articles written again by each chunk */
+    private List<ArticleDto> chunk;
+
+    /** The service being measured, holding the stories of the window */
+    private ArticleStoryService service;
+
+    @Setup
+    public void setUp() {
+        // The synthetic articles all share a few dozen words, which would merge them into one story,
+        // so their text is replaced. Articles are fetched now, as older ones fall outside the window.
+        Random random = new Random(42);
+        OffsetDateTime now = OffsetDateTime.now();
+        articles = SyntheticArticles.dtos(size, 0.1, 42);
+        for (int i = 0; i < articles.size(); ++i) {
+            ArticleDto article = articles.get(i);
+            String event = eventWords(i / ARTICLES_PER_EVENT);
+            article.setTitle(words(TITLE_WORDS, random) + event);
+            article.setBody(words(BODY_WORDS, random) + event);
+            article.setTimeFetched(now);
+        }
+        chunk = articles.subList(0, CHUNK_SIZE);
+
+        service = cluster();
+        System.out.printf("%n%d articles: %d clustered, %d stories served%n",
+                size, service.size(), service.getStories(ArticleStoryService.MAX_STORIES).size());
+    }
+
+    /** Writes a chunk of articles again into the full window. */
+    @Benchmark
+    public ArticleStoryService indexChunk() {
+        service.index(chunk);
+        return service;
+    }
+
+    /** Clusters every article of the window. */
+    @Benchmark
+    public ArticleStoryService indexWindow() {
+        return cluster();
+    }
+
+    /**
+     * Clusters every article of the window into a new service.
+     * @return the service
+     */
+    private ArticleStoryService cluster() {
+        ArticleStoryService clustered = new ArticleStoryService();
+        clustered.index(articles);
+        return clustered;
+    }
+
+    /**
+     * Draws random words from the vocabulary.
+     * @param count the number of words to draw
+     * @param random the source of randomness
+     * @return the words, separated by spaces
+     */
+    private static String words(int count, Random random) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; ++i)
+            words.append("word").append(random.nextInt(VOCABULARY_SIZE)).append(' ');
+
+        return words.toString();
+    }
+
+    /**
+     * Returns the words only the articles covering an event share, as the names and places of a
+     * story are.
+     * @param event the number of the event
+     * @return the words, separated by spaces
+     */
+    private static String eventWords(int event) {
+        return "event" + event + "name event" + event + "place event" + event + "topic";
+    }
+}
@@ -0,0 +1,68 @@
+package news_compiler.service;
+
+import news_compiler.benchmark.SyntheticArticles;
+import news_compiler.dto.ArticleDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures listing the categories, and formatting the category of each of a set of articles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CategoryServiceBenchmark {
+    /** The service being measured */
+    private final CategoryService categoryService = new CategoryService();
+
+    /**
+     * Names of the categories of a set of articles.
+     * Kept apart, so that listing the categories is only measured once.
+     */
+    @State(Scope.Benchmark)
+    public static class Names {
+        /** Number of articles */
+        @Param({"1000", "10000", "100000"})
+        private int size;
+
+        /** The name of each article's category, as stored */
+        private List<String> names;
+
+        @Setup
+        public void setUp() {
+            names = SyntheticArticles.dtos(size, 0.1, 42).stream()
+                    .map(ArticleDto::getCategory)
+                    .map(Enum::name)
+                    .toList();
+        }
+    }
+
+    /** Lists every category, formatted, as the category endpoint does. */
+    @Benchmark
+    public List<String> getCategories() {
+        return categoryService.getCategories();
+    }
+
+    /** Formats the category of every article. */
+    @Benchmark
+    public void formatCategory(Names names, Blackhole blackhole) {
+        for (String name : names.names)
+            blackhole.consume(categoryService.formatCategory(name));
+    }
+}
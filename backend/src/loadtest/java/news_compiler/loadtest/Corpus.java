@@ -0,0 +1,279 @@
+package news_compiler.loadtest;
+
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.Category;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates a stream of synthetic articles shaped like those sent by the scraper.
+ * <p>
+ * Words are made of syllables and drawn from a Zipf distribution, as in natural text. Titles and
+ * bodies have log-normal lengths, most articles being a few hundred words with a long tail of
+ * longer ones. Sources are also drawn from a Zipf distribution, so a few outlets publish most
+ * articles, and categories are drawn uniformly so that every one is covered. A share of articles
+ * are lightly edited copies of a recent article under another source, as wire stories are.
+ * <p>
+ * Titles end with the article's index, which keeps them unique. The same seed and first index
+ * always give the same articles. Instances are not thread-safe.
+ */
+public class Corpus {
+    /** Syllables words are made of */
+    private static final String[] SYLLABLES = {
+            "ka", "ro", "mi", "ten", "sul", "da", "ve", "lo", "pra", "nis", "tor", "el", "an", "bu", "cre",
+            "fi", "gan", "ho", "ju", "mar", "ne", "os", "pel", "qui", "ras", "si", "tu", "ul", "vin", "wen"
+    };
+
+    /** Number of distinct words */
+    private static final int VOCABULARY_SIZE = 20_000;
+
+    /** Median number of words in a title */
+    private static final double TITLE_MEDIAN = 10;
+
+    /** Standard deviation of the logarithm of the number of words in a title */
+    private static final double TITLE_SIGMA = 0.3;
+
+    /** Most words in a title, which keeps titles within the length of their column */
+    private static final int MAX_TITLE_WORDS = 20;
+
+    /** Median number of words in a body */
+    private static final double BODY_MEDIAN = 450;
+
+    /** Standard deviation of the logarithm of the number of words in a body */
+    private static final double BODY_SIGMA = 0.6;
+
+    /** Fewest words in a body */
+    private static final int MIN_BODY_WORDS = 40;
+
+    /** Most words in a body */
+    private static final int MAX_BODY_WORDS = 6000;
+
+    /** Share of articles without a time published */
+    private static final double UNPUBLISHED_SHARE = 0.1;
+
+    /** Mean time between an article being published and being fetched, in seconds */
+    private static final double MEAN_PUBLISH_DELAY = 6 * 60 * 60;
+
+    /** Share of the words of a copied body that are replaced */
+    private static final double COPY_EDIT_RATE = 0.02;
+
+    /** Number of recent bodies kept to be copied */
+    private static final int RECENT_BODIES = 1000;
+
+    /** The vocabulary, most frequent word first */
+    private static final String[] VOCABULARY = new String[VOCABULARY_SIZE];
+
+    /** Cumulative probability of drawing each word of the vocabulary */
+    private static final double[] WORD_FREQUENCIES = zipf(VOCABULARY_SIZE);
+
+    static {
+        for (int rank = 0; rank < VOCABULARY_SIZE; ++rank) {
+            StringBuilder word = new StringBuilder();
+            int remaining = rank;
+            do {
+                word.append(SYLLABLES[remaining % SYLLABLES.length]);
+                remaining /= SYLLABLES.length;
+            } while (remaining > 0);
+            VOCABULARY[rank] = word.toString();
+        }
+    }
+
+    /** Source of randomness */
+    private final Random random;
+
+    /** Cumulative probability of drawing each source */
+    private final double[] sourceFrequencies;
+
+    /** Latest time an article is fetched */
+    private final Instant end;
+
+    /** Length of the period articles are fetched over, in seconds */
+    private final long spanSeconds;
+
+    /** Share of articles that copy a recent article */
+    private final double duplicateShare;
+
+    /** Bodies of the latest articles, in a ring, to be copied */
+    private final String[] recentBodies = new String[RECENT_BODIES];
+
+    /** Index of the next article */
+    private long index;
+
+    /**
+     * Creates a corpus.
+     * @param seed the seed of the random generator
+     * @param firstIndex the index of the first article, which ends its title
+     * @param sources the number of distinct sources
+     * @param end the latest time an article is fetched
+     * @param span the length of the period before the end that articles are fetched over
+     * @param duplicateShare the share of articles that copy a recent article, from 0 to 1
+     * @throws IllegalArgumentException if there are no sources or the shares are out of range
+     */
+    public Corpus(long seed, long firstIndex, int sources, Instant end, Duration span, double duplicateShare) {
+        if (sources < 1)
+            throw new IllegalArgumentException("There must be at least one source");
+        if (duplicateShare < 0 || duplicateShare > 1)
+            throw new IllegalArgumentException("Duplicate share must be between 0 and 1");
+
+        this.random = new Random(seed);
+        this.index = firstIndex;
+        this.sourceFrequencies = zipf(sources);
+        this.end = end;
+        this.spanSeconds = Math.max(1, span.toSeconds());
+        this.duplicateShare = duplicateShare;
+    }
+
+    /**
+     * Generates the next article. Its ID is left null.
+     * @return the article
+     */
+    public ArticleDto next() {
+        long articleIndex = index++;
+        int source = draw(sourceFrequencies);
+        Category category = Category.values()[random.nextInt(Category.values().length)];
+
+        // Times are given in the offset of a few regions, as the scraper's sources do
+        ZoneOffset offset = ZoneOffset.ofHours(random.nextInt(4) * 3 - 5);
+        OffsetDateTime fetched = end.minusSeconds((long) (random.nextDouble() * spanSeconds)).atOffset(offset);
+        OffsetDateTime published = random.nextDouble() < UNPUBLISHED_SHARE ? null
+                : fetched.minusSeconds((long) (-Math.log(1 - random.nextDouble()) * MEAN_PUBLISH_DELAY));
+
+        String body;
+        String copied = recentBodies[random.nextInt(RECENT_BODIES)];
+        if (copied != null && random.nextDouble() < duplicateShare)
+            body = edit(copied);
+        else
+            body = body(logNormal(BODY_MEDIAN, BODY_SIGMA, MIN_BODY_WORDS, MAX_BODY_WORDS));
+        recentBodies[(int) (articleIndex % RECENT_BODIES)] = body;
+
+        String host = "source-" + source + ".example";
+        return new ArticleDto(
+                null,
+                title(logNormal(TITLE_MEDIAN, TITLE_SIGMA, 3, MAX_TITLE_WORDS)) + " " + articleIndex,
+                body,
+                published,
+                fetched,
+                "Source " + source,
+                "https://" + host + "/" + category.name().toLowerCase() + "/" + articleIndex,
+                "https://images." + host + "/" + articleIndex + ".jpg",
+                category
+        );
+    }
+
+    /**
+     * Draws a word to search for, favouring common words as readers do.
+     * @return the word
+     */
+    public String searchTerm() {
+        // Skip the most common words, which are the corpus' equivalent of stop words
+        return VOCABULARY[50 + draw(WORD_FREQUENCIES) % (VOCABULARY_SIZE - 50)];
+    }
+
+    /**
+     * Generates a title.
+     * @param words the number of words in the title
+     * @return the title, capitalized
+     */
+    private String title(int words) {
+        String title = words(words, new StringBuilder()).toString();
+        return Character.toUpperCase(title.charAt(0)) + title.substring(1);
+    }
+
+    /**
+     * Generates a body made of sentences, split into paragraphs.
+     * @param words the number of words in the body
+     * @return the body
+     */
+    private String body(int words) {
+        StringBuilder body = new StringBuilder(words * 8);
+        int sentences = 0;
+        while (words > 0) {
+            int length = Math.min(words, 8 + random.nextInt(22));
+            int start = body.length();
+            words(length, body);
+            body.setCharAt(start, Character.toUpperCase(body.charAt(start)));
+            body.append(++sentences % 4 == 0 ? ".\n\n" : ". ");
+            words -= length;
+        }
+
+        return body.toString().strip();
+    }
+
+    /**
+     * Replaces a few words of a body and adds a sign-off, as outlets do to wire stories.
+     * @param body the body to copy
+     * @return the edited copy
+     */
+    private String edit(String body) {
+        String[] words = body.split(" ");
+        for (int i = 0; i < words.length; ++i) {
+            if (random.nextDouble() < COPY_EDIT_RATE)
+                words[i] = VOCABULARY[draw(WORD_FREQUENCIES)];
+        }
+
+        return String.join(" ", words) + "\n\nAdditional reporting by " + title(2) + ".";
+    }
+
+    /**
+     * Appends words drawn from the vocabulary, separated by spaces.
+     * @param count the number of words
+     * @param text the text to append to
+     * @return the text
+     */
+    private StringBuilder words(int count, StringBuilder text) {
+        for (int i = 0; i < count; ++i) {
+            if (i > 0)
+                text.append(' ');
+            text.append(VOCABULARY[draw(WORD_FREQUENCIES)]);
+        }
+
+        return text;
+    }
+
+    /**
+     * Draws a length from a log-normal distribution.
+     * @param median the median length
+     * @param sigma the standard deviation of the logarithm of the length
+     * @param min the shortest length
+     * @param max the longest length
+     * @return the length
+     */
+    private int logNormal(double median, double sigma, int min, int max) {
+        long length = Math.round(median * Math.exp(sigma * random.nextGaussian()));
+        return (int) Math.clamp(length, min, max);
+    }
+
+    /**
+     * Draws a rank from a distribution.
+     * @param cumulative the cumulative probability of each rank
+     * @return the rank
+     */
+    private int draw(double[] cumulative) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+    }
+
+    /**
+     * Returns the cumulative probabilities of a Zipf distribution.
+     * @param size the number of ranks
+     * @return the probability of drawing each rank or a lower one
+     */
+    private static double[] zipf(int size) {
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; ++rank) {
+            total += 1.0 / (rank + 1);
+            cumulative[rank] = total;
+        }
+
+        for (int rank = 0; rank < size; ++rank)
+            cumulative[rank] /= total;
+
+        return cumulative;
+    }
+}
@@ -0,0 +1,177 @@
+package news_compiler.loadtest;
+
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.ArticleBodyCodec;
+import news_compiler.entity.ArticleHasher;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Loads a synthetic corpus straight into the articles table of a local database.
+ * <p>
+ * Going through the API would take hours for millions of articles, so rows are inserted in JDBC
+ * batches with the hashes the backend would have computed. The schema must already exist, which
+ * it does once the backend has been started against the database. Near-duplicates are not tagged,
+ * as the backend only tags them when they are written.
+ */
+public class CorpusLoader {
+    /** Number of rows inserted per batch and transaction */
+    private static final int BATCH_SIZE = 2000;
+
+    /** Number of rows between progress reports */
+    private static final int REPORT_INTERVAL = 100_000;
+
+    /** Allocation size of the backend's ID sequence */
+    private static final int SEQUENCE_ALLOCATION = 50;
+
+    /** JDBC URL of the database */
+    private final String url;
+
+    /** User to connect as */
+    private final String user;
+
+    /** Password of the user */
+    private final String password;
+
+    /**
+     * Creates a loader.
+     * @param url the JDBC URL of the database
+     * @param user the user to connect as
+     * @param password the password of the user
+     */
+    public CorpusLoader(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Inserts articles from a corpus after those already in the table.
+     * The backend's ID sequence is moved past the inserted articles, so it can keep writing, and
+     * the table's statistics are refreshed.
+     * @param corpus the corpus to draw articles from
+     * @param count the number of articles to insert
+     * @throws SQLException if the database cannot be written to
+     * @throws IllegalStateException if the articles table does not exist
+     */
+    public void load(Corpus corpus, long count) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            connection.setAutoCommit(false);
+
+            String bodyType = bodyType(connection);
+            boolean binaryBodies = "longblob".equalsIgnoreCase(bodyType);
+            long nextId = queryLong(connection, "SELECT COALESCE(MAX(id), 0) + 1 FROM articles");
+
+            String insert = "INSERT INTO articles (id, title, body, time_published, time_fetched, source, " +
+                    "article_url, image_url, category, title_key, content_hash, body_signature) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            long start = System.nanoTime();
+            try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                for (long i = 0; i < count; ++i) {
+                    bind(statement, nextId + i, corpus.next(), binaryBodies);
+                    statement.addBatch();
+
+                    if ((i + 1) % BATCH_SIZE == 0 || i == count - 1) {
+                        statement.executeBatch();
+                        connection.commit();
+                    }
+
+                    if ((i + 1) % REPORT_INTERVAL == 0) {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        System.out.printf("inserted %,d articles (%,.0f/s)%n", i + 1, (i + 1) / seconds);
+                    }
+                }
+            }
+
+            // Keep the backend from handing out the IDs just inserted
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE articles_seq SET next_val = GREATEST(next_val, ?)")) {
+                statement.setLong(1, nextId + count + 2L * SEQUENCE_ALLOCATION);
+                statement.executeUpdate();
+            }
+            connection.commit();
+
+            // Statistics gathered while the table was small would steer queries away from the indexes
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE TABLE articles");
+            }
+
+            System.out.printf("inserted %,d articles in %.1f s%n", count, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Binds an article to the insert statement.
+     * @param statement the insert statement
+     * @param id the ID of the article
+     * @param article the article
+     * @param binaryBodies whether bodies are stored as binary, in which case they are compressed
+     * @throws SQLException if a parameter cannot be bound
+     */
+    private static void bind(PreparedStatement statement, long id, ArticleDto article, boolean binaryBodies)
+            throws SQLException {
+        statement.setLong(1, id);
+        statement.setString(2, article.getTitle());
+        if (binaryBodies)
+            statement.setBytes(3, ArticleBodyCodec.encode(article.getBody(), true));
+        else
+            statement.setString(3, article.getBody());
+
+        if (article.getTimePublished() == null)
+            statement.setNull(4, Types.TIMESTAMP);
+        else
+            statement.setTimestamp(4, Timestamp.from(article.getTimePublished().toInstant()));
+        statement.setTimestamp(5, Timestamp.from(article.getTimeFetched().toInstant()));
+
+        statement.setString(6, article.getSource());
+        statement.setString(7, article.getArticleUrl());
+        statement.setString(8, article.getImageUrl());
+        statement.setString(9, article.getCategory().name());
+        statement.setLong(10, ArticleHasher.hashTitleKey(article.getTitle()));
+        statement.setLong(11, ArticleHasher.hashContent(article.getBody(), article.getTimePublished(),
+                article.getSource(), article.getArticleUrl(), article.getImageUrl(), article.getCategory()));
+        statement.setBytes(12, ArticleHasher.signBody(article.getBody()));
+    }
+
+    /**
+     * Returns the type of the body column, checking that the articles table exists.
+     * @param connection the connection to the database
+     * @return the type of the body column
+     * @throws SQLException if the database cannot be queried
+     * @throws IllegalStateException if the articles table does not exist
+     */
+    private static String bodyType(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND COLUMN_NAME = 'body'")) {
+            if (!result.next()) {
+                throw new IllegalStateException("The articles table does not exist; " +
+                        "start the backend against the database once to create it");
+            }
+
+            return result.getString(1);
+        }
+    }
+
+    /**
+     * Runs a query returning a single number.
+     * @param connection the connection to the database
+     * @param query the query
+     * @return the number
+     * @throws SQLException if the database cannot be queried
+     */
+    private static long queryLong(Connection connection, String query) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(query)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package news_compiler.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records the outcome of the requests sent to one endpoint by one worker.
+ * Recorders are not thread-safe; each worker keeps its own and they are merged once the run ends.
+ */
+class LatencyRecorder {
+    /** Latency of each successful request, in nanoseconds */
+    private long[] latencies = new long[1024];
+
+    /** Number of latencies recorded */
+    private int count;
+
+    /** Number of requests that failed or returned an error status */
+    private long errors;
+
+    /** Number of response bytes received */
+    private long bytes;
+
+    /**
+     * Records a successful request.
+     * @param latency the latency of the request, in nanoseconds
+     * @param responseBytes the size of the response body
+     */
+    void success(long latency, long responseBytes) {
+        if (count == latencies.length)
+            latencies = Arrays.copyOf(latencies, count * 2);
+
+        latencies[count++] = latency;
+        bytes += responseBytes;
+    }
+
+    /**
+     * Records a failed request.
+     */
+    void error() {
+        ++errors;
+    }
+
+    /**
+     * Adds the requests recorded by another recorder to this one.
+     * @param other the recorder to add
+     */
+    void add(LatencyRecorder other) {
+        if (count + other.count > latencies.length)
+            latencies = Arrays.copyOf(latencies, count + other.count);
+
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        errors += other.errors;
+        bytes += other.bytes;
+    }
+
+    /**
+     * Formats a line of the report.
+     * @param endpoint the name of the endpoint
+     * @param seconds the length of the measured period, in seconds
+     * @return the line
+     */
+    String report(String endpoint, double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        return String.format("%-34s %9d %7d %9.1f %9.0f %8.2f %8.2f %8.2f %8.2f %8.2f", endpoint, count, errors,
+                count / seconds, count == 0 ? 0 : (double) bytes / count / 1024, percentile(sorted, 50),
+                percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+                percentile(sorted, 100));
+    }
+
+    /**
+     * Formats the header of the report.
+     * @return the header
+     */
+    static String header() {
+        return String.format("%-34s %9s %7s %9s %9s %8s %8s %8s %8s %8s", "endpoint", "requests", "errors", "req/s",
+                "KiB/resp", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    /**
+     * Returns a percentile of the given latencies.
+     * @param sorted the latencies in nanoseconds, sorted in ascending order
+     * @param percentile the percentile to return, from 0 to 100
+     * @return the latency at the given percentile in milliseconds, or 0 if there are none
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,556 @@
+package news_compiler.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.Category;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Replays a mix of scraper writes and front-end reads against a running backend and reports the
+ * throughput and latency of each endpoint.
+ * <p>
+ * Each worker runs on its own virtual thread and sends one request at a time, choosing each
+ * endpoint by its weight. Without a target rate, workers send requests back to back. With one, each
+ * worker sends requests on a fixed schedule and latency is measured from the time a request was
+ * due rather than sent, so a slow server is not hidden by workers falling behind. Requests sent
+ * during the warmup are not recorded.
+ * <p>
+ * Writes are sent one at a time, as the scraper sends them, and only articles from writes that
+ * succeeded are resubmitted.
+ */
+public class LoadDriver {
+    /**
+     * Endpoints requested by the driver, with the share of requests sent to each by default.
+     */
+    public enum Endpoint {
+        /**
+         * Recent feed with bodies, read from the database on each request. Not requested by the
+         * front end, so only sent when weighed with <code>--mix recent=N</code>, as when measuring
+         * the window query against a growing table.
+         */
+        RECENT("GET /api/articles/recent", 0),
+        /** Recent feed without bodies, loaded by the mosaic page */
+        RECENT_LITE("GET /api/articles/recent/lite", 35),
+        /** Page of the recent feed without bodies, following the cursor of the previous page */
+        RECENT_PAGE("GET /api/articles/recent/lite?limit", 15),
+        /** Recent feed of one category without bodies */
+        RECENT_CATEGORY("GET /api/articles/recent/lite?category", 5),
+        /** Single article with its body, loaded by the article page */
+        ARTICLE("GET /api/articles/{id}", 25),
+        /** Formatted categories */
+        CATEGORIES("GET /api/categories", 5),
+        /** Full-text search */
+        SEARCH("GET /api/articles/search", 6),
+        /** Counts by category and source */
+        FACETS("GET /api/articles/facets", 3),
+        /** Stories grouping coverage across sources */
+        STORIES("GET /api/articles/stories", 3),
+        /** Batch of articles from the scraper, partly resubmitted */
+        WRITE("POST /api/articles", 3);
+
+        /** Name of the endpoint in the report */
+        private final String label;
+
+        /** Share of requests sent to this endpoint by default */
+        private final int defaultWeight;
+
+        Endpoint(String label, int defaultWeight) {
+            this.label = label;
+            this.defaultWeight = defaultWeight;
+        }
+
+        /** @return the share of requests sent to this endpoint by default */
+        public int getDefaultWeight() {
+            return defaultWeight;
+        }
+    }
+
+    /** Number of article IDs requested for each recent page */
+    private static final int PAGE_LIMIT = 50;
+
+    /** Number of articles written by the driver kept to be resubmitted */
+    private static final int RESUBMITTED_POOL = 5000;
+
+    /** Number of article IDs kept to be requested */
+    private static final int ID_POOL = 100_000;
+
+    /** Base URL of the backend, without a trailing slash */
+    private final String baseUrl;
+
+    /** Share of requests sent to each endpoint */
+    private final Map<Endpoint, Integer> weights;
+
+    /** Number of concurrent workers */
+    private final int workers;
+
+    /** Requests per second across all workers, or 0 to send requests back to back */
+    private final double rate;
+
+    /** Length of the warmup, during which requests are not recorded */
+    private final Duration warmup;
+
+    /** Length of the measured period */
+    private final Duration duration;
+
+    /** Number of articles in each write */
+    private final int batchSize;
+
+    /** Share of the articles of each write that were written before */
+    private final double resubmitShare;
+
+    /** Client shared by every worker */
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /** Configured as Spring Boot configures the mapper of the controllers */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    /** Generates the new articles written, guarded by {@link #lock} */
+    private final Corpus corpus;
+
+    /** Articles written by the driver, to be resubmitted, guarded by {@link #lock} */
+    private final List<ArticleDto> written = new ArrayList<>();
+
+    /** IDs of articles known to exist, guarded by {@link #lock} */
+    private final List<Long> articleIds = new ArrayList<>();
+
+    /** Guards the state shared by the workers */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Held while a write is in flight, as the scraper sends one batch at a time */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Creates a driver.
+     * @param baseUrl the base URL of the backend
+     * @param weights the share of requests sent to each endpoint
+     * @param workers the number of concurrent workers
+     * @param rate the number of requests per second across all workers, or 0 to send them back to back
+     * @param warmup the length of the warmup
+     * @param duration the length of the measured period
+     * @param batchSize the number of articles in each write
+     * @param resubmitShare the share of the articles of each write that were written before
+     * @param corpus the corpus new articles are drawn from
+     * @throws IllegalArgumentException if any setting is out of range
+     */
+    public LoadDriver(String baseUrl, Map<Endpoint, Integer> weights, int workers, double rate, Duration warmup,
+                      Duration duration, int batchSize, double resubmitShare, Corpus corpus) {
+        if (workers < 1)
+            throw new IllegalArgumentException("There must be at least one worker");
+        if (rate < 0)
+            throw new IllegalArgumentException("Rate cannot be negative");
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative())
+            throw new IllegalArgumentException("Duration must be positive and warmup cannot be negative");
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        if (resubmitShare < 0 || resubmitShare > 1)
+            throw new IllegalArgumentException("Resubmit share must be between 0 and 1");
+        if (weights.values().stream().anyMatch(weight -> weight < 0)
+                || weights.values().stream().mapToInt(Integer::intValue).sum() == 0)
+            throw new IllegalArgumentException("Weights cannot be negative and at least one must be positive");
+
+        this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.weights = new EnumMap<>(weights);
+        this.workers = workers;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.batchSize = batchSize;
+        this.resubmitShare = resubmitShare;
+        this.corpus = corpus;
+    }
+
+    /**
+     * Runs the load test and prints the report.
+     * @throws IOException if the backend cannot be reached before starting
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public void run() throws IOException, InterruptedException {
+        // Articles are requested by ID, so start from the IDs of the recent feed
+        HttpResponse<byte[]> recent = client.send(get("/api/articles/recent/lite"),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (recent.statusCode() != 200)
+            throw new IOException("Could not read the recent feed: HTTP " + recent.statusCode());
+        collectIds(objectMapper.readTree(decode(recent)));
+        if (articleIds.isEmpty() && weights.getOrDefault(Endpoint.ARTICLE, 0) > 0) {
+            if (weights.entrySet().stream().noneMatch(w -> w.getKey() != Endpoint.ARTICLE && w.getValue() > 0))
+                throw new IllegalStateException("The recent feed is empty, so there are no articles to request");
+            System.out.println("The recent feed is empty; articles are only requested once some are written");
+        }
+
+        System.out.printf("%d workers, %s, warmup %s, measuring %s%n", workers,
+                rate > 0 ? String.format("%.0f req/s", rate) : "back to back", warmup, duration);
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Worker> running = new ArrayList<>(workers);
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int i = 0; i < workers; ++i) {
+            Worker worker = new Worker(i, start, measureFrom, end);
+            running.add(worker);
+            threads.add(Thread.ofVirtual().name("load-worker-" + i).start(worker));
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        // Merge what the workers recorded and print a line per endpoint
+        Map<Endpoint, LatencyRecorder> totals = new EnumMap<>(Endpoint.class);
+        LatencyRecorder overall = new LatencyRecorder();
+        for (Worker worker : running) {
+            worker.recorders.forEach((endpoint, recorder) -> {
+                totals.computeIfAbsent(endpoint, e -> new LatencyRecorder()).add(recorder);
+                overall.add(recorder);
+            });
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        System.out.println();
+        System.out.println(LatencyRecorder.header());
+        totals.forEach((endpoint, recorder) -> System.out.println(recorder.report(endpoint.label, seconds)));
+        System.out.println(overall.report("all", seconds));
+    }
+
+    /**
+     * Sends requests until the end of the run.
+     */
+    private class Worker implements Runnable {
+        /** What this worker recorded for each endpoint */
+        private final Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+
+        /** Source of randomness, distinct for each worker */
+        private final Random random;
+
+        /** Time the run started, from {@link System#nanoTime()} */
+        private final long start;
+
+        /** Time from which requests are recorded */
+        private final long measureFrom;
+
+        /** Time at which the run ends */
+        private final long end;
+
+        /** Cursor of the next recent page, or null to start from the first page */
+        private String cursor;
+
+        /** New articles in the write being sent, kept for resubmission once it succeeds */
+        private List<ArticleDto> fresh = List.of();
+
+        Worker(int index, long start, long measureFrom, long end) {
+            this.random = new Random(index);
+            this.start = start;
+            this.measureFrom = measureFrom;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            // Spread paced workers over the period, so their requests are not sent in bursts
+            long period = rate > 0 ? (long) (workers * 1e9 / rate) : 0;
+            long due = start + (period > 0 ? random.nextLong(period) : 0);
+
+            while (true) {
+                if (period > 0) {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0)
+                        sleep(wait);
+                } else {
+                    due = System.nanoTime();
+                }
+
+                // Requests still due when the run ends are dropped, so an overloaded backend does not
+                // stretch the run
+                if (due >= end || System.nanoTime() >= end)
+                    return;
+
+                // Only one write is sent at a time, so choose again if another is in flight
+                Endpoint endpoint = choose(true);
+                boolean writing = endpoint == Endpoint.WRITE && writeLock.tryLock();
+                if (endpoint == Endpoint.WRITE && !writing) {
+                    endpoint = choose(false);
+                    if (endpoint == Endpoint.WRITE) {
+                        writeLock.lock();
+                        writing = true;
+                    }
+                }
+
+                try {
+                    HttpResponse<byte[]> response = send(endpoint);
+                    long latency = System.nanoTime() - due;
+
+                    // Requests sent while warming up are not recorded
+                    if (due >= measureFrom) {
+                        LatencyRecorder recorder = recorders.computeIfAbsent(endpoint, e -> new LatencyRecorder());
+                        if (response.statusCode() / 100 == 2)
+                            recorder.success(latency, response.body().length);
+                        else
+                            recorder.error();
+                    }
+                } catch (IOException e) {
+                    if (due >= measureFrom)
+                        recorders.computeIfAbsent(endpoint, ep -> new LatencyRecorder()).error();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    if (writing)
+                        writeLock.unlock();
+                }
+
+                due += period;
+            }
+        }
+
+        /**
+         * Chooses the endpoint of the next request by weight.
+         * Articles are not requested by ID until some IDs are known.
+         * @param allowWrite whether writing may be chosen
+         * @return the endpoint
+         */
+        private Endpoint choose(boolean allowWrite) {
+            boolean knowArticles = hasArticleIds();
+            Map<Endpoint, Integer> available = new EnumMap<>(weights);
+            if (!knowArticles)
+                available.remove(Endpoint.ARTICLE);
+            if (!allowWrite)
+                available.remove(Endpoint.WRITE);
+
+            int total = available.values().stream().mapToInt(Integer::intValue).sum();
+            if (total == 0)
+                return Endpoint.WRITE;  // Only writes are weighed, so wait for the one in flight
+
+            int pick = random.nextInt(total);
+            for (Map.Entry<Endpoint, Integer> weight : available.entrySet()) {
+                pick -= weight.getValue();
+                if (pick < 0)
+                    return weight.getKey();
+            }
+
+            throw new IllegalStateException("No endpoint chosen");
+        }
+
+        /**
+         * Sends a request to an endpoint and reads what later requests need from the response.
+         * @param endpoint the endpoint
+         * @return the response
+         * @throws IOException if the request fails
+         * @throws InterruptedException if interrupted while waiting for the response
+         */
+        private HttpResponse<byte[]> send(Endpoint endpoint) throws IOException, InterruptedException {
+            HttpRequest request = switch (endpoint) {
+                case RECENT -> get("/api/articles/recent");
+                case RECENT_LITE -> get("/api/articles/recent/lite");
+                case RECENT_PAGE -> get("/api/articles/recent/lite?limit=" + PAGE_LIMIT
+                        + (cursor == null ? "" : "&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8)));
+                case RECENT_CATEGORY -> get("/api/articles/recent/lite?category="
+                        + Category.values()[random.nextInt(Category.values().length)].name());
+                case ARTICLE -> get("/api/articles/" + randomArticleId(random));
+                case CATEGORIES -> get("/api/categories");
+                case SEARCH -> get("/api/articles/search?q=" + searchTerm());
+                case FACETS -> get("/api/articles/facets");
+                case STORIES -> get("/api/articles/stories");
+                case WRITE -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/articles"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch())))
+                        .build();
+            };
+            List<ArticleDto> newArticles = fresh;
+            fresh = List.of();
+
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() / 100 != 2)
+                return response;
+
+            if (endpoint == Endpoint.RECENT_PAGE) {
+                JsonNode next = objectMapper.readTree(decode(response)).get("nextCursor");
+                cursor = next == null || next.isNull() ? null : next.asText();
+            } else if (endpoint == Endpoint.WRITE) {
+                collectIds(objectMapper.readTree(decode(response)));
+                remember(newArticles);
+            }
+
+            return response;
+        }
+
+        /**
+         * Makes up the next write: new articles, and articles written before as the scraper
+         * resubmits what it finds again. The new articles are kept in {@link #fresh}.
+         * @return the articles to write
+         */
+        private List<ArticleDto> batch() {
+            List<ArticleDto> batch = new ArrayList<>(batchSize);
+            List<ArticleDto> created = new ArrayList<>();
+            lock.lock();
+            try {
+                for (int i = 0; i < batchSize; ++i) {
+                    if (!written.isEmpty() && random.nextDouble() < resubmitShare) {
+                        batch.add(written.get(random.nextInt(written.size())));
+                    } else {
+                        // The scraper stamps articles with the time they were found
+                        ArticleDto article = corpus.next();
+                        article.setTimeFetched(OffsetDateTime.now(article.getTimeFetched().getOffset()));
+                        batch.add(article);
+                        created.add(article);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            fresh = created;
+            return batch;
+        }
+
+        /**
+         * Keeps articles that were written to be resubmitted later.
+         * @param articles the articles written
+         */
+        private void remember(List<ArticleDto> articles) {
+            lock.lock();
+            try {
+                for (ArticleDto article : articles) {
+                    if (written.size() < RESUBMITTED_POOL)
+                        written.add(article);
+                    else
+                        written.set(random.nextInt(RESUBMITTED_POOL), article);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Draws a word to search for.
+         * @return the word
+         */
+        private String searchTerm() {
+            lock.lock();
+            try {
+                return corpus.searchTerm();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sleeps, returning early if interrupted.
+         * @param nanos the time to sleep, in nanoseconds
+         */
+        private void sleep(long nanos) {
+            try {
+                Thread.sleep(Duration.ofNanos(nanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Creates a GET request accepting a compressed response, as browsers do.
+     * @param path the path and query of the request
+     * @return the request
+     */
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+    }
+
+    /**
+     * Adds the IDs of the articles in a response to those known to exist.
+     * @param json a list of articles, or an object with such a list in its <code>articles</code> field
+     */
+    private void collectIds(JsonNode json) {
+        JsonNode articles = json.isArray() ? json : json.path("articles");
+        lock.lock();
+        try {
+            for (JsonNode article : articles) {
+                if (!article.hasNonNull("id"))
+                    continue;
+
+                // Once enough are known, replace random ones so that new articles are requested too
+                long id = article.get("id").asLong();
+                if (articleIds.size() < ID_POOL)
+                    articleIds.add(id);
+                else
+                    articleIds.set(ThreadLocalRandom.current().nextInt(ID_POOL), id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether any article IDs are known.
+     * @return true if an article can be requested by ID
+     */
+    private boolean hasArticleIds() {
+        lock.lock();
+        try {
+            return !articleIds.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Draws the ID of a known article.
+     * @param random the source of randomness
+     * @return the ID
+     */
+    private long randomArticleId(Random random) {
+        lock.lock();
+        try {
+            return articleIds.get(random.nextInt(articleIds.size()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the body of a response, decompressed if needed.
+     * @param response the response
+     * @return the body
+     * @throws IOException if the body cannot be decompressed
+     */
+    private static byte[] decode(HttpResponse<byte[]> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        if (!gzip)
+            return response.body();
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return in.readAllBytes();
+        }
+    }
+}
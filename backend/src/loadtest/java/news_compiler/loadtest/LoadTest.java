@@ -0,0 +1,188 @@
+package news_compiler.loadtest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Entry point of the load test, run with <code>./mvnw -Ploadtest verify -Dloadtest.args="..."</code>.
+ * <p>
+ * <code>corpus</code> loads synthetic articles straight into a local database, and
+ * <code>drive</code> replays scraper writes and front-end reads against a backend started
+ * separately, usually with <code>./mvnw spring-boot:run</code> against the same database. Both run
+ * offline.
+ * <p>
+ * Settings of the backend are compared by driving it once per setting with the same options, such
+ * as platform and virtual threads with
+ * <code>-Dspring-boot.run.arguments=--spring.threads.virtual.enabled=true</code>, or an unpartitioned
+ * and a partitioned table by loading a corpus with <code>--span P365D</code> and starting the backend
+ * with <code>--articles.retention.enabled=true</code>.
+ */
+public class LoadTest {
+    /** Usage printed when the arguments are invalid */
+    private static final String USAGE = """
+            usage: corpus [options] | drive [options]
+
+            corpus: loads synthetic articles into the articles table
+              --articles N         number of articles to insert (default 100000)
+              --span DURATION      period before now the articles were fetched over (default P30D)
+              --sources N          number of distinct sources (default 200)
+              --duplicates SHARE   share of articles copying a recent one (default 0.05)
+              --seed N             seed of the generator (default 1)
+              --url URL            JDBC URL of the database (default jdbc:mysql://localhost:3306/$MYSQL_DATABASE)
+              --user USER          database user (default root)
+              --password PASSWORD  database password (default $MYSQL_ROOT_PASSWORD)
+
+            drive: sends requests to a running backend and reports latencies per endpoint
+              --base-url URL       base URL of the backend (default http://localhost:8080)
+              --workers N          number of concurrent workers (default 16)
+              --rate N             requests per second across all workers, 0 for back to back (default 0)
+              --warmup DURATION    time before requests are recorded (default PT15S)
+              --duration DURATION  time requests are recorded for (default PT60S)
+              --batch-size N       articles in each write (default 100)
+              --resubmit SHARE     share of each write already written before (default 0.5)
+              --mix NAME=W,...     weights of endpoints, others keeping their default,
+                                   e.g. --mix write=0,search=20
+              --sources N          number of distinct sources of written articles (default 200)
+
+            durations are ISO-8601, such as PT30S or P7D""";
+
+    public static void main(String[] args) throws Exception {
+        try {
+            if (args.length == 0)
+                throw new IllegalArgumentException("No command given");
+
+            Map<String, String> options = options(args);
+            switch (args[0]) {
+                case "corpus" -> corpus(options);
+                case "drive" -> drive(options);
+                default -> throw new IllegalArgumentException("Unknown command: " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Loads a synthetic corpus into the database.
+     * @param options the options given
+     * @throws Exception if the corpus cannot be loaded
+     */
+    private static void corpus(Map<String, String> options) throws Exception {
+        long articles = Long.parseLong(take(options, "articles", "100000"));
+        Corpus corpus = new Corpus(
+                Long.parseLong(take(options, "seed", "1")),
+                0,
+                Integer.parseInt(take(options, "sources", "200")),
+                Instant.now(),
+                Duration.parse(take(options, "span", "P30D")),
+                Double.parseDouble(take(options, "duplicates", "0.05")));
+        CorpusLoader loader = new CorpusLoader(
+                take(options, "url", "jdbc:mysql://localhost:3306/" + System.getenv("MYSQL_DATABASE")
+                        + "?rewriteBatchedStatements=true"),
+                take(options, "user", "root"),
+                take(options, "password", System.getenv().getOrDefault("MYSQL_ROOT_PASSWORD", "")));
+        checkAllTaken(options);
+
+        loader.load(corpus, articles);
+    }
+
+    /**
+     * Drives load against a running backend.
+     * @param options the options given
+     * @throws Exception if the backend cannot be reached
+     */
+    private static void drive(Map<String, String> options) throws Exception {
+        Map<LoadDriver.Endpoint, Integer> weights = new EnumMap<>(LoadDriver.Endpoint.class);
+        for (LoadDriver.Endpoint endpoint : LoadDriver.Endpoint.values())
+            weights.put(endpoint, endpoint.getDefaultWeight());
+
+        String mix = take(options, "mix", "");
+        for (String entry : mix.split(",")) {
+            if (entry.isBlank())
+                continue;
+
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            weights.put(endpoint(parts[0]), Integer.parseInt(parts[1].trim()));
+        }
+
+        // Written articles are numbered from the start of the run, so they never share a title with
+        // the corpus or with earlier runs
+        Corpus corpus = new Corpus(System.nanoTime(), System.currentTimeMillis() * 1000,
+                Integer.parseInt(take(options, "sources", "200")), Instant.now(), Duration.ZERO, 0.05);
+
+        LoadDriver driver = new LoadDriver(
+                take(options, "base-url", "http://localhost:8080"),
+                weights,
+                Integer.parseInt(take(options, "workers", "16")),
+                Double.parseDouble(take(options, "rate", "0")),
+                Duration.parse(take(options, "warmup", "PT15S")),
+                Duration.parse(take(options, "duration", "PT60S")),
+                Integer.parseInt(take(options, "batch-size", "100")),
+                Double.parseDouble(take(options, "resubmit", "0.5")),
+                corpus);
+        checkAllTaken(options);
+
+        driver.run();
+    }
+
+    /**
+     * Parses the options following the command.
+     * @param args the arguments, the first being the command
+     * @return the value of each option, by name without its dashes
+     * @throws IllegalArgumentException if an option is malformed or has no value
+     */
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length)
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        return options;
+    }
+
+    /**
+     * Removes an option, returning its value.
+     * @param options the options given
+     * @param name the name of the option
+     * @param defaultValue the value if the option was not given
+     * @return the value of the option
+     */
+    private static String take(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Checks that every option given was used.
+     * @param options the options not yet taken
+     * @throws IllegalArgumentException if an option was not recognized
+     */
+    private static void checkAllTaken(Map<String, String> options) {
+        if (!options.isEmpty())
+            throw new IllegalArgumentException("Unknown options: " + options.keySet());
+    }
+
+    /**
+     * Finds an endpoint by name, ignoring case and dashes.
+     * @param name the name of the endpoint, such as <code>recent-lite</code>
+     * @return the endpoint
+     * @throws IllegalArgumentException if no endpoint has the name
+     */
+    private static LoadDriver.Endpoint endpoint(String name) {
+        try {
+            return LoadDriver.Endpoint.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown endpoint: " + name);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package news_compiler.config;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+
+import java.io.Serializable;
+
+/**
+ * Weighs entries of the article cache by the approximate number of bytes they hold.
+ * <p>
+ * Article bodies vary from a few hundred bytes to megabytes, so counting entries would let a few
+ * huge articles fill the cache. Weighing each by its text keeps the cache's memory bounded.
+ */
+public class ArticleCacheWeigher implements Weigher<Object, Object> {
+    /** Approximate bytes taken by an entry regardless of its content */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /** Approximate bytes taken by each field regardless of its content */
+    private static final int FIELD_OVERHEAD = 24;
+
+    @Override
+    public int weigh(Object key, Object value) {
+        // Entries are wrapped while they are guarded by the read-write strategy
+        if (value instanceof AbstractReadWriteAccess.Item item)
+            value = item.getValue();
+        if (!(value instanceof CacheEntry entry))
+            return ENTRY_OVERHEAD;
+
+        long bytes = ENTRY_OVERHEAD;
+        // Bodies are held as stored, so they are bytes rather than text once compressed
+        for (Serializable field : entry.getDisassembledState()) {
+            bytes += FIELD_OVERHEAD + switch (field) {
+                case String text -> text.length();
+                case byte[] stored -> stored.length;
+                case null, default -> 0;
+            };
+        }
+
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
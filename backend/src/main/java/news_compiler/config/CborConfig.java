@@ -0,0 +1,58 @@
+package news_compiler.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import news_compiler.dto.ArticleDto;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Configuration of the compact binary encoding, sent to clients asking for
+ * <code>application/cbor</code>.
+ * <p>
+ * Each article is sent as an array of its fields, in the order listed below, rather than as a map
+ * repeating every field name. Times are sent as epoch milliseconds and categories as the ordinal
+ * of their {@link news_compiler.entity.Category}. Every other type keeps its JSON shape.
+ */
+@Configuration
+public class CborConfig {
+    /**
+     * Creates the converter used for CBOR requests and responses.
+     * Replaces the converter Spring MVC would otherwise register, so that every CBOR response,
+     * including those encoded ahead of time by the controllers, has the same shape.
+     * @return the converter
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(cborMapper());
+    }
+
+    /**
+     * Builds the mapper encoding CBOR.
+     * @return the mapper
+     */
+    public static ObjectMapper cborMapper() {
+        return Jackson2ObjectMapperBuilder.cbor()
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
+                        SerializationFeature.WRITE_ENUMS_USING_INDEX)
+                .featuresToDisable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS,
+                        DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS)
+                .mixIn(ArticleDto.class, ArticleDtoFields.class)
+                .build();
+    }
+
+    /**
+     * Sends articles as arrays of their fields.
+     * The order is part of the format, so fields may only be appended.
+     */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "title", "body", "timePublished", "timeFetched", "source", "articleUrl",
+            "imageUrl", "category"})
+    private interface ArticleDtoFields {
+    }
+}
@@ -0,0 +1,60 @@
+package news_compiler.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many threads may call into the repositories at once.
+ * <p>
+ * With virtual threads every request gets its own thread, so thousands of requests could queue on
+ * the connection pool at once and time out there. Instead, callers wait in a fair queue for a
+ * permit before touching the pool. Calls made inside a transaction already hold a connection, so
+ * they pass straight through; this also means a permit is never awaited while holding a connection.
+ */
+public class RepositoryConcurrencyLimiter implements MethodInterceptor {
+    /** Permits for calling into the repositories */
+    private final Semaphore permits;
+
+    /** How long to wait for a permit before giving up */
+    private final Duration timeout;
+
+    /**
+     * Creates a limiter.
+     * @param maxConcurrency the maximum number of concurrent repository calls
+     * @param timeout how long to wait for a permit before giving up
+     */
+    public RepositoryConcurrencyLimiter(int maxConcurrency, Duration timeout) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        // The connection is already held by the surrounding transaction
+        if (TransactionSynchronizationManager.isActualTransactionActive())
+            return invocation.proceed();
+
+        if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS))
+            throw new TransientDataAccessResourceException("Timed out waiting to access the database");
+
+        try {
+            return invocation.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns the number of threads waiting for a permit.
+     * @return the number of waiting threads
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+}
@@ -0,0 +1,68 @@
+package news_compiler.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.time.Duration;
+
+/**
+ * Configuration applied when requests are handled on virtual threads, enabled with
+ * <code>spring.threads.virtual.enabled=true</code>.
+ * <p>
+ * Puts a {@link RepositoryConcurrencyLimiter} in front of every repository, so the number of
+ * threads using the database stays within what the connection pool can serve.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+    /**
+     * Creates the limiter shared by all repositories.
+     * @param maxConcurrency the maximum number of concurrent repository calls, by default the
+     *                       size of the connection pool
+     * @param timeout how long to wait for a permit before giving up
+     * @param meterRegistry registry the number of waiting threads is reported to, as they wait here
+     *                      rather than on the connection pool
+     * @return the limiter
+     */
+    @Bean
+    public RepositoryConcurrencyLimiter repositoryConcurrencyLimiter(
+            @Value("${articles.db.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            @Value("${articles.db.acquire-timeout:PT30S}") Duration timeout,
+            MeterRegistry meterRegistry) {
+        RepositoryConcurrencyLimiter limiter = new RepositoryConcurrencyLimiter(maxConcurrency, timeout);
+        Gauge.builder("articles.db.waiting", limiter, RepositoryConcurrencyLimiter::getQueueLength)
+                .description("Number of threads waiting to call into the repositories")
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    /**
+     * Adds the limiter to each repository as it is created.
+     * The limiter is placed ahead of the transaction interceptor, so a permit is held before a
+     * connection is taken.
+     * @param limiter the limiter, looked up once the repositories are created
+     * @return the post-processor
+     */
+    @Bean
+    public static BeanPostProcessor repositoryConcurrencyLimiterPostProcessor(
+            ObjectProvider<RepositoryConcurrencyLimiter> limiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(0, limiter.getObject())));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -1,15 +1,43 @@
 package news_compiler.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticleFacetsDto;
+import news_compiler.dto.ArticlePageDto;
+import news_compiler.dto.ArticleSearchHitDto;
+import news_compiler.dto.ArticleStoryDto;
+import news_compiler.entity.Category;
+import news_compiler.service.ArticleEventService;
+import news_compiler.service.ArticleFacetService;
 import news_compiler.service.ArticleService;
+import news_compiler.service.ArticleStoryService;
+import news_compiler.service.ArticleValidatorCache;
+import news_compiler.service.EncodedPayloadCache;
+import news_compiler.service.EncodedPayloadCache.Payload;
+import news_compiler.service.RecentArticlesSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -26,42 +54,394 @@ public class ArticleReaderController {
     @Autowired
     private ArticleService articleService;
 
+    /** Service pushing written articles to subscribed clients */
+    @Autowired
+    private ArticleEventService articleEventService;
+
+    /** Service holding the recent articles in memory */
+    @Autowired
+    private RecentArticlesSnapshotService recentArticlesSnapshotService;
+
+    /** Service counting the recent articles in each category and from each source */
+    @Autowired
+    private ArticleFacetService articleFacetService;
+
+    /** Service grouping the recent articles into stories */
+    @Autowired
+    private ArticleStoryService articleStoryService;
+
+    /** Cache of the validators of recently served articles */
+    @Autowired
+    private ArticleValidatorCache articleValidatorCache;
+
+    /** Cache of encoded and compressed responses */
+    @Autowired
+    private EncodedPayloadCache encodedPayloadCache;
+
+    /** Mapper used to encode responses before they are cached */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Converter whose mapper encodes CBOR responses before they are cached */
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
     /**
      * Returns articles fetched in the last 24 hours.
      * The article will be sorted by the date of publishing.
+     * <p>
+     * The response is encoded and compressed once per change to the articles, and sent gzipped if
+     * the client accepts it. It is sent as CBOR if the client prefers it to JSON.
+     * @param accept the media types accepted by the client, if any
+     * @param acceptEncoding the encodings accepted by the client, if any
      * @return a list of the most recently fetched articles
      */
     @GetMapping("/recent")
-    public List<ArticleDto> getRecentArticles() {
-        return articleService.getRecentlyFetched();
+    public ResponseEntity<byte[]> getRecentArticles(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // The full list changes whenever the snapshot of the window is rebuilt
+        RecentArticlesSnapshotService.Snapshot snapshot = recentArticlesSnapshotService.getSnapshot();
+        MediaType contentType = selectContentType(accept);
+        Payload payload = encodedPayloadCache.get("recent" + keySuffix(contentType), snapshot.getGeneration(), () -> {
+            byte[] encoded = encode(articleService.getRecentlyFetched(), contentType);
+            return Payload.of(encoded, DigestUtils.md5DigestAsHex(encoded), -1);
+        });
+
+        return encoded(payload, EncodedPayloadCache.selectEncoding(acceptEncoding), contentType, HttpHeaders.ACCEPT);
     }
 
     /**
      * Returns a lightweight version of the articles fetched in the last 24 hours.
      * These articles do not contain the body of the article, to reduce payload size.
+     * <p>
+     * The response carries an ETag and Last-Modified header, and conditional requests for an
+     * unchanged list are answered with 304 Not Modified. It is sent gzipped if the client accepts it,
+     * and as CBOR if the client prefers it to JSON.
+     * @param accept the media types accepted by the client, if any
+     * @param acceptEncoding the encodings accepted by the client, if any
      * @return a list of the most recently fetched articles with a null body.
      */
     @GetMapping("/recent/lite")
-    public List<ArticleDto> getRecentArticlesLite() {
-        return articleService.getRecentlyFetchedLite();
+    public ResponseEntity<byte[]> getRecentArticlesLite(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Serve the pre-encoded articles straight from memory, compressing them once per snapshot
+        RecentArticlesSnapshotService.Snapshot snapshot = recentArticlesSnapshotService.getSnapshot();
+        MediaType contentType = selectContentType(accept);
+        Payload payload = encodedPayloadCache.get("lite" + keySuffix(contentType), snapshot.getGeneration(), () -> {
+            if (MediaType.APPLICATION_JSON.equals(contentType))
+                return Payload.of(snapshot.getJson(), snapshot.getEtag(), snapshot.getLastModified().toEpochMilli());
+
+            byte[] encoded = encode(snapshot.getArticles(), contentType);
+            return Payload.of(encoded, DigestUtils.md5DigestAsHex(encoded), snapshot.getLastModified().toEpochMilli());
+        });
+
+        return encoded(payload, EncodedPayloadCache.selectEncoding(acceptEncoding), contentType, HttpHeaders.ACCEPT);
+    }
+
+    /**
+     * Returns a lightweight version of the articles in a category fetched in the last 24 hours.
+     * Articles are in the same order as {@link #getRecentArticlesLite(String, String)}.
+     * <p>
+     * The articles of each category are held separately in memory, so the cost of a request only
+     * depends on the number of articles in the category. Responses carry the same headers and are
+     * negotiated the same way as the unfiltered list.
+     * @param category the category of the articles
+     * @param accept the media types accepted by the client, if any
+     * @param acceptEncoding the encodings accepted by the client, if any
+     * @return a list of the most recently fetched articles in the category with a null body
+     */
+    @GetMapping(value = "/recent/lite", params = {"category", "!limit"})
+    public ResponseEntity<byte[]> getRecentArticlesLiteByCategory(@RequestParam Category category,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Encode and compress the category's articles once per snapshot
+        RecentArticlesSnapshotService.Snapshot snapshot = recentArticlesSnapshotService.getSnapshot();
+        MediaType contentType = selectContentType(accept);
+        String key = "lite:" + category + keySuffix(contentType);
+        Payload payload = encodedPayloadCache.get(key, snapshot.getGeneration(), () -> {
+            byte[] encoded = encode(snapshot.getArticles(category), contentType);
+            return Payload.of(encoded, DigestUtils.md5DigestAsHex(encoded), snapshot.getLastModified().toEpochMilli());
+        });
+
+        return encoded(payload, EncodedPayloadCache.selectEncoding(acceptEncoding), contentType, HttpHeaders.ACCEPT);
+    }
+
+    /**
+     * Returns a page of the articles fetched in the last 24 hours.
+     * Articles are in the same order as {@link #getRecentArticles(String, String)}.
+     * The page is sent as CBOR if the client prefers it to JSON, as for the full list.
+     * @param limit the maximum number of articles on the page
+     * @param cursor the cursor returned with the previous page, omitted for the first page
+     * @param accept the media types accepted by the client, if any
+     * @return the page of articles and the cursor for the next page
+     */
+    @GetMapping(value = "/recent", params = "limit")
+    public ResponseEntity<ArticlePageDto> getRecentArticlesPage(
+            @RequestParam int limit, @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        try {
+            return negotiated(articleService.getRecentlyFetchedPage(cursor, limit), accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Returns a page of the lightweight articles fetched in the last 24 hours.
+     * Articles are in the same order as {@link #getRecentArticlesLite(String, String)}.
+     * Pages cannot be filtered by category. The page is sent as CBOR if the client prefers it to
+     * JSON, as for the full list.
+     * @param limit the maximum number of articles on the page
+     * @param cursor the cursor returned with the previous page, omitted for the first page
+     * @param category must be omitted
+     * @param accept the media types accepted by the client, if any
+     * @return the page of articles with a null body and the cursor for the next page
+     */
+    @GetMapping(value = "/recent/lite", params = "limit")
+    public ResponseEntity<ArticlePageDto> getRecentArticlesLitePage(
+            @RequestParam int limit, @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String category,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (category != null)
+            return ResponseEntity.badRequest().build();
+
+        try {
+            return negotiated(articleService.getRecentlyFetchedLitePage(cursor, limit), accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Returns the number of articles in each category and from each source, counted over the
+     * last 24 hours or the last 7 days.
+     * The counts are kept in memory, so this does not query the database.
+     * @param window the window to count articles in, <code>DAY</code> if omitted
+     * @return the counts of every category, and of every source with at least one article
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<ArticleFacetsDto> getFacets(
+            @RequestParam(defaultValue = "DAY") ArticleFacetService.Window window) {
+        return ResponseEntity.ok(articleFacetService.getFacets(window));
+    }
+
+    /**
+     * Returns the stories covered by several sources among the articles fetched in the last 24
+     * hours, most widely covered first.
+     * The stories are kept in memory and updated as articles are written, so this does not query
+     * the database.
+     * @param limit the maximum number of stories to return
+     * @return the stories, or 400 if the limit is invalid
+     */
+    @GetMapping("/stories")
+    public ResponseEntity<List<ArticleStoryDto>> getStories(@RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(articleStoryService.getStories(limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Searches the title and body of every article.
+     * Articles containing any of the query's terms are returned, most relevant first, along with
+     * where the terms appear in each.
+     * @param q the terms to search for
+     * @param limit the maximum number of articles to return
+     * @return the best matching articles with a null body, or 503 if the index is still being built
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<ArticleSearchHitDto>> searchArticles(
+            @RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(articleService.searchArticles(q, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Streams the articles inserted or updated from now on, as Server-Sent Events.
+     * Each <code>articles</code> event holds a list of articles with a null body, as written in a
+     * batch. Each <code>articles-removed</code> event holds the IDs of articles updated into
+     * near-duplicates, which the client should drop as they have left the recent articles.
+     * A client reconnecting with <code>Last-Event-ID</code> is sent the events it missed, or
+     * a <code>resync</code> event if it missed too many, after which it should fetch the recent
+     * articles afresh.
+     * @param lastEventId the ID of the last event the client received, if it is reconnecting
+     * @return the stream of events, or 503 if there are already too many subscribers
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> getArticleEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .header("X-Accel-Buffering", "no")  // Keep proxies from holding back events
+                    .body(articleEventService.subscribe(lastEventId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
     }
 
     /**
      * Returns an article by its ID.
+     * <p>
+     * The response carries an ETag and Last-Modified header. Conditional requests for an article
+     * that has not changed since it was last served are answered with 304 Not Modified without
+     * reading it from the database. The article is encoded and compressed once per change, and
+     * sent gzipped if the client accepts it.
      * @param id the ID of the article to fetch
-     * @return the article with the given ID
+     * @param acceptEncoding the encodings accepted by the client, if any
+     * @param request the request, used to check its conditional headers
+     * @return the article with the given ID, or null if the article was not modified
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ArticleDto> getArticleById(@PathVariable Long id) {
+    public ResponseEntity<byte[]> getArticleById(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
         // Validate the ID
         if (id == null || id < 0)
             return ResponseEntity.badRequest().build();
 
-        // Fetch the article
-        ArticleDto article = articleService.getArticleById(id);
-        if (article == null)
+        String encoding = EncodedPayloadCache.selectEncoding(acceptEncoding);
+
+        // Answer from the cached validators if the client's copy is still current
+        ArticleValidatorCache.Validator cached = articleValidatorCache.get(id);
+        if (cached != null && request.checkNotModified(Payload.tag(cached.etag(), encoding), cached.lastModified()))
+            return null;
+
+        // Fetch the article, noting the data version first so its validators are never newer
+        long version = articleValidatorCache.currentVersion();
+        Payload payload = encodedPayloadCache.get("article:" + id, version, () -> {
+            ArticleDto article = articleService.getArticleById(id);
+            if (article == null)
+                return null;
+
+            ArticleValidatorCache.Validator validator = articleValidatorCache.put(version, article);
+            return Payload.of(toJson(article), validator.etag(), validator.lastModified());
+        });
+
+        if (payload == null)
             return ResponseEntity.notFound().build();
 
-        return ResponseEntity.ok(article);
+        return encoded(payload, encoding, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Builds a response holding a payload in the given encoding, along with its validators.
+     * @param payload the payload to send
+     * @param encoding the content coding to send it in
+     * @param contentType the media type of the payload
+     * @param vary the request headers other than <code>Accept-Encoding</code> the payload depends on
+     * @return the response
+     */
+    private static ResponseEntity<byte[]> encoded(Payload payload, String encoding, MediaType contentType,
+            String... vary) {
+        List<String> varyBy = new ArrayList<>(vary.length + 1);
+        varyBy.add(HttpHeaders.ACCEPT_ENCODING);
+        varyBy.addAll(Arrays.asList(vary));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(varyBy.toArray(String[]::new))
+                .eTag(payload.etag(encoding));
+        if (!EncodedPayloadCache.IDENTITY.equals(encoding))
+            response.header(HttpHeaders.CONTENT_ENCODING, encoding);
+        if (payload.lastModified() >= 0)
+            response.lastModified(payload.lastModified());
+
+        return response.body(payload.encoded(encoding));
+    }
+
+    /**
+     * Builds a response holding a value encoded by Spring MVC in the media type chosen by
+     * {@link #selectContentType(String)}, so it is negotiated as the pre-encoded lists are.
+     * @param body the value to send
+     * @param accept the value of the <code>Accept</code> header, or null if absent
+     * @return the response
+     * @param <T> the type of the value
+     */
+    private static <T> ResponseEntity<T> negotiated(T body, String accept) {
+        return ResponseEntity.ok()
+                .contentType(selectContentType(accept))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    /**
+     * Chooses the media type of an article list, given the request's <code>Accept</code> header.
+     * CBOR is only sent to clients listing it with a non-zero quality at least as high as JSON's,
+     * so clients accepting anything keep receiving JSON.
+     * @param accept the value of the <code>Accept</code> header, or null if absent
+     * @return <code>application/cbor</code> if the client prefers it, otherwise
+     *         <code>application/json</code>
+     */
+    private static MediaType selectContentType(String accept) {
+        if (accept == null)
+            return MediaType.APPLICATION_JSON;
+
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        double cborQuality = 0, jsonQuality = 0;
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR))
+                cborQuality = Math.max(cborQuality, mediaType.getQualityValue());
+            else if (mediaType.includes(MediaType.APPLICATION_JSON))
+                jsonQuality = Math.max(jsonQuality, mediaType.getQualityValue());
+        }
+
+        return cborQuality > 0 && cborQuality >= jsonQuality
+                ? MediaType.APPLICATION_CBOR
+                : MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Returns the suffix telling cached payloads of a media type apart from their JSON ones.
+     * @param contentType the media type of the payload
+     * @return the suffix of the payload's cache key
+     */
+    private static String keySuffix(MediaType contentType) {
+        return MediaType.APPLICATION_JSON.equals(contentType) ? "" : ":cbor";
+    }
+
+    /**
+     * Encodes a value in the given media type.
+     * @param value the value to encode
+     * @param contentType either <code>application/json</code> or <code>application/cbor</code>
+     * @return the encoded value
+     */
+    private byte[] encode(Object value, MediaType contentType) {
+        if (MediaType.APPLICATION_JSON.equals(contentType))
+            return toJson(value);
+
+        try {
+            return cborHttpMessageConverter.getObjectMapper().writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encodes a value as JSON, the same way it would be returned by a controller.
+     * @param value the value to encode
+     * @return the encoded value
+     */
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -1,16 +1,34 @@
 package news_compiler.controller;
 
+import news_compiler.dto.ArticleBatchStatusDto;
 import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticleIngestReportDto;
+import news_compiler.dto.ArticleWriteReportDto;
+import news_compiler.service.ArticleIngestService;
 import news_compiler.service.ArticleService;
+import news_compiler.service.ArticleWriteQueueService;
+import news_compiler.service.ArticleWriteResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Controller with various endpoints for writing articles to the database.
@@ -22,17 +40,127 @@ import java.util.List;
 @RequestMapping("/api/articles")
 @CrossOrigin("*")  // TODO: Restrict this
 public class ArticleWriterController {
+    /** Header holding the number of articles inserted */
+    public static final String INSERTED_HEADER = "X-Articles-Inserted";
+
+    /** Header holding the number of articles updated */
+    public static final String UPDATED_HEADER = "X-Articles-Updated";
+
+    /** Header holding the number of articles left unchanged */
+    public static final String UNCHANGED_HEADER = "X-Articles-Unchanged";
+
     /** Service for Article entities */
     @Autowired
     private ArticleService articleService;
 
+    /** Service for streaming articles into the database */
+    @Autowired
+    private ArticleIngestService articleIngestService;
+
+    /** Service queuing articles to be written in the background */
+    @Autowired
+    private ArticleWriteQueueService articleWriteQueueService;
+
+    /** How long clients are told to wait before retrying when the write queue is full */
+    @Value("${articles.write-queue.retry-after:PT5S}")
+    private Duration retryAfter;
+
     /**
      * Writes articles to the database.
+     * The number of articles inserted, updated and left unchanged is returned in headers.
      * @param articles a list of articles to write
      * @return a list of the written articles
      */
     @PostMapping
     public ResponseEntity<List<ArticleDto>> writeArticles(@RequestBody List<ArticleDto> articles) {
-        return ResponseEntity.ok(articleService.writeArticles(articles));
+        ArticleWriteResult result = articleService.upsertArticles(articles);
+
+        return ResponseEntity.ok()
+                .header(INSERTED_HEADER, Integer.toString(result.count(ArticleWriteResult.Outcome.INSERTED)))
+                .header(UPDATED_HEADER, Integer.toString(result.count(ArticleWriteResult.Outcome.UPDATED)))
+                .header(UNCHANGED_HEADER, Integer.toString(result.count(ArticleWriteResult.Outcome.UNCHANGED)))
+                .body(result.getArticles());
+    }
+
+    /**
+     * Writes articles to the database, reporting which articles were inserted, updated or left
+     * unchanged instead of returning the written articles.
+     * @param articles a list of articles to write
+     * @return the IDs of the articles with each outcome
+     */
+    @PostMapping(params = "report")
+    public ResponseEntity<ArticleWriteReportDto> writeArticlesWithReport(@RequestBody List<ArticleDto> articles) {
+        return ResponseEntity.ok(articleService.upsertArticles(articles).toReport());
+    }
+
+    /**
+     * Streams articles into the database from newline-delimited JSON, one article per line.
+     * The body may be gzip-compressed, indicated by a <code>Content-Encoding: gzip</code> header.
+     * <p>
+     * Articles are written in chunks as they arrive, so large uploads are never held in memory.
+     * @param contentEncoding the encoding of the request body, if any
+     * @param body the request body
+     * @return a report of the articles written and of any lines that failed
+     */
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ArticleIngestReportDto> streamArticles(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            InputStream body) {
+        // Decompress the body if needed
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            try {
+                body = new GZIPInputStream(body);
+            } catch (IOException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        } else if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding)) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+
+        return ResponseEntity.ok(articleIngestService.ingest(body));
+    }
+
+    /**
+     * Queues articles to be written to the database in the background.
+     * <p>
+     * The request returns as soon as the articles are queued. The returned status can be polled at
+     * the URL in the <code>Location</code> header until the batch is done. If the queue is full,
+     * the batch is refused with a <code>Retry-After</code> header.
+     * @param articles a list of articles to write
+     * @return the status of the queued batch
+     */
+    @PostMapping(params = "async")
+    public ResponseEntity<ArticleBatchStatusDto> queueArticles(@RequestBody List<ArticleDto> articles) {
+        ArticleBatchStatusDto status;
+        try {
+            status = articleWriteQueueService.enqueue(articles);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        // The queue is full
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter.toSeconds()))
+                    .build();
+        }
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/articles/batches/" + status.getId()))
+                .body(status);
+    }
+
+    /**
+     * Returns the status of a batch of articles queued to be written.
+     * @param id the ID of the batch
+     * @return the status of the batch
+     */
+    @GetMapping("/batches/{id}")
+    public ResponseEntity<ArticleBatchStatusDto> getBatchStatus(@PathVariable String id) {
+        ArticleBatchStatusDto status = articleWriteQueueService.getStatus(id);
+        if (status == null)
+            return ResponseEntity.notFound().build();
+
+        return ResponseEntity.ok(status);
     }
 }
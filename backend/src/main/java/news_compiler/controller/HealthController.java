@@ -1,6 +1,10 @@
 package news_compiler.controller;
 
+import news_compiler.dto.CacheStatsDto;
+import news_compiler.service.ArticleCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -11,6 +15,10 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/health")
 @CrossOrigin(origins = "*")
 public class HealthController {
+    /** Service reporting on the article cache */
+    @Autowired
+    private ArticleCacheService articleCacheService;
+
     /**
      * Returns a simple message to indicate that the server is running.
      * @return a simple message
@@ -19,4 +27,13 @@ public class HealthController {
     public String ping() {
         return "pong";
     }
+
+    /**
+     * Returns the hit, miss and eviction counters of the article cache, used to size it.
+     * @return the counters of the article cache
+     */
+    @GetMapping("/cache/articles")
+    public CacheStatsDto getArticleCacheStats() {
+        return articleCacheService.getStats();
+    }
 }
@@ -0,0 +1,48 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Status of a batch of articles queued to be written asynchronously.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class ArticleBatchStatusDto {
+    /** Unique identifier for the batch */
+    private String id;
+
+    /** Where the batch is in the write process */
+    private State state;
+
+    /** Number of articles in the batch */
+    private int size;
+
+    /** Number of articles inserted. Zero until the batch is done, or those written before it failed. */
+    private int inserted;
+
+    /** Number of articles updated. Zero until the batch is done, or those written before it failed. */
+    private int updated;
+
+    /** Number of articles left unchanged. Zero until the batch is done, or those written before it failed. */
+    private int unchanged;
+
+    /** Description of the error if the batch failed, otherwise null */
+    private String error;
+
+    /**
+     * Where a batch is in the write process.
+     */
+    public enum State {
+        /** Waiting in the queue */
+        QUEUED,
+        /** Being written to the database */
+        WRITING,
+        /** Written to the database */
+        DONE,
+        /** Could not be written to the database */
+        FAILED
+    }
+}
@@ -1,5 +1,6 @@
 package news_compiler.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,7 +17,7 @@ import java.time.OffsetDateTime;
  */
 @Getter
 @Setter
-@AllArgsConstructor
+@AllArgsConstructor(onConstructor_ = @JsonCreator)  // Used by Jackson over the body-less one
 public class ArticleDto {
     /** Unique identifier for the article */
     private Long id;
@@ -45,6 +46,22 @@ public class ArticleDto {
     /** The category of the article */
     private Category category;
 
+    /**
+     * Constructor for an ArticleDto with no body — null body.
+     * Used when the body is not needed, to avoid reading it from the database.
+     * @param id Unique identifier for the article
+     * @param title Title of the article
+     * @param timePublished Time the article was published
+     * @param timeFetched Time the article was fetched
+     * @param source The outlet from which the article was fetched
+     * @param articleUrl URL to the where the article was scraped from
+     * @param imageUrl URL to the image associated with the article
+     * @param category The category of the article
+     */
+    public ArticleDto(Long id, String title, OffsetDateTime timePublished, OffsetDateTime timeFetched, String source, String articleUrl, String imageUrl, Category category) {
+        this(id, title, null, timePublished, timeFetched, source, articleUrl, imageUrl, category);
+    }
+
     @Override
     public String toString() {
         return "ArticleDto{" +
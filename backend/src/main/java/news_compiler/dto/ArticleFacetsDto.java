@@ -0,0 +1,23 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import news_compiler.entity.Category;
+
+import java.util.Map;
+
+/**
+ * Represents the number of recent articles in each category and from each source.
+ * Used by the UI to show how many articles each filter would match.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class ArticleFacetsDto {
+    /** Number of articles in each category, including empty categories */
+    private Map<Category, Integer> categories;
+
+    /** Number of articles from each source. Sources without articles are absent. */
+    private Map<String, Integer> sources;
+}
@@ -0,0 +1,50 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the outcome of streaming articles into the database.
+ * Counts cover the whole stream; errors are listed up to a limit.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ArticleIngestReportDto {
+    /** Number of non-blank lines read */
+    private long lines;
+
+    /** Number of articles inserted */
+    private long inserted;
+
+    /** Number of articles updated */
+    private long updated;
+
+    /** Number of articles left unchanged */
+    private long unchanged;
+
+    /** Number of lines that could not be written */
+    private long failed;
+
+    /** The first errors encountered, in the order they occurred */
+    private List<LineError> errors = new ArrayList<>();
+
+    /**
+     * An error for a single line of the stream.
+     */
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    public static class LineError {
+        /** Line number within the stream, starting from 1 */
+        private long line;
+
+        /** Description of the error */
+        private String message;
+    }
+}
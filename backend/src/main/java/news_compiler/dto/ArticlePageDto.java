@@ -0,0 +1,22 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Represents a single page of articles.
+ * Pages are chained by an opaque cursor, which is passed back to fetch the next page.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class ArticlePageDto {
+    /** Articles on this page, in the same order as the unpaged list */
+    private List<ArticleDto> articles;
+
+    /** Cursor for fetching the next page. Null if this is the last page. */
+    private String nextCursor;
+}
@@ -0,0 +1,29 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Represents an article matching a search.
+ * Highlights are pairs of offsets into the article's title or body, marking where a term of the
+ * query appears: the first offset is inclusive and the second is exclusive.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class ArticleSearchHitDto {
+    /** The matching article, with a null body */
+    private ArticleDto article;
+
+    /** Relevance of the article to the query. Only meaningful relative to other hits. */
+    private float score;
+
+    /** Where the terms of the query appear in the title */
+    private List<int[]> titleHighlights;
+
+    /** Where the terms of the query appear in the body */
+    private List<int[]> bodyHighlights;
+}
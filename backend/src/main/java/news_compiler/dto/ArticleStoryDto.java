@@ -0,0 +1,34 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Represents a story: recent articles from several sources covering the same event.
+ * Used by the UI to show how widely an event is covered.
+ * Immutable, as the same instances are served to every reader until the stories change.
+ */
+@Getter
+@AllArgsConstructor
+public class ArticleStoryDto {
+    /** Title of the article most representative of the story */
+    private final String headline;
+
+    /** ID of the article most representative of the story */
+    private final Long articleId;
+
+    /** Number of distinct sources covering the story */
+    private final int coverage;
+
+    /** Sources covering the story, in alphabetical order */
+    private final List<String> sources;
+
+    /** IDs of the articles in the story, most recently fetched first */
+    private final List<Long> articleIds;
+
+    /** Time the most recent article in the story was fetched */
+    private final OffsetDateTime lastFetched;
+}
@@ -0,0 +1,25 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Reports what happened to each article in a batch written by the scraper.
+ * Articles are identified by their ID and listed in the order they were given.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class ArticleWriteReportDto {
+    /** IDs of articles that did not exist and were inserted */
+    private List<Long> inserted;
+
+    /** IDs of articles that existed and whose content changed */
+    private List<Long> updated;
+
+    /** IDs of articles that existed with the same content and were left untouched */
+    private List<Long> unchanged;
+}
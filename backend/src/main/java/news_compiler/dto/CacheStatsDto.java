@@ -0,0 +1,34 @@
+package news_compiler.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Counters describing how well a cache is performing, used to size it.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class CacheStatsDto {
+    /** Number of lookups that found an entry */
+    private long hits;
+
+    /** Number of lookups that did not find an entry */
+    private long misses;
+
+    /** Number of entries evicted to stay within the maximum weight */
+    private long evictions;
+
+    /** Total weight of the evicted entries */
+    private long evictionWeight;
+
+    /** Approximate number of entries held */
+    private long size;
+
+    /** Total weight of the entries held */
+    private long weight;
+
+    /** Maximum total weight of the entries held */
+    private long maximumWeight;
+}
@@ -1,16 +1,26 @@
 package news_compiler.entity;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.OffsetDateTime;
 
@@ -26,21 +36,42 @@ import java.time.OffsetDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "articles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Article.CACHE_REGION)
+@EntityListeners(ArticleListener.class)
+@Table(name = "articles", indexes = {
+        // Serves the "recent" window: range scan on fetch time, publish time read from the index
+        @Index(name = "idx_articles_time_fetched", columnList = "time_fetched, time_published"),
+        // Serves paging through the window in sort order without a filesort
+        @Index(name = "idx_articles_time_published", columnList = "time_published, time_fetched, id"),
+        // Serves looking articles up by title when writing
+        @Index(name = "idx_articles_title_key", columnList = "title_key")
+})
 public class Article {
+    /** Name of the second-level cache region holding articles, configured in application.conf */
+    public static final String CACHE_REGION = "articles";
+
     // SQL date type: https://www.w3schools.com/sql/sql_datatypes.asp
 
     /** Unique identifier for the article */
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "articles_seq")
+    @SequenceGenerator(name = "articles_seq", allocationSize = 50)  // IDs are reserved 50 at a time
     private Long id;
 
-    /** Title of the article. Cannot be the same as another article */
-    @Column(unique = true)
+    /**
+     * Title of the article. Cannot be the same as another article.
+     * The unique key is not mapped, as the table's partitioning decides where it is kept; see
+     * <code>ArticleMigrationService.addTitleKey</code>.
+     */
     private String title;
 
-    /** Body of the article. */
+    /**
+     * Body of the article.
+     * Stored as text, or as binary once compression is enabled. See {@link ArticleBodyConverter}.
+     */
     @Column(columnDefinition = "LONGTEXT")
+    @Convert(converter = ArticleBodyConverter.class)
     private String body;
 
     /** Time the article was published. */
@@ -66,6 +97,39 @@ public class Article {
     @Enumerated(EnumType.STRING)
     private Category category;
 
+    /**
+     * Hash of the title, ignoring case and accents as the title's unique key does. Compact key for
+     * looking up articles by title.
+     */
+    private Long titleKey;
+
+    /** Hash of the content, excluding the time fetched. Used to detect unchanged articles. */
+    private Long contentHash;
+
+    /** MinHash signature of the body, or null if it is too short. Used to detect near-duplicate articles. */
+    @Column(columnDefinition = "VARBINARY(" + ArticleHasher.SIGNATURE_LENGTH * Integer.BYTES + ")")
+    private byte[] bodySignature;
+
+    /** ID of the article this one nearly duplicates, or null if it is an original */
+    private Long duplicateOf;
+
+    /**
+     * Constructor for an Article entity without its hashes — they are computed when the article is
+     * written.
+     * @param id Unique identifier for the article
+     * @param title Title of the article
+     * @param body Body of the article
+     * @param timePublished Time the article was published
+     * @param timeFetched Time the article was fetched
+     * @param source The outlet from which the article was fetched
+     * @param articleUrl URL to the where the article was scraped from
+     * @param imageUrl URL to the image associated with the article
+     * @param category The category of the article
+     */
+    public Article (Long id, String title, String body, OffsetDateTime timePublished, OffsetDateTime timeFetched, String source, String articleUrl, String imageUrl, Category category) {
+        this(id, title, body, timePublished, timeFetched, source, articleUrl, imageUrl, category, null, null, null, null);
+    }
+
     /**
      * Constructor for an Article entity with no ID — null id.
      * @param title Title of the article
@@ -80,4 +144,16 @@ public class Article {
     public Article (String title, String body, OffsetDateTime timePublished, OffsetDateTime timeFetched, String source, String articleUrl, String imageUrl, Category category) {
         this(null, title, body, timePublished, timeFetched, source, articleUrl, imageUrl, category);
     }
+
+    /**
+     * Computes the hashes of the article's title and content, and the signature of its body.
+     * Called automatically before the article is written to the database.
+     */
+    @PrePersist
+    @PreUpdate
+    public void updateHashes() {
+        titleKey = ArticleHasher.hashTitleKey(title);
+        contentHash = ArticleHasher.hashContent(body, timePublished, source, articleUrl, imageUrl, category);
+        bodySignature = ArticleHasher.signBody(body);
+    }
 }
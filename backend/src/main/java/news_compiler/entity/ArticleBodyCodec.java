@@ -0,0 +1,176 @@
+package news_compiler.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes article bodies as they are stored in the database.
+ * <p>
+ * Bodies are stored either as plain UTF-8, as they always were, or compressed with deflate using a
+ * preset dictionary of common news phrases. Compressed bodies start with a zero byte followed by
+ * the format, which text never does, so both can be read from the same column. A body starting
+ * with a NUL character is stored with the plain format's header to keep it unambiguous.
+ * <p>
+ * The dictionary of a format must never change, as the bodies written with it could no longer be
+ * read. A new dictionary needs a new format.
+ */
+public class ArticleBodyCodec {
+    /** First byte of every body stored with a header */
+    private static final byte HEADER = 0;
+
+    /** Format of a body stored as UTF-8 after a header */
+    private static final byte FORMAT_PLAIN = 0;
+
+    /** Format of a body compressed with deflate and {@link #DICTIONARY_V1} */
+    private static final byte FORMAT_DEFLATE_V1 = 1;
+
+    /** Length of the header of an encoded body */
+    private static final int HEADER_LENGTH = 2;
+
+    /** Bodies shorter than this many bytes are stored as plain text, as compressing saves little */
+    public static final int MIN_COMPRESSED_LENGTH = 128;
+
+    /**
+     * Preset dictionary for {@link #FORMAT_DEFLATE_V1}.
+     * Deflate can refer back to these phrases from the start of a body, which helps the short
+     * bodies most. Phrases are ordered from least to most common, as closer ones are cheaper to
+     * refer to.
+     */
+    private static final byte[] DICTIONARY_V1 = String.join("",
+            "Associated Press contributed to this report. Follow us on social media. ",
+            "Copyright All rights reserved. This material may not be published, broadcast, rewritten ",
+            "or redistributed. Sign up for our newsletter. Click here to read more. ",
+            "The White House Supreme Court Congress Senate House of Representatives Republican Democrat ",
+            "administration President Trump Biden Vice President governor mayor police officials ",
+            "investigation according to the report, in a statement on Monday Tuesday Wednesday Thursday ",
+            "Friday Saturday Sunday January February March April May June July August September October ",
+            "November December United States Americans American the country the world government ",
+            "percent million billion thousands of people the company's chief executive federal state ",
+            "local authorities election voters campaign economy market inflation interest rates ",
+            "climate weather storm health care hospital school students children families community ",
+            "however, because of the first time the last year this week last week on Friday. ",
+            "It was not immediately clear whether a spokesperson for did not immediately respond ",
+            "to a request for comment. told reporters that he said she said they said. ",
+            "would have been could be should be will be has been have been had been ",
+            "more than less than at least as well as one of the some of the part of the ",
+            "after the before the during the about the over the into the from the with the ",
+            "\n\n\"We are going to\" that it is that they were which was who had, and the ",
+            "in the of the to the on the for the at the by the and a is a was a said. ",
+            "The ").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Encodes a body for storage.
+     * @param body the body, may be null
+     * @param compress whether to compress the body, if doing so makes it smaller
+     * @return the encoded body, or null if the body is null
+     */
+    public static byte[] encode(String body, boolean compress) {
+        if (body == null)
+            return null;
+
+        byte[] plain = body.getBytes(StandardCharsets.UTF_8);
+        if (compress && plain.length >= MIN_COMPRESSED_LENGTH) {
+            byte[] compressed = deflate(plain);
+            if (compressed.length < plain.length)
+                return compressed;
+        }
+
+        if (plain.length == 0 || plain[0] != HEADER)
+            return plain;
+
+        // The body starts with a NUL character, which would be mistaken for a header
+        byte[] encoded = new byte[HEADER_LENGTH + plain.length];
+        encoded[0] = HEADER;
+        encoded[1] = FORMAT_PLAIN;
+        System.arraycopy(plain, 0, encoded, HEADER_LENGTH, plain.length);
+        return encoded;
+    }
+
+    /**
+     * Decodes a stored body.
+     * @param encoded the body as stored, may be null
+     * @return the body, or null if the stored body is null
+     * @throws IllegalArgumentException if the body is stored in an unknown format or is corrupt
+     */
+    public static String decode(byte[] encoded) {
+        if (encoded == null)
+            return null;
+        if (!isEncoded(encoded))
+            return new String(encoded, StandardCharsets.UTF_8);
+
+        return switch (encoded[1]) {
+            case FORMAT_PLAIN -> new String(encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH,
+                    StandardCharsets.UTF_8);
+            case FORMAT_DEFLATE_V1 -> new String(inflate(encoded), StandardCharsets.UTF_8);
+            default -> throw new IllegalArgumentException("Unknown body format " + encoded[1]);
+        };
+    }
+
+    /**
+     * Returns whether a stored body starts with a header, rather than being plain UTF-8.
+     * @param stored the body as stored
+     * @return true if the body starts with a header
+     */
+    public static boolean isEncoded(byte[] stored) {
+        return stored.length >= HEADER_LENGTH && stored[0] == HEADER;
+    }
+
+    /**
+     * Compresses text with the preset dictionary.
+     * @param plain the UTF-8 text
+     * @return the header followed by the compressed text
+     */
+    private static byte[] deflate(byte[] plain) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(plain);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(plain.length / 2 + HEADER_LENGTH);
+            output.write(HEADER);
+            output.write(FORMAT_DEFLATE_V1);
+
+            byte[] buffer = new byte[Math.min(plain.length, 8192)];
+            while (!deflater.finished())
+                output.write(buffer, 0, deflater.deflate(buffer));
+
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses text compressed with the preset dictionary.
+     * @param encoded the header followed by the compressed text
+     * @return the UTF-8 text
+     * @throws IllegalArgumentException if the compressed text is corrupt
+     */
+    private static byte[] inflate(byte[] encoded) {
+        Inflater inflater = new Inflater(true);
+        try {
+            // Raw deflate streams do not ask for their dictionary, so it is set up front
+            inflater.setDictionary(DICTIONARY_V1);
+            inflater.setInput(encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(encoded.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalArgumentException("Compressed body is truncated");
+                output.write(buffer, 0, length);
+            }
+
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed body is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package news_compiler.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Stores article bodies with {@link ArticleBodyCodec}.
+ * <p>
+ * Bodies are compressed when written only if <code>articles.compression.enabled</code> is set,
+ * which also has the column converted to binary at startup. Compressed and plain bodies can both
+ * always be read, so turning compression off again leaves existing articles readable.
+ * <p>
+ * Hibernate creates the converter through Spring, which supplies the setting.
+ */
+@Converter
+public class ArticleBodyConverter implements AttributeConverter<String, byte[]> {
+    /** Whether bodies are compressed when written */
+    @Value("${articles.compression.enabled:false}")
+    private boolean compress;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String body) {
+        return ArticleBodyCodec.encode(body, compress);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return ArticleBodyCodec.decode(stored);
+    }
+}
@@ -0,0 +1,207 @@
+package news_compiler.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the compact hashes stored alongside each article.
+ * Hashes are the first 64 bits of a SHA-256 digest, except for the body's signature, which is a
+ * MinHash.
+ */
+public class ArticleHasher {
+    /** Marks a null field, so that null and empty strings hash differently */
+    private static final byte NULL_MARKER = 0;
+
+    /** Separates fields, so that moving text between fields changes the hash */
+    private static final byte SEPARATOR = 1;
+
+    /** Accents and other marks left as separate characters once a title is decomposed */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /** Number of hashes in the signature of a body */
+    public static final int SIGNATURE_LENGTH = 64;
+
+    /** Number of consecutive words signed together */
+    private static final int SHINGLE_LENGTH = 3;
+
+    /** Fewest runs of words a body must have to be signed */
+    private static final int MIN_SHINGLES = 16;
+
+    /**
+     * Seed of each hash function of a signature. Derived rather than random, as they must never
+     * change once signatures are stored.
+     */
+    private static final long[] SIGNATURE_SEEDS = new long[SIGNATURE_LENGTH];
+
+    static {
+        for (int k = 0; k < SIGNATURE_LENGTH; ++k)
+            SIGNATURE_SEEDS[k] = mix(k + 1);
+    }
+
+    /**
+     * Hashes the title of an article exactly as it is written.
+     * @param title the title of the article
+     * @return the hash of the title
+     */
+    public static long hashTitle(String title) {
+        MessageDigest digest = newDigest();
+        update(digest, title);
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Hashes the title of an article as the database compares titles.
+     * Used as a compact key for looking articles up by title, so that titles the database holds to
+     * be the same share a key. See {@link #normalizeTitle(String)}.
+     * @param title the title of the article
+     * @return the hash of the normalized title
+     */
+    public static long hashTitleKey(String title) {
+        return hashTitle(normalizeTitle(title));
+    }
+
+    /**
+     * Reduces a title to the form in which the database compares titles.
+     * <p>
+     * The title column's collation ignores case and accents, so its unique key treats titles
+     * differing only in those as the same title. Titles are decomposed, stripped of their accents
+     * and lower-cased to match, and trailing spaces, which some collations also ignore, are dropped.
+     * Folding a little more than the collation only turns an insert into an update, while folding
+     * less would make the insert fail on the unique key.
+     * @param title the title of the article
+     * @return the normalized title, or null if the title is null
+     */
+    public static String normalizeTitle(String title) {
+        if (title == null)
+            return null;
+
+        String decomposed = Normalizer.normalize(title, Normalizer.Form.NFKD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).stripTrailing();
+    }
+
+    /**
+     * Hashes the content of an article.
+     * <p>
+     * The time fetched is left out, as the scraper stamps every article with the time of the scrape
+     * and would otherwise make every resubmission look changed. The time published is hashed to the
+     * second, the precision it is stored with.
+     * @param body Body of the article
+     * @param timePublished Time the article was published
+     * @param source The outlet from which the article was fetched
+     * @param articleUrl URL to the where the article was scraped from
+     * @param imageUrl URL to the image associated with the article
+     * @param category The category of the article
+     * @return the hash of the content
+     */
+    public static long hashContent(String body, OffsetDateTime timePublished, String source,
+                                   String articleUrl, String imageUrl, Category category) {
+        MessageDigest digest = newDigest();
+        update(digest, body);
+        update(digest, timePublished == null ? null : Long.toString(timePublished.toEpochSecond()));
+        update(digest, source);
+        update(digest, articleUrl);
+        update(digest, imageUrl);
+        update(digest, category == null ? null : category.name());
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Signs the body of an article, so that bodies sharing most of their text get similar
+     * signatures.
+     * <p>
+     * The signature is a MinHash of every run of {@value SHINGLE_LENGTH} consecutive words,
+     * ignoring case and punctuation: the smallest hash of any run under each of
+     * {@value SIGNATURE_LENGTH} hash functions. The fraction of positions at which two signatures
+     * agree estimates the fraction of runs the bodies share.
+     * @param body the body of the article
+     * @return the {@value SIGNATURE_LENGTH} hashes as big-endian integers, or null if the body is
+     * too short to sign reliably
+     */
+    public static byte[] signBody(String body) {
+        if (body == null)
+            return null;
+
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        long[] words = new long[SHINGLE_LENGTH];
+        int wordCount = 0;
+        int shingles = 0;
+
+        int start = -1;
+        for (int i = 0; i <= body.length(); ++i) {
+            boolean inWord = i < body.length() && Character.isLetterOrDigit(body.charAt(i));
+            if (inWord && start < 0)
+                start = i;
+            if (inWord || start < 0)
+                continue;
+
+            // Hash the word, and the run of words it ends once there are enough
+            words[wordCount++ % SHINGLE_LENGTH] = mix(body.substring(start, i).toLowerCase().hashCode());
+            start = -1;
+            if (wordCount < SHINGLE_LENGTH)
+                continue;
+
+            long shingle = 0;
+            for (int j = wordCount - SHINGLE_LENGTH; j < wordCount; ++j)
+                shingle = shingle * 31 + words[j % SHINGLE_LENGTH];
+
+            for (int k = 0; k < SIGNATURE_LENGTH; ++k)
+                signature[k] = Math.min(signature[k], (int) (mix(shingle ^ SIGNATURE_SEEDS[k]) >>> 33));
+            ++shingles;
+        }
+
+        if (shingles < MIN_SHINGLES)
+            return null;
+
+        ByteBuffer bytes = ByteBuffer.allocate(SIGNATURE_LENGTH * Integer.BYTES);
+        bytes.asIntBuffer().put(signature);
+        return bytes.array();
+    }
+
+    /**
+     * Spreads the bits of a value over a 64-bit hash, using the finalizer of MurmurHash3.
+     * @param value the value to hash
+     * @return the hash
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Adds a field to a digest.
+     * @param digest the digest to add to
+     * @param field the field to add, which may be null
+     */
+    private static void update(MessageDigest digest, String field) {
+        if (field == null)
+            digest.update(NULL_MARKER);
+        else
+            digest.update(field.getBytes(StandardCharsets.UTF_8));
+
+        digest.update(SEPARATOR);
+    }
+
+    /**
+     * Creates a new SHA-256 digest.
+     * @return a new digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
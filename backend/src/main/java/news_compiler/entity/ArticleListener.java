@@ -0,0 +1,46 @@
+package news_compiler.entity;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import news_compiler.service.ArticleRetentionService;
+import news_compiler.service.DataVersionService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+/**
+ * Listener for changes to Article entities.
+ * Reports every change to the <code>DataVersionService</code>, whichever path it is made through.
+ */
+public class ArticleListener {
+    /** Service tracking the version of the article data */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** Service keeping titles unique once the table is partitioned, if retention is enabled */
+    @Autowired
+    private ObjectProvider<ArticleRetentionService> articleRetentionService;
+
+    /**
+     * Records that an article is about to be created or updated.
+     * @param article the article being changed
+     */
+    @PrePersist
+    @PreUpdate
+    public void beforeChange(Article article) {
+        dataVersionService.changed();
+    }
+
+    /**
+     * Records that an article is about to be deleted, and releases its title in the same
+     * transaction.
+     * @param article the article being deleted
+     */
+    @PreRemove
+    public void beforeRemove(Article article) {
+        dataVersionService.changed();
+        articleRetentionService.ifAvailable(retention -> retention.removeTitles(List.of(article.getId())));
+    }
+}
@@ -3,6 +3,7 @@ package news_compiler.entity;
 /**
  * Categories which a news article can belong to.
  * These may be extended if necessary.
+ * CBOR responses send categories by their ordinal, so new categories must be added at the end.
  */
 public enum Category {
     UNITED_STATES_POLITICS,
@@ -45,4 +45,21 @@ public class ArticleMapper {
             articleDto.getCategory()
         );
     }
+
+    /**
+     * Copies the fields of an ArticleDto onto an existing Article DAO.
+     * The ID of the Article is left unchanged.
+     * @param articleDto the ArticleDto to copy from
+     * @param article the Article to copy onto
+     */
+    public static void copyDtoToArticle(ArticleDto articleDto, Article article) {
+        article.setTitle(articleDto.getTitle());
+        article.setBody(articleDto.getBody());
+        article.setTimePublished(articleDto.getTimePublished());
+        article.setTimeFetched(articleDto.getTimeFetched());
+        article.setSource(articleDto.getSource());
+        article.setArticleUrl(articleDto.getArticleUrl());
+        article.setImageUrl(articleDto.getImageUrl());
+        article.setCategory(articleDto.getCategory());
+    }
 }
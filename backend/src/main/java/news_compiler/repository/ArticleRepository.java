@@ -1,10 +1,16 @@
 package news_compiler.repository;
 
+import news_compiler.dto.ArticleDto;
 import news_compiler.entity.Article;
+import news_compiler.entity.Category;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +20,13 @@ import java.util.Optional;
  */
 @Repository
 public interface ArticleRepository extends JpaRepository<Article, Long> {
+    /**
+     * Selects articles as <code>ArticleDto</code>s without their body.
+     * The body column is never read, so queries using this only touch the small columns.
+     */
+    String SELECT_LITE = "SELECT new news_compiler.dto.ArticleDto(a.id, a.title, a.timePublished, " +
+            "a.timeFetched, a.source, a.articleUrl, a.imageUrl, a.category) FROM Article a ";
+
     /**
      * Returns all articles in the database, ordered by date at which they were fetched.
      * @return a list of all articles in the database, ordered by date at which they were fetched
@@ -28,4 +41,239 @@ public interface ArticleRepository extends JpaRepository<Article, Long> {
      * @return the article with the given title
      */
     Article findByTitle(String title);
+
+    /**
+     * Returns the articles with any of the given title keys.
+     * Distinct titles may share a key, so the titles of the results must still be compared.
+     *
+     * @param titleKeys the keys of the titles of the articles
+     * @return the articles with the given title keys
+     */
+    List<Article> findAllByTitleKeyIn(Collection<Long> titleKeys);
+
+    /**
+     * Returns articles whose hashes have not been computed yet.
+     *
+     * @param limit the maximum number of articles to return
+     * @return articles without hashes
+     */
+    List<Article> findByTitleKeyIsNull(Limit limit);
+
+    /**
+     * Returns all articles fetched after the given time, sorted by the time of publishing.
+     * Articles without a publishing time are placed at the end, ordered by the time they were
+     * fetched. The body of each article is left null. Articles nearly duplicating another are left
+     * out, here and in the paged queries below.
+     * <p>
+     * The filter is served by the <code>idx_articles_time_fetched</code> index, so only the rows
+     * inside the window are read regardless of the size of the table.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @return the articles fetched after the given time, most recently published first
+     */
+    @Query(SELECT_LITE + "WHERE a.timeFetched > :since AND a.duplicateOf IS NULL " +
+            "ORDER BY a.timePublished DESC NULLS LAST, a.timeFetched DESC, a.id DESC")
+    List<ArticleDto> findLiteFetchedSince(@Param("since") OffsetDateTime since);
+
+    /**
+     * Returns the first articles with a publishing time that were fetched after the given time.
+     * Articles are sorted by time published, then time fetched, then ID, all descending.
+     * The body of each article is left null.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @param limit the maximum number of articles to return
+     * @return the first published articles in the window
+     */
+    @Query(SELECT_LITE + "WHERE a.timeFetched > :since AND a.duplicateOf IS NULL AND a.timePublished IS NOT NULL " +
+            "ORDER BY a.timePublished DESC, a.timeFetched DESC, a.id DESC")
+    List<ArticleDto> findLitePublishedFetchedSince(@Param("since") OffsetDateTime since, Limit limit);
+
+    /**
+     * Returns the articles with a publishing time that were fetched after the given time and that
+     * follow the given sort key.
+     * Articles are sorted by time published, then time fetched, then ID, all descending.
+     * The body of each article is left null.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @param published the time published of the last article already returned
+     * @param fetched the time fetched of the last article already returned
+     * @param id the ID of the last article already returned
+     * @param limit the maximum number of articles to return
+     * @return the published articles in the window following the given sort key
+     */
+    @Query(SELECT_LITE + "WHERE a.timeFetched > :since AND a.duplicateOf IS NULL AND a.timePublished IS NOT NULL " +
+            "AND (a.timePublished < :published OR (a.timePublished = :published " +
+            "AND (a.timeFetched < :fetched OR (a.timeFetched = :fetched AND a.id < :id)))) " +
+            "ORDER BY a.timePublished DESC, a.timeFetched DESC, a.id DESC")
+    List<ArticleDto> findLitePublishedFetchedSinceAfter(@Param("since") OffsetDateTime since,
+                                                        @Param("published") OffsetDateTime published,
+                                                        @Param("fetched") OffsetDateTime fetched,
+                                                        @Param("id") Long id,
+                                                        Limit limit);
+
+    /**
+     * Returns the first articles without a publishing time that were fetched after the given time.
+     * Articles are sorted by time fetched, then ID, both descending.
+     * The body of each article is left null.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @param limit the maximum number of articles to return
+     * @return the first unpublished articles in the window
+     */
+    @Query(SELECT_LITE + "WHERE a.timeFetched > :since AND a.duplicateOf IS NULL AND a.timePublished IS NULL " +
+            "ORDER BY a.timeFetched DESC, a.id DESC")
+    List<ArticleDto> findLiteUnpublishedFetchedSince(@Param("since") OffsetDateTime since, Limit limit);
+
+    /**
+     * Returns the articles without a publishing time that were fetched after the given time and
+     * that follow the given sort key.
+     * Articles are sorted by time fetched, then ID, both descending.
+     * The body of each article is left null.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @param fetched the time fetched of the last article already returned
+     * @param id the ID of the last article already returned
+     * @param limit the maximum number of articles to return
+     * @return the unpublished articles in the window following the given sort key
+     */
+    @Query(SELECT_LITE + "WHERE a.timeFetched > :since AND a.duplicateOf IS NULL AND a.timePublished IS NULL " +
+            "AND (a.timeFetched < :fetched OR (a.timeFetched = :fetched AND a.id < :id)) " +
+            "ORDER BY a.timeFetched DESC, a.id DESC")
+    List<ArticleDto> findLiteUnpublishedFetchedSinceAfter(@Param("since") OffsetDateTime since,
+                                                          @Param("fetched") OffsetDateTime fetched,
+                                                          @Param("id") Long id,
+                                                          Limit limit);
+
+    /**
+     * Returns the bodies of the articles with the given IDs.
+     * Used to fill in the bodies of articles fetched with {@link #SELECT_LITE}. The bound on the
+     * time fetched lets the database skip the partitions of older articles.
+     *
+     * @param ids the IDs of the articles
+     * @param since the earliest time any of the articles was fetched
+     * @return the ID and body of each article found
+     */
+    @Query("SELECT a.id AS id, a.body AS body FROM Article a WHERE a.id IN :ids AND a.timeFetched >= :since")
+    List<ArticleBody> findBodiesByIdInFetchedSince(@Param("ids") Collection<Long> ids,
+                                                   @Param("since") OffsetDateTime since);
+
+    /**
+     * Returns the text of the articles following the given ID, in order of ID.
+     * Used to read every article a page at a time.
+     *
+     * @param id the ID after which to start
+     * @param limit the maximum number of articles to return
+     * @return the ID, title and body of the articles following the given ID
+     */
+    @Query("SELECT a.id AS id, a.title AS title, a.body AS body FROM Article a WHERE a.id > :id ORDER BY a.id")
+    List<ArticleText> findTextsByIdGreaterThan(@Param("id") Long id, Limit limit);
+
+    /**
+     * Returns the fields counted by the facets of the articles fetched after the given time.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @return the category, source and time fetched of each article in the window
+     */
+    @Query("SELECT a.category AS category, a.source AS source, a.timeFetched AS timeFetched " +
+            "FROM Article a WHERE a.timeFetched > :since")
+    List<ArticleFacets> findFacetsFetchedSince(@Param("since") OffsetDateTime since);
+
+    /**
+     * Returns the fields clustered into stories of the articles fetched after the given time, in
+     * the order they were fetched.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @return the ID, title, body, source and time fetched of each article in the window
+     */
+    @Query("SELECT a.id AS id, a.title AS title, a.body AS body, a.source AS source, " +
+            "a.timeFetched AS timeFetched FROM Article a WHERE a.timeFetched > :since ORDER BY a.timeFetched, a.id")
+    List<ArticleStoryText> findStoryTextsFetchedSince(@Param("since") OffsetDateTime since);
+
+    /**
+     * Returns the body signatures of the articles fetched after the given time.
+     * Articles whose body is too short to sign are left out.
+     *
+     * @param since the (exclusive) lower bound on the time the articles were fetched
+     * @return the ID, signature, original and time fetched of each article in the window
+     */
+    @Query("SELECT a.id AS id, a.bodySignature AS bodySignature, a.duplicateOf AS duplicateOf, " +
+            "a.timeFetched AS timeFetched FROM Article a " +
+            "WHERE a.timeFetched > :since AND a.bodySignature IS NOT NULL")
+    List<ArticleSignature> findSignaturesFetchedSince(@Param("since") OffsetDateTime since);
+
+    /**
+     * Projection of an article's ID and body.
+     */
+    interface ArticleBody {
+        /** @return the ID of the article */
+        Long getId();
+
+        /** @return the body of the article */
+        String getBody();
+    }
+
+    /**
+     * Projection of an article's ID, title and body.
+     */
+    interface ArticleText {
+        /** @return the ID of the article */
+        Long getId();
+
+        /** @return the title of the article */
+        String getTitle();
+
+        /** @return the body of the article */
+        String getBody();
+    }
+
+    /**
+     * Projection of the fields of an article counted by the facets.
+     */
+    interface ArticleFacets {
+        /** @return the category of the article */
+        Category getCategory();
+
+        /** @return the outlet from which the article was fetched */
+        String getSource();
+
+        /** @return the time the article was fetched */
+        OffsetDateTime getTimeFetched();
+    }
+
+    /**
+     * Projection of the fields of an article clustered into stories.
+     */
+    interface ArticleStoryText {
+        /** @return the ID of the article */
+        Long getId();
+
+        /** @return the title of the article */
+        String getTitle();
+
+        /** @return the body of the article */
+        String getBody();
+
+        /** @return the outlet from which the article was fetched */
+        String getSource();
+
+        /** @return the time the article was fetched */
+        OffsetDateTime getTimeFetched();
+    }
+
+    /**
+     * Projection of the fields of an article used to detect near-duplicates.
+     */
+    interface ArticleSignature {
+        /** @return the ID of the article */
+        Long getId();
+
+        /** @return the signature of the article's body */
+        byte[] getBodySignature();
+
+        /** @return the ID of the article this one nearly duplicates, or null if it is an original */
+        Long getDuplicateOf();
+
+        /** @return the time the article was fetched */
+        OffsetDateTime getTimeFetched();
+    }
 }
@@ -0,0 +1,56 @@
+package news_compiler.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import news_compiler.dto.CacheStatsDto;
+import news_compiler.entity.Article;
+import org.hibernate.cache.jcache.internal.JCacheAccessImpl;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service reporting on the second-level cache holding Article entities.
+ * <p>
+ * The cache itself is managed by Hibernate: articles are cached as they are read, and replaced
+ * once a transaction that updates them commits.
+ */
+@Service
+public class ArticleCacheService {
+    /** Factory owning the second-level cache */
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Returns the counters of the article cache.
+     *
+     * @return the hits, misses, evictions and size of the cache
+     */
+    public CacheStatsDto getStats() {
+        Cache<?, ?> cache = getCache();
+        CacheStats stats = cache.stats();
+        Policy.Eviction<?, ?> eviction = cache.policy().eviction().orElseThrow();
+
+        return new CacheStatsDto(stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                stats.evictionWeight(), cache.estimatedSize(), eviction.weightedSize().orElse(0),
+                eviction.getMaximum());
+    }
+
+    /**
+     * Returns the Caffeine cache backing the article region.
+     *
+     * @return the underlying cache
+     */
+    private Cache<?, ?> getCache() {
+        DomainDataRegionTemplate region = (DomainDataRegionTemplate) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegion(Article.CACHE_REGION);
+
+        javax.cache.Cache<?, ?> jcache = ((JCacheAccessImpl) region.getCacheStorageAccess()).getUnderlyingCache();
+        return jcache.unwrap(Cache.class);
+    }
+}
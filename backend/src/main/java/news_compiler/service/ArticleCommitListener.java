@@ -0,0 +1,157 @@
+package news_compiler.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import news_compiler.entity.Article;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listener telling the services keeping articles in memory about the articles created, updated and
+ * deleted by committed transactions.
+ * <p>
+ * Changes are only passed on once their transaction commits, whichever path they are made
+ * through, as long as they go through JPA. Bulk statements are not seen, so the services also
+ * rebuild what they hold from the database.
+ */
+@Component
+public class ArticleCommitListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+    /** Factory whose entity events are listened to */
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Callbacks told of each committed change, in the order they were added */
+    private final List<Callback> callbacks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers for the entity events of committed transactions.
+     */
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * Adds a callback to be told of the changes committed from now on.
+     * @param callback the callback
+     */
+    public void addCallback(Callback callback) {
+        callbacks.add(callback);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!requiresPostCommitHandling(event.getPersister()))
+            return;
+
+        State state = new State(event.getPersister(), event.getState());
+        callbacks.forEach(callback -> callback.inserted((Long) event.getId(), state));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!requiresPostCommitHandling(event.getPersister()))
+            return;
+
+        State oldState = event.getOldState() == null ? null : new State(event.getPersister(), event.getOldState());
+        State state = new State(event.getPersister(), event.getState());
+        callbacks.forEach(callback -> callback.updated((Long) event.getId(), oldState, state));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!requiresPostCommitHandling(event.getPersister()))
+            return;
+
+        State state = new State(event.getPersister(), event.getDeletedState());
+        callbacks.forEach(callback -> callback.deleted((Long) event.getId(), state));
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Callbacks are only told of committed changes, so have nothing to undo
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // Callbacks are only told of committed changes, so have nothing to undo
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // Callbacks are only told of committed changes, so have nothing to undo
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == Article.class;
+    }
+
+    /**
+     * Receives the changes to articles committed by transactions. Each method does nothing unless
+     * overridden, and is called on the thread that committed the change.
+     */
+    public interface Callback {
+        /**
+         * Called once an article is created.
+         * @param id the ID of the article
+         * @param state the article as it was flushed
+         */
+        default void inserted(Long id, State state) {
+        }
+
+        /**
+         * Called once an article is updated.
+         * @param id the ID of the article
+         * @param oldState the article as it was loaded, or null if it was not loaded first
+         * @param state the article as it was flushed
+         */
+        default void updated(Long id, State oldState, State state) {
+        }
+
+        /**
+         * Called once an article is deleted.
+         * @param id the ID of the article
+         * @param state the article as it was when deleted
+         */
+        default void deleted(Long id, State state) {
+        }
+    }
+
+    /**
+     * The properties of an article as Hibernate flushed them.
+     * @param persister the persister of the article
+     * @param values the value of each property, by property index
+     */
+    public record State(EntityPersister persister, Object[] values) {
+        /**
+         * Returns the value of a property.
+         * @param property the name of the property
+         * @return the value of the property, may be null
+         * @param <T> the type of the property
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(String property) {
+            return (T) values[persister.getPropertyIndex(property)];
+        }
+    }
+}
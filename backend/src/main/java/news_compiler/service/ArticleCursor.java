@@ -0,0 +1,84 @@
+package news_compiler.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import news_compiler.dto.ArticleDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Position within the list of recent articles, used for keyset pagination.
+ * <p>
+ * A cursor holds the sort key — time published, time fetched and ID — of the last article on a
+ * page. The next page starts with the article that directly follows that key, so fetching any page
+ * costs the same as fetching the first one.
+ * <p>
+ * Cursors are handed to clients as opaque URL-safe tokens.
+ */
+@Getter
+@AllArgsConstructor
+public class ArticleCursor {
+    /** Separator between the fields of an encoded cursor */
+    private static final String SEPARATOR = "|";
+
+    /** Time the last article was published. Null if the article has no publishing time. */
+    private final OffsetDateTime timePublished;
+
+    /** Time the last article was fetched */
+    private final OffsetDateTime timeFetched;
+
+    /** ID of the last article */
+    private final Long id;
+
+    /**
+     * Creates a cursor pointing just past the given article.
+     * @param article the last article on a page
+     * @return a cursor for the page following the article
+     */
+    public static ArticleCursor after(ArticleDto article) {
+        return new ArticleCursor(article.getTimePublished(), article.getTimeFetched(), article.getId());
+    }
+
+    /**
+     * Encodes the cursor into an opaque token.
+     * @return the cursor as a URL-safe string
+     */
+    public String encode() {
+        String published = timePublished == null ? "" : timePublished.toInstant().toString();
+        String raw = published + SEPARATOR + timeFetched.toInstant() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token created by {@link #encode()}.
+     * @param token the token to decode
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static ArticleCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] fields = raw.split("\\" + SEPARATOR, -1);
+            if (fields.length != 3)
+                throw new IllegalArgumentException("Invalid cursor");
+
+            OffsetDateTime published = fields[0].isEmpty() ? null : parseTime(fields[0]);
+            return new ArticleCursor(published, parseTime(fields[1]), Long.parseLong(fields[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Parses an instant written by {@link #encode()}.
+     * @param instant the instant to parse
+     * @return the instant as a time in UTC
+     */
+    private static OffsetDateTime parseTime(String instant) {
+        return Instant.parse(instant).atOffset(ZoneOffset.UTC);
+    }
+}
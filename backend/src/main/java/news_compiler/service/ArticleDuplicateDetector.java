@@ -0,0 +1,357 @@
+package news_compiler.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.entity.Article;
+import news_compiler.entity.ArticleHasher;
+import news_compiler.repository.ArticleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service detecting articles whose body nearly duplicates that of an earlier article, such as the
+ * same wire story published by several outlets under different titles.
+ * <p>
+ * Bodies are compared by their MinHash signature, computed by <code>ArticleHasher.signBody</code>,
+ * and count as near-duplicates when their signatures agree on at least {@value MIN_MATCHES} of
+ * their hashes, which is when they share about 60% of their runs of words. A few edits or a
+ * different sign-off leave a copy well above that, while unrelated stories share almost none.
+ * <p>
+ * The signatures of the articles fetched within the window are kept in memory, bucketed by each of
+ * {@value BANDS} bands of {@value ROWS} hashes. Near-duplicates almost always agree on a whole band
+ * and unrelated bodies almost never do, so only the articles sharing a bucket with the new one are
+ * compared. Buckets hold a tiny fraction of the window, so a lookup costs about the same however
+ * many articles there are.
+ * <p>
+ * Articles are added to the index once their transaction commits, as told by the
+ * <code>ArticleCommitListener</code>, and the index is rebuilt from the stored signatures at startup.
+ */
+@Slf4j
+@Service
+public class ArticleDuplicateDetector {
+    /** Fewest hashes the signatures of near-duplicates must agree on */
+    private static final int MIN_MATCHES = 38;
+
+    /** Number of hashes in each band */
+    private static final int ROWS = 4;
+
+    /** Number of bands signatures are bucketed by */
+    private static final int BANDS = ArticleHasher.SIGNATURE_LENGTH / ROWS;
+
+    /** How long after being fetched articles can be duplicated */
+    @Value("${articles.duplicates.window:P7D}")
+    private Duration window;
+
+    /** Listener telling the detector of committed changes */
+    @Autowired
+    private ArticleCommitListener articleCommitListener;
+
+    /** Repository for Article entities */
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    /** Lock guarding the index */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Indexed articles by ID. Guarded by the lock. */
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    /** Indexed articles by band and value of that band. Guarded by the lock. */
+    private final Map<Long, List<Entry>> buckets = new HashMap<>();
+
+    /**
+     * Indexed articles, the earliest fetched first. Entries of articles since removed or replaced
+     * are only dropped once they reach the head. Guarded by the lock.
+     */
+    private final PriorityQueue<Entry> expiries = new PriorityQueue<>(Comparator.comparingLong(Entry::fetched));
+
+    /**
+     * Registers for the changes of committed transactions.
+     */
+    @PostConstruct
+    void registerListener() {
+        articleCommitListener.addCallback(new DuplicateCallback());
+    }
+
+    /**
+     * Finds the original article that the given one nearly duplicates.
+     * <p>
+     * The article is compared with the indexed articles and with others written alongside it, which
+     * are not indexed until their transaction commits. The closest match wins, and the earliest
+     * article when several are as close.
+     *
+     * @param article the article being written, with its signature computed
+     * @param written the other articles written in the same transaction, with their IDs assigned
+     * @return the ID of the original, or null if the article is an original itself
+     */
+    public Long findOriginal(Article article, Collection<Article> written) {
+        int[] signature = toHashes(article.getBodySignature());
+        if (signature == null)
+            return null;
+
+        // An updated article is skipped, along with the articles duplicating it
+        long articleId = article.getId() == null ? -1 : article.getId();
+        Match best = null;
+        for (Article other : written) {
+            if (other == article || other.getBodySignature() == null)
+                continue;
+
+            long originalId = other.getDuplicateOf() == null ? other.getId() : other.getDuplicateOf();
+            if (originalId != articleId)
+                best = closer(best, signature, toHashes(other.getBodySignature()), originalId, other.getId());
+        }
+
+        lock.lock();
+        try {
+            expire();
+            for (int band = 0; band < BANDS; ++band) {
+                List<Entry> bucket = buckets.get(bucketOf(band, signature));
+                if (bucket == null)
+                    continue;
+
+                for (Entry entry : bucket) {
+                    if (entry.articleId() != articleId && entry.originalId() != articleId)
+                        best = closer(best, signature, entry.signature(), entry.originalId(), entry.articleId());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return best == null ? null : best.originalId();
+    }
+
+    /**
+     * Returns the number of articles in the index.
+     * @return the number of indexed articles
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces an article in the index, unless it was fetched before the window.
+     * @param articleId the ID of the article
+     * @param signature the signature of the article's body, or null to only remove the article
+     * @param duplicateOf the ID of the article it duplicates, or null if it is an original
+     * @param timeFetched the time the article was fetched
+     */
+    void index(long articleId, byte[] signature, Long duplicateOf, OffsetDateTime timeFetched) {
+        lock.lock();
+        try {
+            add(articleId, signature, duplicateOf, timeFetched);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes articles from the index, as when they are deleted without going through JPA.
+     * @param articleIds the IDs of the articles to remove
+     */
+    public void remove(Collection<Long> articleIds) {
+        lock.lock();
+        try {
+            articleIds.forEach(this::removeEntry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the signatures of the articles in the window.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.lock();
+        try {
+            entries.clear();
+            buckets.clear();
+            expiries.clear();
+
+            List<ArticleRepository.ArticleSignature> articles =
+                    articleRepository.findSignaturesFetchedSince(OffsetDateTime.now().minus(window));
+            for (ArticleRepository.ArticleSignature article : articles) {
+                add(article.getId(), article.getBodySignature(), article.getDuplicateOf(),
+                        article.getTimeFetched());
+            }
+
+            log.info("Indexed the signatures of {} articles", entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces an article in the index, unless it was fetched before the window.
+     * Must be called with the lock held.
+     *
+     * @param articleId the ID of the article
+     * @param signature the signature of the article's body, or null to only remove the article
+     * @param duplicateOf the ID of the article it duplicates, or null if it is an original
+     * @param timeFetched the time the article was fetched
+     */
+    private void add(long articleId, byte[] signature, Long duplicateOf, OffsetDateTime timeFetched) {
+        removeEntry(articleId);
+        if (signature == null || timeFetched == null || timeFetched.isBefore(OffsetDateTime.now().minus(window)))
+            return;
+
+        Entry entry = new Entry(articleId, toHashes(signature), duplicateOf == null ? articleId : duplicateOf,
+                timeFetched.toEpochSecond());
+        entries.put(articleId, entry);
+        expiries.add(entry);
+        for (int band = 0; band < BANDS; ++band)
+            buckets.computeIfAbsent(bucketOf(band, entry.signature()), key -> new ArrayList<>(1)).add(entry);
+    }
+
+    /**
+     * Removes an article from the index, if it is there. Must be called with the lock held.
+     * @param articleId the ID of the article
+     */
+    private void removeEntry(long articleId) {
+        Entry entry = entries.remove(articleId);
+        if (entry == null)
+            return;
+
+        for (int band = 0; band < BANDS; ++band) {
+            long key = bucketOf(band, entry.signature());
+            List<Entry> bucket = buckets.get(key);
+            bucket.remove(entry);
+            if (bucket.isEmpty())
+                buckets.remove(key);
+        }
+    }
+
+    /**
+     * Removes the articles fetched before the window. Must be called with the lock held.
+     */
+    private void expire() {
+        long cutoff = OffsetDateTime.now().minus(window).toEpochSecond();
+        while (!expiries.isEmpty() && expiries.peek().fetched() < cutoff) {
+            Entry entry = expiries.poll();
+            if (entries.get(entry.articleId()) == entry)
+                removeEntry(entry.articleId());
+        }
+    }
+
+    /**
+     * Returns the key of the bucket holding signatures with the same hashes in a band.
+     * Different hashes may share a key, which only costs a comparison.
+     *
+     * @param band the index of the band
+     * @param signature the signature
+     * @return the band's index and a hash of its hashes, packed together
+     */
+    private static long bucketOf(int band, int[] signature) {
+        int value = 1;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; ++row)
+            value = value * 31 + signature[row];
+        return (long) band << Integer.SIZE | Integer.toUnsignedLong(value);
+    }
+
+    /**
+     * Returns the closer of the best match so far and a candidate, if the candidate is a match.
+     * @param best the best match so far, or null
+     * @param signature the signature being looked up
+     * @param candidate the signature of the candidate
+     * @param originalId the ID of the candidate's original
+     * @param articleId the ID of the candidate
+     * @return the better match, or null if neither is one
+     */
+    private static Match closer(Match best, int[] signature, int[] candidate, long originalId, long articleId) {
+        int matches = 0;
+        for (int i = 0; i < signature.length; ++i) {
+            if (signature[i] == candidate[i])
+                ++matches;
+        }
+
+        if (matches < MIN_MATCHES)
+            return best;
+        if (best != null && (best.matches() > matches
+                || best.matches() == matches && best.articleId() < articleId))
+            return best;
+
+        return new Match(originalId, articleId, matches);
+    }
+
+    /**
+     * Reads the hashes of a stored signature.
+     * @param signature the signature as stored, may be null
+     * @return the hashes, or null if the signature is null
+     */
+    private static int[] toHashes(byte[] signature) {
+        if (signature == null)
+            return null;
+
+        int[] hashes = new int[ArticleHasher.SIGNATURE_LENGTH];
+        ByteBuffer.wrap(signature).asIntBuffer().get(hashes);
+        return hashes;
+    }
+
+    /**
+     * An indexed article.
+     * @param articleId the ID of the article
+     * @param signature the hashes of the signature of the article's body
+     * @param originalId the ID of the article it duplicates, or its own ID if it is an original
+     * @param fetched the time the article was fetched, in seconds since the epoch
+     */
+    private record Entry(long articleId, int[] signature, long originalId, long fetched) { }
+
+    /**
+     * An article matching the one being looked up.
+     * @param originalId the ID of the matching article's original
+     * @param articleId the ID of the matching article
+     * @param matches the number of hashes on which the signatures agree
+     */
+    private record Match(long originalId, long articleId, int matches) { }
+
+    /**
+     * Indexes the articles created, updated or deleted by committed transactions.
+     */
+    private final class DuplicateCallback implements ArticleCommitListener.Callback {
+        @Override
+        public void inserted(Long id, ArticleCommitListener.State state) {
+            index(id, state);
+        }
+
+        @Override
+        public void updated(Long id, ArticleCommitListener.State oldState, ArticleCommitListener.State state) {
+            index(id, state);
+        }
+
+        @Override
+        public void deleted(Long id, ArticleCommitListener.State state) {
+            remove(List.of(id));
+        }
+
+        /**
+         * Indexes an article as it was flushed.
+         * @param id the ID of the article
+         * @param state the state of the article
+         */
+        private void index(Long id, ArticleCommitListener.State state) {
+            ArticleDuplicateDetector.this.index(id, state.get("bodySignature"), state.get("duplicateOf"),
+                    state.get("timeFetched"));
+        }
+    }
+}
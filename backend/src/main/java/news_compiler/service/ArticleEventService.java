@@ -0,0 +1,385 @@
+package news_compiler.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.dto.ArticleDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Service pushing newly inserted and updated articles to clients subscribed over Server-Sent
+ * Events, along with the IDs of articles updated into near-duplicates, which leave the recent
+ * feeds.
+ * <p>
+ * Each batch of written articles is encoded once, as a complete event, and the same bytes are
+ * queued for every subscriber. A subscriber's queue is small and bounded; one falling so far
+ * behind that its queue fills up is dropped, and catches up when it reconnects. Idle subscribers
+ * hold no thread: the servlet container keeps their connections open asynchronously, and a
+ * virtual thread writes to a subscriber only while it has events queued.
+ * <p>
+ * Events are numbered, and the most recent are kept so that a client reconnecting with the
+ * <code>Last-Event-ID</code> header is sent those it missed. A client that missed more is sent a
+ * <code>resync</code> event instead, telling it to read the recent articles afresh.
+ */
+@Slf4j
+@Service
+public class ArticleEventService {
+    /** Name of the events holding written articles */
+    public static final String ARTICLES_EVENT = "articles";
+
+    /** Name of the events holding the IDs of articles no longer in the recent feeds */
+    public static final String REMOVED_EVENT = "articles-removed";
+
+    /** Name of the event telling a client it may have missed articles */
+    public static final String RESYNC_EVENT = "resync";
+
+    /** Comment sent to idle subscribers, so proxies do not close their connections */
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(UTF_8);
+
+    /** Mapper encoding the articles, configured as for the controllers */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Registry the meters are registered with */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** Number of events queued for a subscriber before it is dropped as too slow */
+    @Value("${articles.events.buffer-size:64}")
+    private int bufferSize;
+
+    /** Maximum number of subscribers at once */
+    @Value("${articles.events.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    /** Number of recent events kept for clients reconnecting */
+    @Value("${articles.events.history-size:64}")
+    private int historySize;
+
+    /** How long a subscription lasts before the client has to reconnect */
+    @Value("${articles.events.timeout:PT30M}")
+    private Duration timeout;
+
+    /** How long clients wait before reconnecting */
+    @Value("${articles.events.reconnect-delay:PT5S}")
+    private Duration reconnectDelay;
+
+    /** Current subscribers */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /** Starts a virtual thread for each subscriber with events to write */
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Lock numbering events and queuing them, so every subscriber gets them in order */
+    private final ReentrantLock publishLock = new ReentrantLock();
+
+    /** Recent events, oldest first. Guarded by the publish lock. */
+    private final Deque<Event> history = new ArrayDeque<>();
+
+    /**
+     * ID of the last event published. Guarded by the publish lock.
+     * Starts from the startup time, so IDs from before a restart are never taken for newer ones.
+     */
+    private long lastEventId = System.currentTimeMillis() * 1000;
+
+    /** Number of subscribers dropped for falling behind */
+    private Counter dropped;
+
+    /**
+     * Registers the meters.
+     */
+    @PostConstruct
+    void register() {
+        Gauge.builder("articles.events.subscribers", subscribers, Set::size)
+                .description("Number of clients subscribed to written articles")
+                .register(meterRegistry);
+        dropped = Counter.builder("articles.events.dropped")
+                .description("Number of subscribers dropped for falling behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ends every subscription.
+     */
+    @PreDestroy
+    void stop() {
+        subscribers.forEach(Subscriber::close);
+        writers.shutdown();
+    }
+
+    /**
+     * Subscribes a client to the articles written from now on.
+     * @param lastEventId the ID of the last event the client received, or null if it is new
+     * @return the emitter to stream the events through
+     * @throws IllegalStateException if there are already as many subscribers as allowed
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers)
+            throw new IllegalStateException("Too many subscribers");
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        // Queue what the client missed and register it at once, so no event comes between
+        publishLock.lock();
+        try {
+            List<Event> missed = missedEvents(lastEventId);
+            if (missed == null) {
+                // A new client starts from the last event, and one too far behind starts over
+                String header = "retry: " + reconnectDelay.toMillis() + "\n";
+                subscriber.offer(lastEventId == null
+                        ? (header + "id: " + this.lastEventId + "\n\n").getBytes(UTF_8)
+                        : frame(this.lastEventId, RESYNC_EVENT, header, "{}".getBytes(UTF_8)));
+            } else {
+                subscriber.offer(("retry: " + reconnectDelay.toMillis() + "\n\n").getBytes(UTF_8));
+                missed.forEach(event -> subscriber.offer(event.frame()));
+            }
+
+            subscribers.add(subscriber);
+        } finally {
+            publishLock.unlock();
+        }
+
+        return emitter;
+    }
+
+    /**
+     * Pushes written articles to every subscriber, without their bodies.
+     * Subscribers are only queued the event, so this never waits on a client.
+     * @param articles the articles inserted or updated
+     */
+    public void publish(List<ArticleDto> articles) {
+        if (articles.isEmpty())
+            return;
+
+        List<ArticleDto> liteArticles = articles.stream()
+                .map(article -> new ArticleDto(article.getId(), article.getTitle(), article.getTimePublished(),
+                        article.getTimeFetched(), article.getSource(), article.getArticleUrl(),
+                        article.getImageUrl(), article.getCategory()))
+                .toList();
+
+        publish(ARTICLES_EVENT, liteArticles, liteArticles.size());
+    }
+
+    /**
+     * Tells every subscriber to drop articles that have left the recent feeds.
+     * @param ids the IDs of the articles
+     */
+    public void publishRemoved(List<Long> ids) {
+        if (ids.isEmpty())
+            return;
+
+        publish(REMOVED_EVENT, ids, ids.size());
+    }
+
+    /**
+     * Numbers an event, keeps it for clients reconnecting and queues it for every subscriber.
+     * @param name the name of the event
+     * @param content the content of the event, encoded as JSON
+     * @param count the number of articles the event concerns, for logging
+     */
+    private void publish(String name, Object content, int count) {
+        // Encoded once for every subscriber. The mapper escapes line breaks, keeping the data on one line.
+        byte[] data;
+        try {
+            data = objectMapper.writeValueAsBytes(content);
+        } catch (JsonProcessingException e) {
+            log.error("Could not encode a {} event of {} articles for subscribers", name, count, e);
+            return;
+        }
+
+        publishLock.lock();
+        try {
+            long id = ++lastEventId;
+            Event event = new Event(id, frame(id, name, "", data));
+            history.addLast(event);
+            if (history.size() > historySize)
+                history.removeFirst();
+
+            for (Subscriber subscriber : subscribers)
+                subscriber.offer(event.frame());
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Keeps idle connections open through proxies that close them after a period of silence.
+     */
+    @Scheduled(fixedDelayString = "${articles.events.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers)
+            subscriber.offer(HEARTBEAT);
+    }
+
+    /**
+     * Finds the events a reconnecting client missed. Called with the publish lock held.
+     * @param lastEventId the ID of the last event the client received, or null if it is new
+     * @return the events after the given one, or null if the client is new or missed events no
+     * longer kept, or more than its queue holds
+     */
+    private List<Event> missedEvents(String lastEventId) {
+        if (lastEventId == null)
+            return null;
+
+        long since;
+        try {
+            since = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        // The event following the client's last one must still be kept
+        long oldestKept = history.isEmpty() ? this.lastEventId + 1 : history.getFirst().id();
+        if (since > this.lastEventId || since < oldestKept - 1 || this.lastEventId - since >= bufferSize)
+            return null;
+
+        List<Event> missed = new ArrayList<>();
+        for (Event event : history) {
+            if (event.id() > since)
+                missed.add(event);
+        }
+
+        return missed;
+    }
+
+    /**
+     * Encodes an event as it is sent.
+     * @param id the ID of the event
+     * @param event the name of the event
+     * @param fields any fields to send first, each ending with a line break
+     * @param data the data of the event, on a single line
+     * @return the encoded event
+     */
+    private static byte[] frame(long id, String event, String fields, byte[] data) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(data.length + 64);
+        frame.writeBytes((fields + "id: " + id + "\nevent: " + event + "\ndata: ").getBytes(UTF_8));
+        frame.writeBytes(data);
+        frame.writeBytes("\n\n".getBytes(UTF_8));
+
+        return frame.toByteArray();
+    }
+
+    /**
+     * An event kept for clients reconnecting.
+     * @param id the ID of the event
+     * @param frame the event as it is sent
+     */
+    private record Event(long id, byte[] frame) {
+    }
+
+    /**
+     * A subscribed client, with the events queued for it.
+     */
+    private final class Subscriber {
+        /** Emitter streaming to the client */
+        private final SseEmitter emitter;
+
+        /** Events waiting to be written to the client */
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(bufferSize);
+
+        /** Whether a writer is running for this subscriber */
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        /** Whether the subscription has ended */
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /**
+         * Creates a subscriber.
+         * @param emitter the emitter streaming to the client
+         */
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues an event for the client, starting a writer if none is running.
+         * Drops the client if its queue is full.
+         * @param frame the event as it is sent
+         */
+        void offer(byte[] frame) {
+            if (closed.get())
+                return;
+
+            if (!queue.offer(frame)) {
+                dropped.increment();
+                close();
+                return;
+            }
+
+            if (writing.compareAndSet(false, true))
+                writers.execute(this::write);
+        }
+
+        /**
+         * Writes queued events to the client until none are left.
+         */
+        private void write() {
+            do {
+                for (byte[] frame = queue.poll(); frame != null && !closed.get(); frame = queue.poll()) {
+                    try {
+                        emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_EVENT_STREAM)));
+                    } catch (IOException | IllegalStateException e) {
+                        // The client has gone away
+                        close();
+                        return;
+                    }
+                }
+
+                writing.set(false);
+
+                // Write any event queued after the queue was found empty but before the flag was cleared
+            } while (!closed.get() && !queue.isEmpty() && writing.compareAndSet(false, true));
+        }
+
+        /**
+         * Ends the subscription, without waiting on the client.
+         */
+        void close() {
+            if (!closed.compareAndSet(false, true))
+                return;
+
+            subscribers.remove(this);
+            queue.clear();
+            writers.execute(() -> {
+                try {
+                    emitter.complete();
+                } catch (RuntimeException e) {
+                    log.debug("Could not complete a subscription", e);
+                }
+            });
+        }
+    }
+}
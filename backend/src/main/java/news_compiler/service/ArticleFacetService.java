@@ -0,0 +1,303 @@
+package news_compiler.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import news_compiler.dto.ArticleFacetsDto;
+import news_compiler.entity.Category;
+import news_compiler.repository.ArticleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service counting the recent articles in each category and from each source.
+ * <p>
+ * Articles are counted in hourly buckets by the time they were fetched, alongside running totals
+ * for each {@link Window}. The totals are adjusted as articles are created, updated and deleted, and
+ * as buckets leave a window, so serving them never touches the database. Because counts are kept
+ * per hour, a window may include up to an hour of articles older than its length.
+ * <p>
+ * Changes are counted once their transaction commits, whichever path they are made through, as
+ * long as they go through JPA. The counts are rebuilt from the database at startup and
+ * periodically, which also corrects any drift from bulk statements.
+ */
+@Service
+public class ArticleFacetService {
+    /** Number of seconds covered by each bucket */
+    private static final long BUCKET_SECONDS = 3600;
+
+    /** Properties of Article that the counts depend on */
+    private static final List<String> COUNTED_PROPERTIES = List.of("category", "source", "timeFetched");
+
+    /** Listener telling the service of committed changes */
+    @Autowired
+    private ArticleCommitListener articleCommitListener;
+
+    /** Repository for Article entities */
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    /** Lock guarding the counts */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Counts of the articles fetched in each hour of the longest window. Guarded by the lock. */
+    private final Map<Long, Counts> buckets = new HashMap<>();
+
+    /** Counts of the articles fetched within each window. Guarded by the lock. */
+    private final Map<Window, Counts> totals = new EnumMap<>(Window.class);
+
+    /** Hour up to which the totals have been moved along. Guarded by the lock. */
+    private long currentHour;
+
+    /**
+     * Registers for the changes of committed transactions.
+     */
+    @PostConstruct
+    void registerListener() {
+        articleCommitListener.addCallback(new FacetCallback());
+
+        reset(hourOf(OffsetDateTime.now()));
+    }
+
+    /**
+     * Returns the number of articles in each category and from each source within a window.
+     *
+     * @param window the window to count articles in
+     * @return the counts of every category, and of every source with at least one article
+     */
+    public ArticleFacetsDto getFacets(Window window) {
+        lock.lock();
+        try {
+            advance(hourOf(OffsetDateTime.now()));
+            Counts counts = totals.get(window);
+
+            Map<Category, Integer> categories = new EnumMap<>(Category.class);
+            for (Category category : Category.values())
+                categories.put(category, counts.categories[category.ordinal()]);
+
+            return new ArticleFacetsDto(categories, new HashMap<>(counts.sources));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the counts from the articles in the database.
+     * <p>
+     * Changes committed while the articles are read wait for the rebuild to finish. A change
+     * committed just before the rebuild starts may be counted twice, until the next rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${articles.facets.rebuild-interval:PT1H}",
+            initialDelayString = "${articles.facets.rebuild-interval:PT1H}")
+    public void rebuild() {
+        lock.lock();
+        try {
+            long hour = hourOf(OffsetDateTime.now());
+            reset(hour);
+
+            OffsetDateTime since = OffsetDateTime.now().minusHours(Window.longest().hours + 1);
+            for (ArticleRepository.ArticleFacets article : articleRepository.findFacetsFetchedSince(since))
+                count(article.getCategory(), article.getSource(), article.getTimeFetched(), 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts or uncounts an article.
+     * @param category the category of the article, may be null
+     * @param source the source of the article, may be null
+     * @param timeFetched the time the article was fetched, may be null
+     * @param delta 1 to count the article, or -1 to uncount it
+     */
+    private void change(Category category, String source, OffsetDateTime timeFetched, int delta) {
+        lock.lock();
+        try {
+            advance(hourOf(OffsetDateTime.now()));
+            count(category, source, timeFetched, delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an article to its bucket and to the totals of every window it falls within.
+     * Must be called with the lock held.
+     *
+     * @param category the category of the article, may be null
+     * @param source the source of the article, may be null
+     * @param timeFetched the time the article was fetched, may be null
+     * @param delta 1 to count the article, or -1 to uncount it
+     */
+    private void count(Category category, String source, OffsetDateTime timeFetched, int delta) {
+        if (timeFetched == null)
+            return;
+
+        long hour = hourOf(timeFetched);
+        if (!Window.longest().includes(hour, currentHour))
+            return;
+
+        buckets.computeIfAbsent(hour, h -> new Counts()).add(category, source, delta);
+        for (Window window : Window.values()) {
+            if (window.includes(hour, currentHour))
+                totals.get(window).add(category, source, delta);
+        }
+    }
+
+    /**
+     * Moves the windows along to the given hour, removing the buckets that leave each window
+     * from its totals. Must be called with the lock held.
+     *
+     * @param hour the current hour
+     */
+    private void advance(long hour) {
+        if (hour <= currentHour)
+            return;
+
+        for (Map.Entry<Long, Counts> bucket : buckets.entrySet()) {
+            for (Window window : Window.values()) {
+                if (window.includes(bucket.getKey(), currentHour) && !window.includes(bucket.getKey(), hour))
+                    totals.get(window).subtract(bucket.getValue());
+            }
+        }
+
+        buckets.keySet().removeIf(bucketHour -> !Window.longest().includes(bucketHour, hour));
+        currentHour = hour;
+    }
+
+    /**
+     * Clears every count. Must be called with the lock held.
+     * @param hour the current hour
+     */
+    private void reset(long hour) {
+        buckets.clear();
+        for (Window window : Window.values())
+            totals.put(window, new Counts());
+        currentHour = hour;
+    }
+
+    /**
+     * Returns the bucket a time falls into.
+     * @param time the time
+     * @return the number of hours since the epoch
+     */
+    private static long hourOf(OffsetDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(), BUCKET_SECONDS);
+    }
+
+    /**
+     * A span of time over which articles are counted, ending now.
+     */
+    @AllArgsConstructor
+    public enum Window {
+        /** The last 24 hours */
+        DAY(24),
+        /** The last 7 days */
+        WEEK(24 * 7);
+
+        /** Number of hours before the current one covered by the window */
+        private final int hours;
+
+        /**
+         * Returns whether a bucket falls within the window.
+         * Buckets after the current hour are included, as articles may be fetched in the future
+         * according to the database's clock.
+         *
+         * @param hour the hour of the bucket
+         * @param currentHour the current hour
+         * @return true if the bucket is within the window
+         */
+        boolean includes(long hour, long currentHour) {
+            return hour >= currentHour - hours;
+        }
+
+        /**
+         * Returns the window covering the most time.
+         * @return the longest window
+         */
+        static Window longest() {
+            return WEEK;
+        }
+    }
+
+    /**
+     * Number of articles in each category and from each source.
+     */
+    private static final class Counts {
+        /** Number of articles in each category, by ordinal */
+        private final int[] categories = new int[Category.values().length];
+
+        /** Number of articles from each source. Sources without articles are absent. */
+        private final Map<String, Integer> sources = new HashMap<>();
+
+        /**
+         * Adjusts the counts of an article's category and source.
+         * @param category the category of the article, may be null
+         * @param source the source of the article, may be null
+         * @param delta the amount to adjust the counts by
+         */
+        void add(Category category, String source, int delta) {
+            if (category != null)
+                categories[category.ordinal()] += delta;
+            if (source != null)
+                sources.merge(source, delta, (count, change) -> count + change == 0 ? null : count + change);
+        }
+
+        /**
+         * Subtracts other counts from these.
+         * @param other the counts to subtract
+         */
+        void subtract(Counts other) {
+            for (int i = 0; i < categories.length; ++i)
+                categories[i] -= other.categories[i];
+            other.sources.forEach((source, count) -> add(null, source, -count));
+        }
+    }
+
+    /**
+     * Counts the articles created, updated or deleted by committed transactions.
+     */
+    private final class FacetCallback implements ArticleCommitListener.Callback {
+        @Override
+        public void inserted(Long id, ArticleCommitListener.State state) {
+            change(state, 1);
+        }
+
+        @Override
+        public void updated(Long id, ArticleCommitListener.State oldState, ArticleCommitListener.State state) {
+            // Only move the article if any of its counted fields changed
+            if (oldState == null || COUNTED_PROPERTIES.stream()
+                    .allMatch(property -> Objects.equals(oldState.get(property), state.get(property))))
+                return;
+
+            change(oldState, -1);
+            change(state, 1);
+        }
+
+        @Override
+        public void deleted(Long id, ArticleCommitListener.State state) {
+            change(state, -1);
+        }
+
+        /**
+         * Counts or uncounts an article as it was flushed.
+         * @param state the state of the article
+         * @param delta 1 to count the article, or -1 to uncount it
+         */
+        private void change(ArticleCommitListener.State state, int delta) {
+            ArticleFacetService.this.change(state.get("category"), state.get("source"), state.get("timeFetched"),
+                    delta);
+        }
+    }
+}
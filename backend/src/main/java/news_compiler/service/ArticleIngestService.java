@@ -0,0 +1,276 @@
+package news_compiler.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticleIngestReportDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service for streaming large numbers of articles into the database.
+ * <p>
+ * Articles are read as newline-delimited JSON, one line at a time, and written in fixed-size
+ * chunks as soon as each chunk is full. Memory use is bounded by the chunk size and the maximum
+ * line length rather than the size of the stream, and every chunk is committed before the next is
+ * read.
+ */
+@Slf4j
+@Service
+public class ArticleIngestService {
+    /** Maximum number of errors listed in a report. Further errors are only counted. */
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    /** Service for Article entities */
+    @Autowired
+    private ArticleService articleService;
+
+    /** Longest line accepted, in characters. Longer lines are skipped without being held in memory. */
+    @Value("${articles.ingest.max-line-length:1048576}")
+    private int maxLineLength;
+
+    /** Reader for parsing each line into an article */
+    private final ObjectReader articleReader;
+
+    /**
+     * Creates the service.
+     * @param objectMapper the mapper configured for the application
+     */
+    @Autowired
+    public ArticleIngestService(ObjectMapper objectMapper) {
+        articleReader = objectMapper.readerFor(ArticleDto.class);
+    }
+
+    /**
+     * Reads articles from a newline-delimited JSON stream and writes them to the database.
+     * Blank lines are skipped. Lines that are too long, or cannot be parsed or written, are reported
+     * and skipped.
+     *
+     * @param stream the stream to read, which is not closed
+     * @return a report of the articles written and the errors encountered
+     */
+    public ArticleIngestReportDto ingest(InputStream stream) {
+        ArticleIngestReportDto report = new ArticleIngestReportDto();
+        LineReader reader = new LineReader(new InputStreamReader(stream, StandardCharsets.UTF_8), maxLineLength);
+
+        // Articles waiting to be written, and the line each came from
+        List<ArticleDto> chunk = new ArrayList<>(ArticleService.WRITE_CHUNK_SIZE);
+        List<Long> chunkLines = new ArrayList<>(ArticleService.WRITE_CHUNK_SIZE);
+
+        long lineNumber = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (line.isBlank() && !reader.isTruncated())
+                    continue;
+
+                report.setLines(report.getLines() + 1);
+                if (reader.isTruncated()) {
+                    fail(report, lineNumber, "Line longer than " + maxLineLength + " characters");
+                    continue;
+                }
+
+                // Parse the article, skipping the line if it is malformed
+                try {
+                    chunk.add(articleReader.readValue(line));
+                    chunkLines.add(lineNumber);
+                } catch (JsonProcessingException e) {
+                    fail(report, lineNumber, "Malformed article: " + e.getOriginalMessage());
+                    continue;
+                }
+
+                // Write the chunk once it is full
+                if (chunk.size() == ArticleService.WRITE_CHUNK_SIZE) {
+                    writeChunk(chunk, chunkLines, report);
+                    log.debug("Ingested {} lines", lineNumber);
+                }
+            }
+        } catch (IOException e) {
+            // Keep what was written so far and report where the stream broke off
+            fail(report, lineNumber + 1, "Could not read stream: " + e.getMessage());
+        }
+
+        // Write the remaining articles
+        if (!chunk.isEmpty())
+            writeChunk(chunk, chunkLines, report);
+
+        log.info("Ingested {} lines: {} inserted, {} updated, {} unchanged, {} failed", report.getLines(),
+                report.getInserted(), report.getUpdated(), report.getUnchanged(), report.getFailed());
+        return report;
+    }
+
+    /**
+     * Writes a chunk of articles and adds the outcome to the report.
+     *
+     * @param chunk the articles to write, cleared afterwards
+     * @param chunkLines the line each article came from, cleared afterwards
+     * @param report the report to add to
+     */
+    private void writeChunk(List<ArticleDto> chunk, List<Long> chunkLines, ArticleIngestReportDto report) {
+        write(chunk, chunkLines, report);
+
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    /**
+     * Writes articles and adds the outcome to the report.
+     * <p>
+     * A chunk is written in a single transaction, so one article the database rejects rolls back
+     * the whole chunk. A failed chunk is split in halves and each half written again, until only
+     * the lines the database rejects are left and reported as failed. A single bad line costs about
+     * twice the logarithm of the chunk size in extra writes.
+     *
+     * @param articles the articles to write, no more than a write chunk
+     * @param lines the line each article came from
+     * @param report the report to add to
+     */
+    private void write(List<ArticleDto> articles, List<Long> lines, ArticleIngestReportDto report) {
+        try {
+            ArticleWriteResult result = articleService.upsertArticles(articles);
+            report.setInserted(report.getInserted() + result.count(ArticleWriteResult.Outcome.INSERTED));
+            report.setUpdated(report.getUpdated() + result.count(ArticleWriteResult.Outcome.UPDATED));
+            report.setUnchanged(report.getUnchanged() + result.count(ArticleWriteResult.Outcome.UNCHANGED));
+        } catch (DataAccessException | PersistenceException e) {
+            // Failed flushes are thrown by Hibernate untranslated
+            if (articles.size() == 1) {
+                fail(report, lines.getFirst(),
+                        "Could not write article: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                return;
+            }
+
+            int half = articles.size() / 2;
+            write(articles.subList(0, half), lines.subList(0, half), report);
+            write(articles.subList(half, articles.size()), lines.subList(half, lines.size()), report);
+        }
+    }
+
+    /**
+     * Records a failed line in the report.
+     *
+     * @param report the report to add to
+     * @param line the line that failed
+     * @param message description of the error
+     */
+    private static void fail(ArticleIngestReportDto report, long line, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS)
+            report.getErrors().add(new ArticleIngestReportDto.LineError(line, message));
+    }
+
+    /**
+     * Reads lines of text, holding at most a maximum number of characters of each line in memory.
+     * Lines end at a line feed, with any carriage return before it dropped.
+     */
+    private static final class LineReader {
+        /** The text to read */
+        private final Reader reader;
+
+        /** Longest line returned whole */
+        private final int maxLength;
+
+        /** Characters read ahead from the reader */
+        private final char[] buffer = new char[8192];
+
+        /** Position of the next character in the buffer */
+        private int position;
+
+        /** Number of characters in the buffer */
+        private int limit;
+
+        /** The line being read */
+        private final StringBuilder line = new StringBuilder();
+
+        /** Whether the last line read was longer than the maximum length */
+        private boolean truncated;
+
+        /**
+         * Creates a reader.
+         * @param reader the text to read
+         * @param maxLength the longest line returned whole
+         */
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Reads the next line. A line longer than the maximum length is read to its end, but only
+         * its first characters are kept and it is marked as truncated.
+         * @return the line without its line ending, or null at the end of the text
+         * @throws IOException if the text cannot be read
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            truncated = false;
+
+            boolean empty = true;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+                    position = 0;
+                    if (limit == 0)
+                        return empty ? null : finish();
+                }
+                empty = false;
+
+                int start = position;
+                while (position < limit && buffer[position] != '\n')
+                    ++position;
+                append(start, position);
+
+                if (position < limit) {
+                    ++position;  // Skip the line feed
+                    return finish();
+                }
+            }
+        }
+
+        /**
+         * Returns whether the last line read was longer than the maximum length.
+         * @return true if the line was truncated
+         */
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * Adds characters from the buffer to the line, up to the maximum length.
+         * @param start the position of the first character
+         * @param end the position after the last character
+         */
+        private void append(int start, int end) {
+            int length = Math.min(end - start, maxLength - line.length());
+            if (length < end - start)
+                truncated = true;
+
+            line.append(buffer, start, Math.max(length, 0));
+        }
+
+        /**
+         * Completes the line read.
+         * @return the line, without any carriage return ending it
+         */
+        private String finish() {
+            if (!truncated && !line.isEmpty() && line.charAt(line.length() - 1) == '\r')
+                line.setLength(line.length() - 1);
+
+            return line.toString();
+        }
+    }
+}
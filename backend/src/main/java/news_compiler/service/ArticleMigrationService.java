@@ -0,0 +1,194 @@
+package news_compiler.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.entity.Article;
+import news_compiler.entity.ArticleBodyCodec;
+import news_compiler.repository.ArticleRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Service for migrating articles stored by older versions of the application.
+ * <p>
+ * Migrations run once all beans are created and before the server starts accepting requests, in
+ * batches so that large tables do not have to fit in memory.
+ */
+@Slf4j
+@Service
+public class ArticleMigrationService implements SmartInitializingSingleton {
+    /** Number of articles migrated in each transaction */
+    private static final int BATCH_SIZE = 500;
+
+    /** Name of the unique key on titles added to the unpartitioned table */
+    public static final String TITLE_KEY = "uk_articles_title";
+
+    /** Repository for Article entities */
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    /** Entity manager used to flush and release each batch */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Template for running each batch in its own transaction */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Used to change the table and to rewrite stored bodies, which JPA would not see as changed
+     * since they decode to the same text
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Whether article bodies are stored compressed */
+    @Value("${articles.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    /**
+     * Runs all migrations.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        addTitleKey();
+        backfillHashes();
+        if (compressionEnabled)
+            compressBodies();
+    }
+
+    /**
+     * Adds the unique key on titles, unless the table already has one or is partitioned.
+     * <p>
+     * The key is not mapped on the entity, as Hibernate's schema update would otherwise try to add
+     * it back to a partitioned table on every start, where MySQL rejects it: unique keys there must
+     * include the partitioning column. Once partitioned, titles are held unique by the titles table
+     * of <code>ArticleRetentionService</code> instead. Tables created by older versions keep the key
+     * Hibernate added under its own name.
+     */
+    public void addTitleKey() {
+        Integer partitions = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND PARTITION_NAME IS NOT NULL", Integer.class);
+        if (partitions != null && partitions > 0)
+            return;
+
+        // A unique key made of the title alone, whatever its name
+        Integer keys = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.STATISTICS s " +
+                "WHERE s.TABLE_SCHEMA = DATABASE() AND s.TABLE_NAME = 'articles' AND s.NON_UNIQUE = 0 " +
+                "AND s.COLUMN_NAME = 'title' AND NOT EXISTS (SELECT 1 FROM information_schema.STATISTICS o " +
+                "WHERE o.TABLE_SCHEMA = s.TABLE_SCHEMA AND o.TABLE_NAME = s.TABLE_NAME " +
+                "AND o.INDEX_NAME = s.INDEX_NAME AND o.COLUMN_NAME <> 'title')", Integer.class);
+        if (keys != null && keys > 0)
+            return;
+
+        try {
+            jdbcTemplate.execute("ALTER TABLE articles ADD CONSTRAINT " + TITLE_KEY + " UNIQUE (title)");
+            log.info("Added the unique key on article titles");
+        } catch (DataIntegrityViolationException e) {
+            // Writes still match existing titles, so carry on as Hibernate did when it failed to add the key
+            log.warn("Could not add the unique key on article titles, as some articles share a title", e);
+        }
+    }
+
+    /**
+     * Computes the title keys and content hashes of articles stored before they were introduced.
+     * Articles are looked up by title key when written, so this must finish before any writes.
+     * <p>
+     * Older versions kept a hash of each title as written, which missed titles differing only in
+     * case or accents. Its column is dropped, and the keys replacing it are computed here.
+     */
+    public void backfillHashes() {
+        Integer oldColumns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND COLUMN_NAME = 'title_hash'", Integer.class);
+        if (oldColumns != null && oldColumns > 0) {
+            jdbcTemplate.execute("ALTER TABLE articles DROP COLUMN title_hash");
+            log.info("Dropped the title hashes of articles, replaced by title keys");
+        }
+
+        int migrated = 0;
+        int batchSize;
+        do {
+            batchSize = transactionTemplate.execute(status -> {
+                List<Article> articles = articleRepository.findByTitleKeyIsNull(Limit.of(BATCH_SIZE));
+                articles.forEach(Article::updateHashes);
+
+                entityManager.flush();
+                entityManager.clear();
+                return articles.size();
+            });
+            migrated += batchSize;
+        } while (batchSize == BATCH_SIZE);
+
+        if (migrated > 0)
+            log.info("Computed hashes for {} articles", migrated);
+    }
+
+    /**
+     * Compresses the bodies of articles stored as plain text.
+     * <p>
+     * The body column is first converted to binary, as compressed bodies are not valid text. Bodies
+     * are then read in order of ID, skipping those already compressed or too short to compress, so
+     * an interrupted migration carries on where it stopped on the next start. Bodies that do not
+     * get smaller are left as they are.
+     */
+    public void compressBodies() {
+        String type = jdbcTemplate.queryForObject("SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND COLUMN_NAME = 'body'", String.class);
+        if (!"longblob".equalsIgnoreCase(type)) {
+            jdbcTemplate.execute("ALTER TABLE articles MODIFY body LONGBLOB");
+            log.info("Converted article bodies to binary");
+        }
+
+        long lastId = 0;
+        int compressed = 0;
+        long plainBytes = 0;
+        long compressedBytes = 0;
+        List<StoredBody> bodies;
+        do {
+            bodies = jdbcTemplate.query("SELECT id, body FROM articles WHERE id > ? " +
+                            "AND LENGTH(body) >= ? AND SUBSTRING(body, 1, 1) <> X'00' ORDER BY id LIMIT ?",
+                    (row, index) -> new StoredBody(row.getLong(1), row.getBytes(2)),
+                    lastId, ArticleBodyCodec.MIN_COMPRESSED_LENGTH, BATCH_SIZE);
+
+            List<Object[]> updates = new ArrayList<>(bodies.size());
+            for (StoredBody body : bodies) {
+                byte[] encoded = ArticleBodyCodec.encode(ArticleBodyCodec.decode(body.stored()), true);
+                if (Arrays.equals(encoded, body.stored()))
+                    continue;
+
+                updates.add(new Object[] { encoded, body.id() });
+                plainBytes += body.stored().length;
+                compressedBytes += encoded.length;
+            }
+
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate("UPDATE articles SET body = ? WHERE id = ?", updates));
+            compressed += updates.size();
+            if (!bodies.isEmpty())
+                lastId = bodies.getLast().id();
+        } while (bodies.size() == BATCH_SIZE);
+
+        if (compressed > 0) {
+            log.info("Compressed the bodies of {} articles from {} to {} bytes", compressed, plainBytes,
+                    compressedBytes);
+        }
+    }
+
+    /**
+     * The body of an article as stored in the database.
+     * @param id the ID of the article
+     * @param stored the stored body
+     */
+    private record StoredBody(long id, byte[] stored) { }
+}
@@ -0,0 +1,359 @@
+package news_compiler.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.entity.Article;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service limiting how long articles are kept.
+ * <p>
+ * The <code>articles</code> table is partitioned by the month in which articles were fetched, so
+ * queries on recent articles only read the partitions covering their window, and old articles are
+ * removed by dropping whole partitions instead of deleting rows. Partitions entirely older than the
+ * maximum age are either dropped or, in archive mode, moved into a table of their own first.
+ * <p>
+ * MySQL requires every unique key of a partitioned table to include the partitioning column, so
+ * the table's primary key becomes <code>(id, time_fetched)</code> and its unique key on titles is
+ * dropped. Titles are instead kept unique by the <code>article_titles</code> table, which is not
+ * partitioned: <code>ArticleService</code> adds the title of every article it inserts in the same
+ * transaction, so of two writers inserting the same title at once, the second fails as it did on
+ * the unique key. Titles are released as their articles are removed.
+ * <p>
+ * The table is converted once, before the server starts, which rewrites it. This is off unless
+ * <code>articles.retention.enabled</code> is set.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "articles.retention.enabled", havingValue = "true")
+public class ArticleRetentionService implements SmartInitializingSingleton {
+    /** Name of the catch-all partition holding articles fetched after the last month partition */
+    private static final String FUTURE_PARTITION = "pfuture";
+
+    /** Name of each month's partition */
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    /** Number of months after the current one for which partitions are created ahead of time */
+    private static final int MONTHS_AHEAD = 2;
+
+    /** Name of the table holding the title of every article, with a unique key on titles */
+    public static final String TITLES_TABLE = "article_titles";
+
+    /** Number of IDs in each statement releasing titles */
+    private static final int RELEASE_BATCH_SIZE = 1000;
+
+    /** How long articles are kept after being fetched */
+    @Value("${articles.retention.max-age:P365D}")
+    private Duration maxAge;
+
+    /** What happens to partitions older than the maximum age */
+    @Value("${articles.retention.mode:DROP}")
+    private Mode mode;
+
+    /** Used for the partitioning statements, which JPA cannot express */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Factory owning the second-level cache, emptied of removed articles */
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Service tracking the version of the article data */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** Index used to search articles */
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    /** Service counting the recent articles in each category and from each source */
+    @Autowired
+    private ArticleFacetService articleFacetService;
+
+    /** Detector of articles nearly duplicating earlier ones */
+    @Autowired
+    private ArticleDuplicateDetector articleDuplicateDetector;
+
+    /**
+     * Partitions the table if needed, then removes expired articles.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        partition();
+        enforce();
+    }
+
+    /**
+     * Converts the table to one partitioned by month fetched, if it is not already.
+     * <p>
+     * Partitions are created from the month of the earliest article up to {@value MONTHS_AHEAD}
+     * months ahead. Articles without a fetch time are given their publishing time, or the current
+     * time, since the partitioning column cannot be null. The titles table is created first, so
+     * titles stay unique throughout.
+     */
+    public void partition() {
+        createTitles();
+        if (!getPartitions().isEmpty())
+            return;
+
+        long start = System.nanoTime();
+        jdbcTemplate.update("UPDATE articles SET time_fetched = COALESCE(time_published, CURRENT_TIMESTAMP) " +
+                "WHERE time_fetched IS NULL");
+
+        // Unique keys must include the partitioning column, so drop them along with the primary key.
+        // The titles table now holds the unique key on titles.
+        List<String> alterations = new ArrayList<>();
+        jdbcTemplate.queryForList("SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' " +
+                        "AND NON_UNIQUE = 0 AND INDEX_NAME <> 'PRIMARY'", String.class)
+                .forEach(index -> alterations.add("DROP INDEX `" + index + "`"));
+        alterations.add("DROP PRIMARY KEY");
+        alterations.add("ADD PRIMARY KEY (id, time_fetched)");
+
+        Timestamp earliest = jdbcTemplate.queryForObject("SELECT MIN(time_fetched) FROM articles", Timestamp.class);
+        YearMonth first = earliest == null
+                ? YearMonth.now(ZoneOffset.UTC)
+                : YearMonth.from(earliest.toInstant().atOffset(ZoneOffset.UTC));
+
+        // Rewrite the table once, changing the keys and partitioning it in the same statement
+        jdbcTemplate.execute("ALTER TABLE articles " + String.join(", ", alterations) +
+                " PARTITION BY RANGE (UNIX_TIMESTAMP(time_fetched)) (" +
+                partitionsFrom(first) + ")");
+
+        log.info("Partitioned the articles table by month in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Creates the partitions for the coming months, and removes the partitions past the maximum
+     * age.
+     */
+    @Scheduled(fixedDelayString = "${articles.retention.check-interval:PT1H}",
+            initialDelayString = "${articles.retention.check-interval:PT1H}")
+    public void enforce() {
+        List<Partition> partitions = getPartitions();
+        if (partitions.isEmpty())
+            return;
+
+        // Split the catch-all partition so that upcoming months get partitions of their own
+        YearMonth last = YearMonth.now(ZoneOffset.UTC);
+        for (Partition partition : partitions) {
+            if (partition.month() != null && partition.month().isAfter(last))
+                last = partition.month();
+        }
+        if (last.isBefore(YearMonth.now(ZoneOffset.UTC).plusMonths(MONTHS_AHEAD))) {
+            jdbcTemplate.execute("ALTER TABLE articles REORGANIZE PARTITION " + FUTURE_PARTITION +
+                    " INTO (" + partitionsFrom(last.plusMonths(1)) + ")");
+        }
+
+        // Remove the partitions whose articles were all fetched before the cutoff
+        long cutoff = Instant.now().minus(maxAge).getEpochSecond();
+        List<Long> removedIds = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.month() != null && partition.end() <= cutoff)
+                removedIds.addAll(remove(partition.name()));
+        }
+
+        if (removedIds.isEmpty())
+            return;
+
+        // Removing partitions bypasses JPA, so drop everything derived from the removed articles
+        dataVersionService.changed();
+        entityManagerFactory.getCache().evict(Article.class);
+        articleSearchIndex.remove(removedIds);
+        articleDuplicateDetector.remove(removedIds);
+        articleFacetService.rebuild();
+    }
+
+    /**
+     * Adds the titles of newly inserted articles, within the transaction inserting them.
+     * @param articles the articles inserted, with their IDs assigned
+     * @throws org.springframework.dao.DuplicateKeyException if another article has the same title
+     */
+    public void addTitles(Collection<Article> articles) {
+        if (articles.isEmpty())
+            return;
+
+        // Untitled articles are not kept unique, as they were not by the unique key
+        jdbcTemplate.batchUpdate("INSERT INTO " + TITLES_TABLE + " (title, article_id) VALUES (?, ?)",
+                articles.stream().filter(article -> article.getTitle() != null)
+                        .map(article -> new Object[] { article.getTitle(), article.getId() }).toList());
+    }
+
+    /**
+     * Changes the titles of updated articles, within the transaction updating them.
+     * @param articles the articles whose title changed
+     * @throws org.springframework.dao.DuplicateKeyException if another article has the same title
+     */
+    public void updateTitles(List<Article> articles) {
+        if (articles.isEmpty())
+            return;
+
+        jdbcTemplate.batchUpdate("UPDATE " + TITLES_TABLE + " SET title = ? WHERE article_id = ?",
+                articles.stream().map(article -> new Object[] { article.getTitle(), article.getId() }).toList());
+    }
+
+    /**
+     * Releases the titles of removed articles, so they can be used again.
+     * @param articleIds the IDs of the articles removed
+     */
+    public void removeTitles(Collection<Long> articleIds) {
+        List<Long> ids = List.copyOf(articleIds);
+        for (int start = 0; start < ids.size(); start += RELEASE_BATCH_SIZE) {
+            List<Long> batch = ids.subList(start, Math.min(start + RELEASE_BATCH_SIZE, ids.size()));
+            jdbcTemplate.update("DELETE FROM " + TITLES_TABLE + " WHERE article_id IN (" +
+                    String.join(", ", batch.stream().map(id -> "?").toList()) + ")", batch.toArray());
+        }
+    }
+
+    /**
+     * Creates the titles table if it does not exist, and brings it up to date with the articles.
+     * Titles are released for articles that no longer exist, as when the server stopped between
+     * removing a partition and releasing its titles, and added for articles written while
+     * retention was disabled.
+     */
+    private void createTitles() {
+        // Compare titles exactly as the articles table's unique key on titles did
+        Map<String, Object> title = jdbcTemplate.queryForMap("SELECT CHARACTER_MAXIMUM_LENGTH, " +
+                "CHARACTER_SET_NAME, COLLATION_NAME FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND COLUMN_NAME = 'title'");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TITLES_TABLE + " (" +
+                "title VARCHAR(" + title.get("CHARACTER_MAXIMUM_LENGTH") + ") " +
+                "CHARACTER SET " + title.get("CHARACTER_SET_NAME") + " COLLATE " + title.get("COLLATION_NAME") +
+                " NOT NULL, article_id BIGINT NOT NULL, PRIMARY KEY (title), KEY (article_id))");
+
+        int released = jdbcTemplate.update("DELETE t FROM " + TITLES_TABLE + " t " +
+                "LEFT JOIN articles a ON a.id = t.article_id WHERE a.id IS NULL");
+
+        // Of articles already sharing a title, only the first keeps it
+        int added = jdbcTemplate.update("INSERT IGNORE INTO " + TITLES_TABLE + " (title, article_id) " +
+                "SELECT a.title, a.id FROM articles a LEFT JOIN " + TITLES_TABLE + " t ON t.article_id = a.id " +
+                "WHERE t.article_id IS NULL AND a.title IS NOT NULL ORDER BY a.id");
+
+        if (released > 0 || added > 0)
+            log.info("Released {} titles and added {} to the {} table", released, added, TITLES_TABLE);
+    }
+
+    /**
+     * Drops a partition, first moving its articles into an archive table in archive mode.
+     * <p>
+     * Archiving is safe to repeat after an attempt stopped part way: the archive table is reused
+     * if it exists, and if it already holds the partition's articles, the emptied partition is just
+     * dropped. A partition is never swapped with an archive table already holding other articles.
+     *
+     * @param partition the name of the partition
+     * @return the IDs of the articles removed from the table
+     */
+    private List<Long> remove(String partition) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM articles PARTITION (" + partition + ")", Long.class);
+
+        if (mode == Mode.ARCHIVE) {
+            // Swapping a partition with an empty table of the same structure moves no data
+            String archive = "articles_archive_" + partition.substring(1);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + archive + " LIKE articles");
+            if (isPartitioned(archive))
+                jdbcTemplate.execute("ALTER TABLE " + archive + " REMOVE PARTITIONING");
+
+            Integer archived = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + archive, Integer.class);
+            if (archived == null || archived == 0) {
+                jdbcTemplate.execute("ALTER TABLE articles EXCHANGE PARTITION " + partition + " WITH TABLE " + archive);
+            } else if (ids.isEmpty()) {
+                // An earlier attempt moved the articles but did not drop the partition
+                ids = jdbcTemplate.queryForList("SELECT id FROM " + archive, Long.class);
+            } else {
+                log.error("Not archiving partition {} holding {} articles, as {} already holds {} others",
+                        partition, ids.size(), archive, archived);
+                return List.of();
+            }
+        }
+
+        jdbcTemplate.execute("ALTER TABLE articles DROP PARTITION " + partition);
+        removeTitles(ids);
+        log.info("{} partition {} holding {} articles", mode == Mode.ARCHIVE ? "Archived" : "Dropped",
+                partition, ids.size());
+
+        return ids;
+    }
+
+    /**
+     * Returns whether a table is partitioned.
+     * @param table the name of the table
+     * @return true if the table has partitions
+     */
+    private boolean isPartitioned(String table) {
+        Integer partitions = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL", Integer.class, table);
+        return partitions != null && partitions > 0;
+    }
+
+    /**
+     * Returns the partitions of the table, in order.
+     * @return the partitions, or an empty list if the table is not partitioned
+     */
+    private List<Partition> getPartitions() {
+        return jdbcTemplate.query("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND PARTITION_NAME IS NOT NULL " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION",
+                (row, index) -> {
+                    String name = row.getString(1);
+                    return FUTURE_PARTITION.equals(name)
+                            ? new Partition(name, null, Long.MAX_VALUE)
+                            : new Partition(name, YearMonth.parse(name, PARTITION_NAME), Long.parseLong(row.getString(2)));
+                });
+    }
+
+    /**
+     * Returns the definitions of the month partitions from the given month up to
+     * {@value MONTHS_AHEAD} months ahead, followed by the catch-all partition.
+     * @param first the month of the first partition
+     * @return the partition definitions, separated by commas
+     */
+    private static String partitionsFrom(YearMonth first) {
+        YearMonth last = YearMonth.now(ZoneOffset.UTC).plusMonths(MONTHS_AHEAD);
+
+        // Boundaries are given in seconds, so they do not depend on the session's time zone
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            long end = month.plusMonths(1).atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            definitions.add("PARTITION " + PARTITION_NAME.format(month) + " VALUES LESS THAN (" + end + ")");
+        }
+        definitions.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE");
+
+        return String.join(", ", definitions);
+    }
+
+    /**
+     * What happens to partitions older than the maximum age.
+     */
+    public enum Mode {
+        /** The partition and its articles are dropped */
+        DROP,
+        /** The partition's articles are moved into a table named after the month, then it is dropped */
+        ARCHIVE
+    }
+
+    /**
+     * A partition of the table.
+     * @param name the name of the partition
+     * @param month the month the partition holds, or null for the catch-all partition
+     * @param end the (exclusive) upper bound of the partition, in seconds since the epoch
+     */
+    private record Partition(String name, YearMonth month, long end) { }
+}
@@ -0,0 +1,630 @@
+package news_compiler.service;
+
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.dto.ArticleDto;
+import news_compiler.repository.ArticleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Service holding an in-memory inverted index over the title and body of every article.
+ * <p>
+ * Each term maps to a list of the articles containing it, stored as delta-encoded variable-length
+ * integers so that a posting usually takes two or three bytes. Results are ranked with BM25, with
+ * terms in the title counting {@value TITLE_WEIGHT} times as much as terms in the body.
+ * <p>
+ * The index is built from the database once the application has started, and kept up-to-date as
+ * articles are written through <code>ArticleService</code>. Articles deleted through any other path
+ * are dropped from the index as soon as a search finds them missing from the database.
+ */
+@Slf4j
+@Service
+public class ArticleSearchIndex {
+    /** Number of times a term in the title counts towards the term frequency */
+    public static final int TITLE_WEIGHT = 3;
+
+    /** BM25 term frequency saturation */
+    private static final float K1 = 1.2f;
+
+    /** BM25 document length normalization */
+    private static final float B = 0.75f;
+
+    /** Longest term that is indexed. Longer tokens are usually URLs or garbage. */
+    private static final int MAX_TERM_LENGTH = 40;
+
+    /** Number of articles read from the database at a time while building */
+    private static final int BUILD_PAGE_SIZE = 1000;
+
+    /** Fraction of deleted documents at which the postings are compacted */
+    private static final double COMPACT_RATIO = 0.25;
+
+    /** Repository for Article entities */
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    /** Lock letting searches run concurrently, while updates run alone */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Postings of each term. Guarded by the lock. */
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /** Document number of each indexed article. Guarded by the lock. */
+    private final Map<Long, Integer> documents = new HashMap<>();
+
+    /** Article ID of each document. Guarded by the lock. */
+    private long[] articleIds = new long[1024];
+
+    /** Weighted length of each document, or -1 if it was deleted. Guarded by the lock. */
+    private int[] lengths = new int[1024];
+
+    /** Number of document numbers handed out. Guarded by the lock. */
+    private int documentCount;
+
+    /** Total weighted length of the live documents. Guarded by the lock. */
+    private long totalLength;
+
+    /** Whether the index has been built from the database */
+    private volatile boolean ready;
+
+    /**
+     * Returns whether the index has been built and can be searched.
+     * @return true once the index has been built from the database
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the number of articles in the index.
+     * @return the number of indexed articles
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from every article in the database.
+     * <p>
+     * Articles are read in pages and the index is only locked while each page is added, so writes
+     * made during the build are not held up. Articles indexed by those writes are newer than what
+     * the build read, so the build leaves them alone.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long after = 0;
+        List<ArticleRepository.ArticleText> page;
+        do {
+            page = articleRepository.findTextsByIdGreaterThan(after, Limit.of(BUILD_PAGE_SIZE));
+
+            lock.writeLock().lock();
+            try {
+                for (ArticleRepository.ArticleText article : page) {
+                    if (!documents.containsKey(article.getId()))
+                        add(article.getId(), article.getTitle(), article.getBody());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (!page.isEmpty())
+                after = page.getLast().getId();
+        } while (page.size() == BUILD_PAGE_SIZE);
+
+        // Release the spare capacity left over from growing the postings
+        lock.writeLock().lock();
+        try {
+            postings.values().forEach(Postings::trim);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Indexed {} articles for search in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds articles to the index, replacing any earlier version of them.
+     * @param articles the articles as they are stored, with their ID and body
+     */
+    public void index(Collection<ArticleDto> articles) {
+        if (articles.isEmpty())
+            return;
+
+        lock.writeLock().lock();
+        try {
+            for (ArticleDto article : articles) {
+                delete(article.getId());
+                add(article.getId(), article.getTitle(), article.getBody());
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes articles from the index.
+     * @param articleIds the IDs of the articles to remove
+     */
+    public void remove(Collection<Long> articleIds) {
+        if (articleIds.isEmpty())
+            return;
+
+        lock.writeLock().lock();
+        try {
+            articleIds.forEach(this::delete);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the articles best matching the given terms.
+     * An article matches if it contains any of the terms, and is scored with BM25.
+     *
+     * @param terms the terms to search for, as returned by {@link #terms(String)}
+     * @param limit the maximum number of matches to return
+     * @return the best matches, highest score first
+     * @throws IllegalStateException if the index has not been built yet
+     */
+    public List<Match> search(Collection<String> terms, int limit) {
+        if (!ready)
+            throw new IllegalStateException("Search index is still being built");
+
+        lock.readLock().lock();
+        try {
+            int liveCount = documents.size();
+            if (liveCount == 0)
+                return List.of();
+
+            // Terms of the BM25 length normalization that are the same for every document
+            float normBase = K1 * (1 - B);
+            float normScale = K1 * B * liveCount / totalLength;
+
+            float[] scores = new float[documentCount];
+            int[] matched = new int[64];
+            int matchedCount = 0;
+
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings == null)
+                    continue;
+
+                // Postings may still count deleted documents until the next compaction
+                int frequency = Math.min(termPostings.count, liveCount);
+                float weight = (float) Math.log(1 + (liveCount - frequency + 0.5) / (frequency + 0.5)) * (K1 + 1);
+
+                Postings.Reader reader = termPostings.reader();
+                while (reader.next()) {
+                    int document = reader.document;
+                    int length = lengths[document];
+                    if (length < 0)
+                        continue;
+
+                    if (scores[document] == 0) {
+                        if (matchedCount == matched.length)
+                            matched = Arrays.copyOf(matched, Math.min(matchedCount * 2, documentCount));
+                        matched[matchedCount++] = document;
+                    }
+
+                    float tf = reader.frequency;
+                    scores[document] += weight * tf / (tf + normBase + normScale * length);
+                }
+            }
+
+            // Keep the best matches in a heap with the worst of them on top
+            int[] best = new int[Math.min(limit, matchedCount)];
+            int bestCount = 0;
+            for (int i = 0; i < matchedCount; ++i) {
+                int document = matched[i];
+                if (bestCount < best.length) {
+                    best[bestCount++] = document;
+                    siftUp(best, bestCount - 1, scores);
+                } else if (ranksBefore(document, best[0], scores)) {
+                    best[0] = document;
+                    siftDown(best, bestCount, scores);
+                }
+            }
+
+            // Empty the heap from the worst match to the best
+            Match[] matches = new Match[bestCount];
+            for (int i = bestCount - 1; i >= 0; --i) {
+                int document = best[0];
+                matches[i] = new Match(articleIds[document], scores[document]);
+                best[0] = best[i];
+                siftDown(best, i, scores);
+            }
+
+            return Arrays.asList(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits a query into the distinct terms to search for.
+     * @param query the query, as typed by the user
+     * @return the distinct terms of the query, in order of appearance
+     */
+    public static Set<String> terms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        tokenize(query, (term, start, end) -> terms.add(term));
+        return terms;
+    }
+
+    /**
+     * Finds where the given terms appear in a text.
+     * @param text the text to search, may be null
+     * @param terms the terms to find, as returned by {@link #terms(String)}
+     * @param limit the maximum number of occurrences to return
+     * @return the start (inclusive) and end (exclusive) offset of each occurrence, in order
+     */
+    public static List<int[]> highlight(String text, Set<String> terms, int limit) {
+        List<int[]> highlights = new ArrayList<>();
+        tokenize(text, (term, start, end) -> {
+            if (highlights.size() < limit && terms.contains(term))
+                highlights.add(new int[] {start, end});
+        });
+
+        return highlights;
+    }
+
+    /**
+     * Returns whether a document ranks before another.
+     * Documents with the same score are ranked by recency, newest first.
+     *
+     * @param a the first document number
+     * @param b the second document number
+     * @param scores the score of each document
+     * @return true if the first document ranks before the second
+     */
+    private static boolean ranksBefore(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a > b);
+    }
+
+    /**
+     * Moves a document up a heap of documents until its parent ranks before it.
+     * @param heap the heap, with the lowest ranked document first
+     * @param index the position of the document to move
+     * @param scores the score of each document
+     */
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        int document = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBefore(heap[parent], document, scores))
+                break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = document;
+    }
+
+    /**
+     * Moves the first document down a heap of documents until it ranks before its children.
+     * @param heap the heap, with the lowest ranked document first
+     * @param size the number of documents in the heap
+     * @param scores the score of each document
+     */
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        if (size == 0)
+            return;
+
+        int document = heap[0];
+        int index = 0;
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], scores))
+                ++child;
+            if (!ranksBefore(document, heap[child], scores))
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = document;
+    }
+
+    /**
+     * Adds an article to the index under a new document number.
+     * The article must not already be in the index.
+     *
+     * @param articleId the ID of the article
+     * @param title the title of the article
+     * @param body the body of the article, may be null
+     */
+    private void add(long articleId, String title, String body) {
+        // Count the weighted occurrences of each term
+        Map<String, int[]> frequencies = new HashMap<>();
+        int[] length = new int[1];
+        tokenize(title, (term, start, end) -> {
+            frequencies.computeIfAbsent(term, t -> new int[1])[0] += TITLE_WEIGHT;
+            length[0] += TITLE_WEIGHT;
+        });
+        tokenize(body, (term, start, end) -> {
+            frequencies.computeIfAbsent(term, t -> new int[1])[0]++;
+            length[0]++;
+        });
+
+        if (documentCount == articleIds.length) {
+            articleIds = Arrays.copyOf(articleIds, documentCount * 2);
+            lengths = Arrays.copyOf(lengths, documentCount * 2);
+        }
+
+        int document = documentCount++;
+        articleIds[document] = articleId;
+        lengths[document] = length[0];
+        totalLength += length[0];
+        documents.put(articleId, document);
+
+        frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new Postings()).add(document, frequency[0]));
+    }
+
+    /**
+     * Marks an article as deleted, if it is in the index.
+     * Its postings are left in place until the next compaction.
+     *
+     * @param articleId the ID of the article
+     */
+    private void delete(long articleId) {
+        Integer document = documents.remove(articleId);
+        if (document == null)
+            return;
+
+        totalLength -= lengths[document];
+        lengths[document] = -1;
+    }
+
+    /**
+     * Drops the postings of deleted documents once they make up a large part of the index.
+     * Live documents are renumbered in the same order, so every postings list stays sorted.
+     */
+    private void compactIfNeeded() {
+        int deletedCount = documentCount - documents.size();
+        if (deletedCount < 1024 || deletedCount < documentCount * COMPACT_RATIO)
+            return;
+
+        // Number the live documents consecutively
+        int[] renumbered = new int[documentCount];
+        int liveCount = 0;
+        for (int document = 0; document < documentCount; ++document) {
+            if (lengths[document] < 0) {
+                renumbered[document] = -1;
+            } else {
+                renumbered[document] = liveCount;
+                articleIds[liveCount] = articleIds[document];
+                lengths[liveCount] = lengths[document];
+                documents.put(articleIds[liveCount], liveCount);
+                ++liveCount;
+            }
+        }
+        documentCount = liveCount;
+
+        // Rewrite the postings without the deleted documents
+        Iterator<Postings> iterator = postings.values().iterator();
+        while (iterator.hasNext()) {
+            Postings termPostings = iterator.next();
+            Postings compacted = new Postings();
+            Postings.Reader reader = termPostings.reader();
+            while (reader.next()) {
+                if (renumbered[reader.document] >= 0)
+                    compacted.add(renumbered[reader.document], reader.frequency);
+            }
+
+            if (compacted.count == 0) {
+                iterator.remove();
+            } else {
+                compacted.trim();
+                termPostings.replaceWith(compacted);
+            }
+        }
+    }
+
+    /**
+     * Empties the index.
+     */
+    private void clear() {
+        postings.clear();
+        documents.clear();
+        articleIds = new long[1024];
+        lengths = new int[1024];
+        documentCount = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Splits a text into lower-case terms made of letters and digits.
+     * Shared with the story clusterer, so that both see the same terms.
+     * @param text the text to split, may be null
+     * @param consumer receives each term along with its offsets in the text
+     */
+    static void tokenize(String text, TokenConsumer consumer) {
+        if (text == null)
+            return;
+
+        StringBuilder term = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (term.isEmpty())
+                    start = i;
+                term.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (!term.isEmpty()) {
+                if (term.length() <= MAX_TERM_LENGTH)
+                    consumer.accept(term.toString(), start, i);
+                term.setLength(0);
+            }
+
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    /**
+     * Receives the terms of a text.
+     */
+    @FunctionalInterface
+    interface TokenConsumer {
+        /**
+         * Receives a single term.
+         * @param term the term, in lower case
+         * @param start the offset of the term's first character in the text
+         * @param end the offset following the term's last character in the text
+         */
+        void accept(String term, int start, int end);
+    }
+
+    /**
+     * An article matching a search.
+     * @param articleId the ID of the article
+     * @param score the BM25 score of the article
+     */
+    public record Match(long articleId, float score) { }
+
+    /**
+     * The documents containing a term, with the weighted frequency of the term in each.
+     * <p>
+     * Each posting is stored as the gap from the previous document number followed by the
+     * frequency, both as variable-length integers.
+     */
+    private static final class Postings {
+        /** The encoded postings */
+        private byte[] data = new byte[8];
+
+        /** Number of bytes used */
+        private int size;
+
+        /** Number of postings */
+        private int count;
+
+        /** Document number of the last posting, or -1 if there are none */
+        private int lastDocument = -1;
+
+        /**
+         * Appends a posting. Documents must be added in increasing order.
+         * @param document the document number
+         * @param frequency the weighted frequency of the term in the document
+         */
+        void add(int document, int frequency) {
+            if (data.length - size < 10)
+                data = Arrays.copyOf(data, data.length * 2);
+
+            write(document - lastDocument);
+            write(frequency);
+            lastDocument = document;
+            ++count;
+        }
+
+        /**
+         * Shrinks the buffer to the bytes in use.
+         */
+        void trim() {
+            if (data.length != size)
+                data = Arrays.copyOf(data, size);
+        }
+
+        /**
+         * Takes over the postings of another instance.
+         * @param other the postings to take over
+         */
+        void replaceWith(Postings other) {
+            data = other.data;
+            size = other.size;
+            count = other.count;
+            lastDocument = other.lastDocument;
+        }
+
+        /**
+         * Returns a reader positioned before the first posting.
+         * @return a new reader
+         */
+        Reader reader() {
+            return new Reader();
+        }
+
+        /**
+         * Writes a non-negative integer, seven bits at a time.
+         * @param value the value to write
+         */
+        private void write(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        /**
+         * Reads the postings in order.
+         */
+        final class Reader {
+            /** Offset of the next byte to read */
+            private int offset;
+
+            /** Document number of the current posting */
+            int document = -1;
+
+            /** Weighted frequency of the term in the current document */
+            int frequency;
+
+            /**
+             * Moves to the next posting.
+             * @return false if there are no more postings
+             */
+            boolean next() {
+                if (offset >= size)
+                    return false;
+
+                document += read();
+                frequency = read();
+                return true;
+            }
+
+            /**
+             * Reads an integer written by {@link Postings#write(int)}.
+             * @return the value read
+             */
+            private int read() {
+                int value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    if (b >= 0)
+                        return value;
+                }
+            }
+        }
+    }
+}
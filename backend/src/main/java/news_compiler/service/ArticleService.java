@@ -1,17 +1,34 @@
 package news_compiler.service;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticlePageDto;
+import news_compiler.dto.ArticleSearchHitDto;
 import news_compiler.entity.Article;
+import news_compiler.entity.ArticleHasher;
 import news_compiler.mapper.ArticleMapper;
 import news_compiler.repository.ArticleRepository;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Service for Article entities.
@@ -20,10 +37,61 @@ import java.util.Optional;
  */
 @Service
 public class ArticleService {
+    /** How long after being fetched an article is considered recent */
+    public static final Duration RECENT_WINDOW = Duration.ofHours(24);
+
+    /** Largest number of articles that may be requested in a single page */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /** Number of articles written in each transaction */
+    public static final int WRITE_CHUNK_SIZE = 500;
+
+    /** Largest number of articles that may be returned by a single search */
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    /** Largest number of highlights returned for each field of a search result */
+    public static final int MAX_HIGHLIGHTS = 20;
+
     /** Repository for Article entities */
     @Autowired
     private ArticleRepository articleRepository;
 
+    /** Entity manager used to insert and flush articles in batches */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Template for running each chunk of writes in its own transaction */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Service holding the recent articles in memory */
+    @Autowired
+    private RecentArticlesSnapshotService recentArticlesSnapshotService;
+
+    /** Index used to search articles */
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    /** Detector of articles nearly duplicating earlier ones */
+    @Autowired
+    private ArticleDuplicateDetector articleDuplicateDetector;
+
+    /** Service grouping the recent articles into stories */
+    @Autowired
+    private ArticleStoryService articleStoryService;
+
+    /** Service keeping titles unique once the table is partitioned, if retention is enabled */
+    @Autowired
+    private ObjectProvider<ArticleRetentionService> articleRetentionService;
+
+    /** Service pushing the written articles to subscribed clients */
+    @Autowired
+    private ArticleEventService articleEventService;
+
+    /** Records the size of each batch written and what happened to its articles */
+    @Autowired
+    private ArticleWriteMetrics articleWriteMetrics;
+
     /**
      * Returns an article by its ID.
      *
@@ -47,93 +115,352 @@ public class ArticleService {
      * @return a list of the most recently fetched articles
      */
     public List<ArticleDto> getRecentlyFetched() {
-        // Fetch articles in order of publication
-        List<ArticleDto> articles = articleRepository.findAll()
-                .stream().map(ArticleMapper::articleToDto).toList();  // Map to DTOs
-
-        // Get the time 24-hours ago
-        OffsetDateTime time24HoursAgo = OffsetDateTime.now().minusHours(24);
-
-        // Filter out articles that were fetched more than 24 hours ago
-        articles = articles.stream()
-                .filter(article -> article.getTimeFetched().toEpochSecond() > time24HoursAgo.toEpochSecond())
-                .toList();
-
-        // Create a new mutable list to sort articles
-        ArrayList<ArticleDto> mutableArticles = new ArrayList<>(articles);
-
-        // Sort articles by time published, keeping null times at the end
-        mutableArticles.sort((a1, a2) -> {
-            if (a1.getTimePublished() == null && a2.getTimePublished() == null) {
-                // Compare based on time fetched
-                return a2.getTimeFetched().compareTo(a1.getTimeFetched());
-            } else if (a1.getTimePublished() == null) {
-                return 1;
-            } else if (a2.getTimePublished() == null) {
-                return -1;
-            } else {
-                return a2.getTimePublished().compareTo(a1.getTimePublished());
-            }
-        });
+        // Fetch articles inside the window, already sorted by the database
+        List<ArticleDto> articles = articleRepository.findLiteFetchedSince(recentWindowStart());
+
+        // Bodies are only read for the articles inside the window
+        loadBodies(articles);
 
-        return mutableArticles;
+        return articles;
     }
 
     /**
      * Returns a lightweight version of the articles fetched in the last 24 hours.
      * These articles do not contain the body of the article, to reduce payload size.
+     * <p>
+     * The articles are served from memory and shared between callers, so they must not be modified.
      *
      * @return a list of the most recently fetched articles with a null body.
      */
     public List<ArticleDto> getRecentlyFetchedLite() {
-        List<ArticleDto> articles = getRecentlyFetched();
+        return recentArticlesSnapshotService.getSnapshot().getArticles();
+    }
 
-        // Set the body to null to reduce payload size
-        articles.forEach(article -> article.setBody(null));
+    /**
+     * Returns a page of the articles fetched in the last 24 hours.
+     * Pages follow the same order as {@link #getRecentlyFetched()}.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of articles on the page
+     * @return the page of articles and the cursor for the next page
+     * @throws IllegalArgumentException if the cursor or limit is invalid
+     */
+    public ArticlePageDto getRecentlyFetchedPage(String cursor, int limit) {
+        ArticlePageDto page = getRecentlyFetchedLitePage(cursor, limit);
 
-        return articles;
+        // Bodies are only read for the articles on the page
+        loadBodies(page.getArticles());
+
+        return page;
+    }
+
+    /**
+     * Returns a page of the lightweight articles fetched in the last 24 hours.
+     * These articles do not contain the body of the article, to reduce payload size.
+     * <p>
+     * Pages are located by the sort key of the previous page's last article rather than by an
+     * offset, so every page costs the same to fetch.
+     *
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of articles on the page
+     * @return the page of articles with a null body and the cursor for the next page
+     * @throws IllegalArgumentException if the cursor or limit is invalid
+     */
+    public ArticlePageDto getRecentlyFetchedLitePage(String cursor, int limit) {
+        // Validate the limit
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("Invalid limit");
+
+        ArticleCursor position = cursor == null ? null : ArticleCursor.decode(cursor);
+        OffsetDateTime since = recentWindowStart();
+
+        // Fetch one extra article to find out whether there is a next page
+        List<ArticleDto> articles = new ArrayList<>(limit + 1);
+
+        // Articles with a publishing time come first
+        if (position == null) {
+            articles.addAll(articleRepository.findLitePublishedFetchedSince(since, Limit.of(limit + 1)));
+        } else if (position.getTimePublished() != null) {
+            articles.addAll(articleRepository.findLitePublishedFetchedSinceAfter(since,
+                    position.getTimePublished(), position.getTimeFetched(), position.getId(),
+                    Limit.of(limit + 1)));
+        }
+
+        // Followed by articles without a publishing time
+        if (articles.size() <= limit) {
+            Limit remaining = Limit.of(limit + 1 - articles.size());
+            if (position == null || position.getTimePublished() != null) {
+                articles.addAll(articleRepository.findLiteUnpublishedFetchedSince(since, remaining));
+            } else {
+                articles.addAll(articleRepository.findLiteUnpublishedFetchedSinceAfter(since,
+                        position.getTimeFetched(), position.getId(), remaining));
+            }
+        }
+
+        // Drop the extra article and point the cursor at the last one kept
+        if (articles.size() <= limit)
+            return new ArticlePageDto(articles, null);
+
+        List<ArticleDto> page = articles.subList(0, limit);
+        return new ArticlePageDto(page, ArticleCursor.after(page.getLast()).encode());
+    }
+
+    /**
+     * Searches the title and body of every article.
+     * <p>
+     * Articles containing any term of the query are ranked by relevance, using the in-memory
+     * {@link ArticleSearchIndex}. Only the matching articles are read from the database.
+     *
+     * @param query the terms to search for
+     * @param limit the maximum number of articles to return
+     * @return the best matching articles with a null body, most relevant first
+     * @throws IllegalArgumentException if the query has no terms or the limit is invalid
+     * @throws IllegalStateException if the index has not been built yet
+     */
+    public List<ArticleSearchHitDto> searchArticles(String query, int limit) {
+        // Validate the query and limit
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS)
+            throw new IllegalArgumentException("Invalid limit");
+
+        Set<String> terms = ArticleSearchIndex.terms(query);
+        if (terms.isEmpty())
+            throw new IllegalArgumentException("Invalid query");
+
+        List<ArticleSearchIndex.Match> matches = articleSearchIndex.search(terms, limit);
+        if (matches.isEmpty())
+            return List.of();
+
+        // Read the matching articles from the second-level cache, querying only for those missing
+        List<Long> ids = matches.stream().map(ArticleSearchIndex.Match::articleId).toList();
+        List<Article> articles = transactionTemplate.execute(status ->
+                entityManager.unwrap(Session.class).byMultipleIds(Article.class).with(CacheMode.NORMAL).multiLoad(ids));
+
+        List<ArticleSearchHitDto> hits = new ArrayList<>(matches.size());
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < matches.size(); ++i) {
+            ArticleSearchIndex.Match match = matches.get(i);
+            Article article = articles.get(i);
+            if (article == null) {
+                // Deleted without going through this service
+                missing.add(match.articleId());
+                continue;
+            }
+
+            ArticleDto articleDto = ArticleMapper.articleToDto(article);
+            articleDto.setBody(null);
+            hits.add(new ArticleSearchHitDto(articleDto, match.score(),
+                    ArticleSearchIndex.highlight(article.getTitle(), terms, MAX_HIGHLIGHTS),
+                    ArticleSearchIndex.highlight(article.getBody(), terms, MAX_HIGHLIGHTS)));
+        }
+
+        articleSearchIndex.remove(missing);
+
+        return hits;
     }
 
     /**
      * Writes articles to the database.
+     * <p>
+     * Articles are written in chunks, each in its own transaction. Existing articles in a chunk are
+     * looked up with a single query and all inserts and updates are sent as JDBC batches.
      *
      * @param articles the articles to write
      * @return the articles that were written
      */
     public List<ArticleDto> writeArticles(List<ArticleDto> articles) {
-        // Create a list to store the written articles
-        List<ArticleDto> writtenArticles = new LinkedList<>();
+        return upsertArticles(articles).getArticles();
+    }
 
-        // Write each article
-        for (ArticleDto article : articles)
-            writtenArticles.addLast(writeArticle(article));
+    /**
+     * Writes articles to the database, reporting what happened to each.
+     * <p>
+     * Articles whose title already exists, ignoring case and accents as the unique key on titles
+     * does, update the existing article, unless their title and content are unchanged, in which
+     * case the stored article is left untouched. Other articles are inserted. Articles written
+     * without a fetch time are given the current time.
+     * Inserted and updated articles whose body nearly duplicates an earlier article's are tagged
+     * with that article, which keeps them out of the recent feeds. See {@link #writeArticles(List)}.
+     *
+     * @param articles the articles to write
+     * @return the articles as they are stored, and whether each was inserted, updated or unchanged
+     */
+    public ArticleWriteResult upsertArticles(List<ArticleDto> articles) {
+        ArticleWriteResult result = new ArticleWriteResult(articles.size());
+        upsertArticles(articles, result);
+        return result;
+    }
+
+    /**
+     * Writes articles to the database, adding what happened to each to a result.
+     * See {@link #upsertArticles(List)}.
+     * <p>
+     * Each chunk is committed before the next is written. If a chunk cannot be written, the
+     * exception is thrown with the result holding the outcome of the chunks committed before it,
+     * so callers can tell which articles were written.
+     *
+     * @param articles the articles to write
+     * @param result the result to add the articles as they are stored to, and what happened to each
+     */
+    public void upsertArticles(List<ArticleDto> articles, ArticleWriteResult result) {
+        ArticleWriteResult written = new ArticleWriteResult(articles.size());
+        try {
+            // Write each chunk in its own transaction, indexing its changes and pushing them to
+            // subscribers once committed
+            for (int start = 0; start < articles.size(); start += WRITE_CHUNK_SIZE) {
+                List<ArticleDto> chunk = articles.subList(start, Math.min(start + WRITE_CHUNK_SIZE, articles.size()));
+                ArticleWriteResult chunkResult = transactionTemplate.execute(status -> writeChunk(chunk, status));
+                articleSearchIndex.index(chunkResult.changed());
+                articleStoryService.index(chunkResult.changed());
+                articleEventService.publish(chunkResult.published());
+                articleEventService.publishRemoved(chunkResult.unpublished());
+                written.addAll(chunkResult);
+                result.addAll(chunkResult);
+            }
+        } finally {
+            // Swap in the committed articles for readers, unless nothing changed
+            if (written.count(ArticleWriteResult.Outcome.UNCHANGED) < written.getOutcomes().size())
+                recentArticlesSnapshotService.refresh();
 
-        // Return the articles that were written
-        return writtenArticles;
+            articleWriteMetrics.record(written);
+        }
     }
 
     /**
      * Writes a single article to the database.
      * <p>
-     * <B>Note</B>: The ID of the given <code>ArticleDto</code> is disregarded.     *
+     * <B>Note</B>: The ID of the given <code>ArticleDto</code> is disregarded.
      * @param articleDto the article to write
      * @return the article that was written
      */
     public ArticleDto writeArticle(ArticleDto articleDto) {
-        Article article = ArticleMapper.dtoToArticle(articleDto);
+        return writeArticles(List.of(articleDto)).getFirst();
+    }
 
-        // Change the article's ID to null
-        article.setId(null);
+    /**
+     * Writes a chunk of articles within the current transaction.
+     *
+     * @param chunk the articles to write
+     * @param status the status of the current transaction
+     * @return the articles that were written and what happened to each, in the same order
+     */
+    private ArticleWriteResult writeChunk(List<ArticleDto> chunk, TransactionStatus status) {
+        // Look up the existing articles by title key in a single query, matching titles as the
+        // database's unique key on titles does
+        Map<String, Article> existingArticles = new HashMap<>(chunk.size() * 2);
+        Set<String> titles = chunk.stream().map(article -> ArticleHasher.normalizeTitle(article.getTitle()))
+                .collect(Collectors.toSet());
+        List<Long> titleKeys = chunk.stream().map(article -> ArticleHasher.hashTitleKey(article.getTitle()))
+                .distinct().toList();
+        articleRepository.findAllByTitleKeyIn(titleKeys)
+                .stream()
+                .filter(article -> titles.contains(ArticleHasher.normalizeTitle(article.getTitle())))  // Skip hash collisions
+                .forEach(article -> existingArticles.put(ArticleHasher.normalizeTitle(article.getTitle()), article));
 
-        // If the article already exists
-        if (articleRepository.findByTitle(article.getTitle()) != null) {
-            // Update the existing article
-            Article existingArticle = articleRepository.findByTitle(article.getTitle());
-            article.setId(existingArticle.getId());
+        // Articles written so far, compared with later ones as they are not indexed until committed
+        List<Article> written = new ArrayList<>(chunk.size());
+        Set<Article> inserted = new LinkedHashSet<>(chunk.size() * 2);
+        List<Article> retitled = new ArrayList<>();
+
+        // Given to articles sent without a fetch time, which the table's partitioning requires
+        OffsetDateTime now = OffsetDateTime.now();
+
+        ArticleWriteResult result = new ArticleWriteResult(chunk.size());
+        for (ArticleDto articleDto : chunk) {
+            Article article = existingArticles.get(ArticleHasher.normalizeTitle(articleDto.getTitle()));
+            ArticleWriteResult.Outcome outcome;
+
+            if (article == null) {
+                // Insert the article, disregarding the given ID
+                article = ArticleMapper.dtoToArticle(articleDto);
+                article.setId(null);
+                if (article.getTimeFetched() == null)
+                    article.setTimeFetched(now);
+                article.updateHashes();
+                article.setDuplicateOf(articleDuplicateDetector.findOriginal(article, written));
+                entityManager.persist(article);
+                inserted.add(article);
+                outcome = ArticleWriteResult.Outcome.INSERTED;
+
+                // Later duplicates within the chunk update this article
+                existingArticles.put(ArticleHasher.normalizeTitle(article.getTitle()), article);
+            } else if (Objects.equals(article.getTitle(), articleDto.getTitle())
+                    && Objects.equals(article.getContentHash(), hashContent(articleDto))) {
+                // Leave the article untouched
+                outcome = ArticleWriteResult.Outcome.UNCHANGED;
+            } else {
+                // Update the managed article; the change is written on flush
+                if (!Objects.equals(article.getTitle(), articleDto.getTitle()) && !inserted.contains(article))
+                    retitled.add(article);
+                ArticleMapper.copyDtoToArticle(articleDto, article);
+                if (article.getTimeFetched() == null)
+                    article.setTimeFetched(now);
+                article.updateHashes();
+                article.setDuplicateOf(articleDuplicateDetector.findOriginal(article, written));
+                outcome = ArticleWriteResult.Outcome.UPDATED;
+            }
+
+            if (outcome != ArticleWriteResult.Outcome.UNCHANGED)
+                written.add(article);
+
+            if (outcome != ArticleWriteResult.Outcome.UNCHANGED && article.getDuplicateOf() != null)
+                result.addDuplicate(ArticleMapper.articleToDto(article), outcome);
+            else
+                result.add(ArticleMapper.articleToDto(article), outcome);
         }
 
-        // Save and return the article
-        Article writtenArticle = articleRepository.save(article);
-        return ArticleMapper.articleToDto(writtenArticle);
+        // Send the batched statements, and release the chunk if this transaction owns it. Once the
+        // table is partitioned, titles are only held unique by the titles table.
+        entityManager.flush();
+        articleRetentionService.ifAvailable(retention -> {
+            retention.addTitles(inserted);
+            retention.updateTitles(retitled);
+        });
+        if (status.isNewTransaction())
+            entityManager.clear();
+
+        return result;
+    }
+
+    /**
+     * Returns the start of the window in which articles are considered recent.
+     *
+     * @return the time 24 hours ago
+     */
+    private OffsetDateTime recentWindowStart() {
+        return OffsetDateTime.now().minus(RECENT_WINDOW);
+    }
+
+    /**
+     * Fills in the bodies of articles that were fetched without them.
+     *
+     * @param articles the articles to fill in, modified in place
+     */
+    private void loadBodies(List<ArticleDto> articles) {
+        if (articles.isEmpty())
+            return;
+
+        // Only the partitions from the earliest article onwards need to be read. Articles in the
+        // recent window always have a fetch time.
+        OffsetDateTime since = articles.stream().map(ArticleDto::getTimeFetched)
+                .min(OffsetDateTime::compareTo).orElseThrow();
+
+        // Fetch the bodies in a single query
+        Map<Long, String> bodies = new HashMap<>(articles.size() * 2);
+        articleRepository.findBodiesByIdInFetchedSince(articles.stream().map(ArticleDto::getId).toList(), since)
+                .forEach(body -> bodies.put(body.getId(), body.getBody()));
+
+        articles.forEach(article -> article.setBody(bodies.get(article.getId())));
+    }
+
+    /**
+     * Hashes the content of an article, as stored by {@link Article#updateHashes()}.
+     *
+     * @param articleDto the article to hash
+     * @return the hash of the article's content
+     */
+    private static long hashContent(ArticleDto articleDto) {
+        return ArticleHasher.hashContent(articleDto.getBody(), articleDto.getTimePublished(),
+                articleDto.getSource(), articleDto.getArticleUrl(), articleDto.getImageUrl(),
+                articleDto.getCategory());
     }
 }
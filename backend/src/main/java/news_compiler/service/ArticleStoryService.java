@@ -0,0 +1,579 @@
+package news_compiler.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticleStoryDto;
+import news_compiler.repository.ArticleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service grouping the articles fetched in the last 24 hours into stories, each the coverage of
+ * the same event by one or more sources.
+ * <p>
+ * Each article is reduced to a vector of the terms of its title and body, weighted by TF-IDF over
+ * the window and cut down to its {@value MAX_TERMS} heaviest terms. As articles are written, each
+ * joins the story whose centroid is most similar to it, if any is at least {@value MIN_SIMILARITY}
+ * similar, and starts a new story otherwise. Stories are looked up through the heaviest terms of
+ * their articles, so placing an article only compares it with the few stories sharing those terms
+ * rather than clustering the window again. As with any single-pass clustering, the stories depend
+ * somewhat on the order articles arrive in.
+ * <p>
+ * Articles leave their story when they leave the window, are deleted through JPA, or are written
+ * again. The stories covered by at least {@value MIN_SOURCES} sources are published as an
+ * immutable list after every change, so serving them never touches the database or the clusters.
+ * The stories are rebuilt from the database at startup.
+ */
+@Slf4j
+@Service
+public class ArticleStoryService {
+    /** Number of terms kept in the vector of each article */
+    private static final int MAX_TERMS = 32;
+
+    /** Number of an article's heaviest terms through which its story is looked up */
+    private static final int CANDIDATE_TERMS = 8;
+
+    /** Smallest cosine similarity between an article and a story's centroid for the article to join it */
+    private static final double MIN_SIMILARITY = 0.3;
+
+    /** Shortest term kept in the vectors, as shorter terms are mostly function words */
+    private static final int MIN_TERM_LENGTH = 3;
+
+    /** Fewest distinct sources covering a story for it to be served */
+    public static final int MIN_SOURCES = 2;
+
+    /** Largest number of stories served at once */
+    public static final int MAX_STORIES = 100;
+
+    /** Order of the terms of an article, heaviest first and then alphabetically so ties are stable */
+    private static final Comparator<TermWeight> RANKING = Comparator.comparingDouble(TermWeight::weight).reversed()
+            .thenComparing(termWeight -> termWeight.term().text);
+
+    /** Common words left out of the vectors, as they say nothing about the event */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "about", "after", "all", "also", "and", "any", "are", "because", "been", "before", "being",
+            "but", "can", "could", "did", "does", "for", "from", "had", "has", "have", "her", "here",
+            "him", "his", "how", "into", "its", "just", "last", "like", "many", "may", "more", "most",
+            "much", "new", "not", "now", "one", "only", "other", "our", "out", "over", "said", "says",
+            "she", "should", "since", "some", "such", "than", "that", "the", "their", "them", "then",
+            "there", "these", "they", "this", "those", "told", "two", "under", "very", "was", "were",
+            "what", "when", "where", "which", "while", "who", "will", "with", "would", "year", "years",
+            "you", "your");
+
+    /** Listener telling the service of committed deletions */
+    @Autowired
+    private ArticleCommitListener articleCommitListener;
+
+    /** Repository for Article entities */
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    /** Lock guarding the stories */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Clustered articles by ID. Guarded by the lock. */
+    private final Map<Long, Member> members = new HashMap<>();
+
+    /** Stories with at least one article. Guarded by the lock. */
+    private final Set<Story> stories = new HashSet<>();
+
+    /**
+     * Terms of the clustered articles. Articles share the same instance of each term, which keeps
+     * the window small and lets vectors be compared by identity. Guarded by the lock.
+     */
+    private final Map<String, Term> vocabulary = new HashMap<>();
+
+    /**
+     * Clustered articles, the earliest fetched first. Entries of articles since removed or
+     * replaced are only dropped once they reach the head. Guarded by the lock.
+     */
+    private final PriorityQueue<Member> expiries = new PriorityQueue<>(Comparator.comparing(Member::fetched));
+
+    /** Stories served to readers, most widely covered first. Replaced as a whole after every change. */
+    private volatile List<ArticleStoryDto> published = List.of();
+
+    /**
+     * Registers for the deletions of committed transactions.
+     */
+    @PostConstruct
+    void registerListener() {
+        articleCommitListener.addCallback(new ArticleCommitListener.Callback() {
+            @Override
+            public void deleted(Long id, ArticleCommitListener.State state) {
+                remove(List.of(id));
+            }
+        });
+    }
+
+    /**
+     * Returns the stories covered by several sources, most widely covered first.
+     * Stories covered by as many sources are ordered by their most recent article.
+     *
+     * @param limit the maximum number of stories to return
+     * @return the stories, as last published
+     * @throws IllegalArgumentException if the limit is invalid
+     */
+    public List<ArticleStoryDto> getStories(int limit) {
+        if (limit < 1 || limit > MAX_STORIES)
+            throw new IllegalArgumentException("Invalid limit");
+
+        List<ArticleStoryDto> current = published;
+        return current.subList(0, Math.min(limit, current.size()));
+    }
+
+    /**
+     * Returns the number of articles clustered into stories.
+     * @return the number of clustered articles
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return members.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Places written articles into stories, replacing any earlier version of them.
+     * Articles fetched before the window are left out.
+     *
+     * @param articles the articles as they are stored, with their ID and body
+     */
+    public void index(Collection<ArticleDto> articles) {
+        if (articles.isEmpty())
+            return;
+
+        lock.lock();
+        try {
+            expire();
+            for (ArticleDto article : articles) {
+                removeMember(article.getId());
+                add(article.getId(), article.getTitle(), article.getBody(), article.getSource(),
+                        article.getTimeFetched());
+            }
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes articles from their stories.
+     * @param articleIds the IDs of the articles to remove
+     */
+    public void remove(Collection<Long> articleIds) {
+        lock.lock();
+        try {
+            articleIds.forEach(this::removeMember);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the stories from the articles in the window, placing them in the order they were
+     * fetched.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+
+        lock.lock();
+        try {
+            members.clear();
+            stories.clear();
+            vocabulary.clear();
+            expiries.clear();
+
+            List<ArticleRepository.ArticleStoryText> articles =
+                    articleRepository.findStoryTextsFetchedSince(OffsetDateTime.now().minus(ArticleService.RECENT_WINDOW));
+            for (ArticleRepository.ArticleStoryText article : articles) {
+                add(article.getId(), article.getTitle(), article.getBody(), article.getSource(),
+                        article.getTimeFetched());
+            }
+            publish();
+
+            log.info("Clustered {} articles into {} stories in {} ms", members.size(), stories.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the articles that have left the window, republishing the stories if any did.
+     */
+    @Scheduled(fixedDelayString = "${articles.stories.expiry-check-interval:PT1M}")
+    public void expireStale() {
+        lock.lock();
+        try {
+            if (expire())
+                publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Places an article into the story most similar to it, or a new story.
+     * Must be called with the lock held, and the article must not already be clustered.
+     *
+     * @param articleId the ID of the article
+     * @param title the title of the article
+     * @param body the body of the article, may be null
+     * @param source the outlet from which the article was fetched
+     * @param timeFetched the time the article was fetched
+     */
+    private void add(long articleId, String title, String body, String source, OffsetDateTime timeFetched) {
+        if (timeFetched == null || !timeFetched.isAfter(OffsetDateTime.now().minus(ArticleService.RECENT_WINDOW)))
+            return;
+
+        // Count the terms, weighting those in the title as the search index does
+        Map<String, Integer> counts = new HashMap<>();
+        ArticleSearchIndex.tokenize(title, (term, start, end) -> {
+            if (isKept(term))
+                counts.merge(term, ArticleSearchIndex.TITLE_WEIGHT, Integer::sum);
+        });
+        ArticleSearchIndex.tokenize(body, (term, start, end) -> {
+            if (isKept(term))
+                counts.merge(term, 1, Integer::sum);
+        });
+        if (counts.isEmpty())
+            return;
+
+        Term[] terms = new Term[counts.size()];
+        int termCount = 0;
+        for (String text : counts.keySet()) {
+            Term term = vocabulary.computeIfAbsent(text, Term::new);
+            ++term.documents;
+            terms[termCount++] = term;
+        }
+
+        // Weight the terms by TF-IDF, heaviest first and then alphabetically so ties are stable
+        double documents = members.size() + 1;
+        List<TermWeight> ranked = new ArrayList<>(terms.length);
+        for (Term term : terms) {
+            double idf = Math.log((documents + 1) / (term.documents + 1)) + 1;
+            ranked.add(new TermWeight(term, (1 + Math.log(counts.get(term.text))) * idf));
+        }
+        ranked.sort(RANKING);
+
+        // Keep the heaviest terms, scaled to unit length
+        int length = Math.min(MAX_TERMS, ranked.size());
+        Term[] vectorTerms = new Term[length];
+        double[] vectorWeights = new double[length];
+        double norm = 0;
+        for (int i = 0; i < length; ++i) {
+            vectorTerms[i] = ranked.get(i).term();
+            vectorWeights[i] = ranked.get(i).weight();
+            norm += vectorWeights[i] * vectorWeights[i];
+        }
+        for (int i = 0; i < length; ++i)
+            vectorWeights[i] /= Math.sqrt(norm);
+
+        Member member = new Member(articleId, title, source, timeFetched, terms, vectorTerms, vectorWeights);
+
+        // Join the most similar story sharing one of the heaviest terms, or start a new one
+        Story best = null;
+        double bestSimilarity = MIN_SIMILARITY;
+        for (Story candidate : candidates(member)) {
+            double similarity = candidate.similarity(member);
+            if (similarity >= bestSimilarity) {
+                best = candidate;
+                bestSimilarity = similarity;
+            }
+        }
+
+        if (best == null) {
+            best = new Story();
+            stories.add(best);
+        }
+
+        best.add(member);
+        for (int i = 0; i < Math.min(CANDIDATE_TERMS, length); ++i)
+            vectorTerms[i].stories.merge(best, 1, Integer::sum);
+
+        members.put(articleId, member);
+        expiries.add(member);
+    }
+
+    /**
+     * Returns the stories sharing one of an article's heaviest terms. Must be called with the lock held.
+     * @param member the article
+     * @return the stories that may be similar to the article
+     */
+    private Set<Story> candidates(Member member) {
+        Set<Story> candidates = new HashSet<>();
+        for (int i = 0; i < Math.min(CANDIDATE_TERMS, member.vectorTerms.length); ++i)
+            candidates.addAll(member.vectorTerms[i].stories.keySet());
+
+        return candidates;
+    }
+
+    /**
+     * Removes an article from its story, if it is clustered. Must be called with the lock held.
+     * @param articleId the ID of the article
+     */
+    private void removeMember(Long articleId) {
+        Member member = members.remove(articleId);
+        if (member == null)
+            return;
+
+        Story story = member.story;
+        for (int i = 0; i < Math.min(CANDIDATE_TERMS, member.vectorTerms.length); ++i)
+            member.vectorTerms[i].stories.computeIfPresent(story, (key, count) -> count == 1 ? null : count - 1);
+
+        for (Term term : member.terms) {
+            if (--term.documents == 0)
+                vocabulary.remove(term.text);
+        }
+
+        story.remove(member);
+        if (story.members.isEmpty())
+            stories.remove(story);
+    }
+
+    /**
+     * Removes the articles fetched before the window. Must be called with the lock held.
+     * @return whether any article was removed
+     */
+    private boolean expire() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(ArticleService.RECENT_WINDOW);
+        boolean removed = false;
+        while (!expiries.isEmpty() && !expiries.peek().fetched().isAfter(cutoff)) {
+            Member member = expiries.poll();
+            if (members.get(member.articleId) == member) {
+                removeMember(member.articleId);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Publishes the stories covered by enough sources. Must be called with the lock held.
+     * Only the stories changed since they were last published are described again.
+     */
+    private void publish() {
+        List<ArticleStoryDto> covered = new ArrayList<>();
+        for (Story story : stories) {
+            if (story.sources.size() < MIN_SOURCES)
+                continue;
+            if (story.dto == null)
+                story.dto = story.toDto();
+            covered.add(story.dto);
+        }
+
+        covered.sort(Comparator.comparingInt(ArticleStoryDto::getCoverage).reversed()
+                .thenComparing(ArticleStoryDto::getLastFetched, Comparator.reverseOrder())
+                .thenComparing(ArticleStoryDto::getArticleId, Comparator.reverseOrder()));
+        published = List.copyOf(covered);
+    }
+
+    /**
+     * Returns whether a term is kept in the vectors.
+     * @param term the term, in lower case
+     * @return true unless the term is too short or a stop word
+     */
+    private static boolean isKept(String term) {
+        return term.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(term);
+    }
+
+    /**
+     * A clustered article.
+     */
+    private static final class Member {
+        /** ID of the article */
+        final long articleId;
+
+        /** Title of the article */
+        final String title;
+
+        /** Outlet from which the article was fetched */
+        final String source;
+
+        /** Time the article was fetched */
+        final OffsetDateTime fetched;
+
+        /** Every distinct term of the article, counted in the document frequencies */
+        final Term[] terms;
+
+        /** Heaviest terms of the article, heaviest first */
+        final Term[] vectorTerms;
+
+        /** Weight of each of the heaviest terms, making up a unit vector */
+        final double[] vectorWeights;
+
+        /** Story the article is in */
+        Story story;
+
+        Member(long articleId, String title, String source, OffsetDateTime fetched, Term[] terms,
+               Term[] vectorTerms, double[] vectorWeights) {
+            this.articleId = articleId;
+            this.title = title;
+            this.source = source;
+            this.fetched = fetched;
+            this.terms = terms;
+            this.vectorTerms = vectorTerms;
+            this.vectorWeights = vectorWeights;
+        }
+
+        /** @return the time the article was fetched */
+        OffsetDateTime fetched() {
+            return fetched;
+        }
+    }
+
+    /**
+     * A term of the clustered articles.
+     * Terms are compared by identity, as there is only one instance of each in the vocabulary.
+     */
+    private static final class Term {
+        /** The term, in lower case */
+        final String text;
+
+        /** Number of clustered articles containing the term */
+        int documents;
+
+        /** Stories with the term among the heaviest of their articles, with the number of such articles */
+        final Map<Story, Integer> stories = new HashMap<>(2);
+
+        Term(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * A story and the sum of the vectors of its articles.
+     */
+    private static final class Story {
+        /** Sum of the vectors of the articles, by term */
+        final Map<Term, Double> centroid = new HashMap<>();
+
+        /** Articles in the story */
+        final Set<Member> members = new HashSet<>();
+
+        /** Number of articles in the story from each source */
+        final Map<String, Integer> sources = new HashMap<>();
+
+        /** Squared length of the centroid */
+        double normSquared;
+
+        /** The story as last published, or null if it changed since */
+        ArticleStoryDto dto;
+
+        /**
+         * Returns the cosine similarity of an article with the centroid.
+         * @param member the article
+         * @return the similarity, from 0 to 1
+         */
+        double similarity(Member member) {
+            if (normSquared <= 0)
+                return 0;
+
+            double dot = 0;
+            for (int i = 0; i < member.vectorTerms.length; ++i)
+                dot += member.vectorWeights[i] * centroid.getOrDefault(member.vectorTerms[i], 0.0);
+
+            return dot / Math.sqrt(normSquared);
+        }
+
+        /**
+         * Adds an article to the story.
+         * @param member the article
+         */
+        void add(Member member) {
+            member.story = this;
+            members.add(member);
+            sources.merge(String.valueOf(member.source), 1, Integer::sum);
+            move(member, 1);
+        }
+
+        /**
+         * Removes an article from the story.
+         * @param member the article
+         */
+        void remove(Member member) {
+            members.remove(member);
+            sources.computeIfPresent(String.valueOf(member.source), (key, count) -> count == 1 ? null : count - 1);
+            move(member, -1);
+        }
+
+        /**
+         * Adds an article's vector to the centroid, or subtracts it.
+         * @param member the article
+         * @param sign 1 to add the vector, -1 to subtract it
+         */
+        private void move(Member member, int sign) {
+            dto = null;
+            for (int i = 0; i < member.vectorTerms.length; ++i) {
+                double before = centroid.getOrDefault(member.vectorTerms[i], 0.0);
+                double after = before + sign * member.vectorWeights[i];
+                if (after <= 1e-9)
+                    after = 0;
+
+                if (after == 0)
+                    centroid.remove(member.vectorTerms[i]);
+                else
+                    centroid.put(member.vectorTerms[i], after);
+                normSquared += after * after - before * before;
+            }
+
+            if (members.isEmpty() || normSquared < 0)
+                normSquared = 0;
+        }
+
+        /**
+         * Describes the story, headed by the article closest to its centroid.
+         * Articles in a story of two are equally close, so the earlier heads it.
+         * @return the story
+         */
+        ArticleStoryDto toDto() {
+            Member representative = null;
+            double bestSimilarity = -1;
+            for (Member member : members) {
+                double similarity = similarity(member);
+                // Prefer the earliest article among those as close, allowing for rounding
+                if (similarity > bestSimilarity + 1e-9
+                        || similarity > bestSimilarity - 1e-9 && member.articleId < representative.articleId) {
+                    representative = member;
+                    bestSimilarity = similarity;
+                }
+            }
+
+            List<Member> byFetched = new ArrayList<>(members);
+            byFetched.sort(Comparator.comparing(Member::fetched).thenComparingLong(member -> member.articleId).reversed());
+
+            return new ArticleStoryDto(representative.title, representative.articleId, sources.size(),
+                    sources.keySet().stream().sorted().toList(),
+                    byFetched.stream().map(member -> member.articleId).toList(),
+                    byFetched.getFirst().fetched);
+        }
+    }
+
+    /**
+     * A term of an article and its weight.
+     * @param term the term
+     * @param weight the TF-IDF weight of the term in the article
+     */
+    private record TermWeight(Term term, double weight) { }
+}
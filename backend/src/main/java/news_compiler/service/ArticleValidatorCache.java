@@ -0,0 +1,111 @@
+package news_compiler.service;
+
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.ArticleHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the HTTP validators (ETag and Last-Modified) of recently served articles.
+ * <p>
+ * This lets a conditional request for an unchanged article be answered without reading it from
+ * the database. Validators are only trusted for the data version they were recorded at; once any
+ * article changes, the cache starts over.
+ */
+@Service
+public class ArticleValidatorCache {
+    /** Maximum number of validators held at once */
+    private static final int MAX_ENTRIES = 10_000;
+
+    /** Service tracking the version of the article data */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** Validators by article ID, all recorded at {@link #version} */
+    private final Map<Long, Validator> validators = new ConcurrentHashMap<>();
+
+    /** Version of the article data the cached validators belong to */
+    private volatile long version = -1;
+
+    /**
+     * Returns the validator of an article, if it is known to be current.
+     *
+     * @param id the ID of the article
+     * @return the article's validator, or null if it is unknown or may be out of date
+     */
+    public Validator get(Long id) {
+        if (version != dataVersionService.getVersion())
+            return null;
+
+        return validators.get(id);
+    }
+
+    /**
+     * Records the validator of an article read from the database.
+     *
+     * @param version the data version read before the article was read
+     * @param article the article that was read
+     * @return the article's validator
+     */
+    public Validator put(long version, ArticleDto article) {
+        Validator validator = Validator.of(article);
+
+        synchronized (validators) {
+            // Start over once the data has changed
+            if (version != this.version) {
+                if (version < this.version)
+                    return validator;
+
+                validators.clear();
+                this.version = version;
+            }
+
+            if (validators.size() < MAX_ENTRIES)
+                validators.put(article.getId(), validator);
+        }
+
+        return validator;
+    }
+
+    /**
+     * Returns the current version of the article data, to be passed to {@link #put} after reading.
+     *
+     * @return the current data version
+     */
+    public long currentVersion() {
+        return dataVersionService.getVersion();
+    }
+
+    /**
+     * HTTP validators of an article.
+     *
+     * @param etag the strong entity tag, derived from everything the article is served with
+     * @param lastModified the time the article was last changed, in epoch milliseconds, or -1 if unknown
+     */
+    public record Validator(String etag, long lastModified) {
+        /**
+         * Derives the validators of an article.
+         *
+         * @param article the article
+         * @return the article's validators
+         */
+        public static Validator of(ArticleDto article) {
+            long titleHash = ArticleHasher.hashTitle(article.getTitle());
+            long contentHash = ArticleHasher.hashContent(article.getBody(), article.getTimePublished(),
+                    article.getSource(), article.getArticleUrl(), article.getImageUrl(), article.getCategory());
+
+            // An article's content only changes when it is rewritten, which also sets its fetch time
+            long lastModified = article.getTimeFetched() == null ? -1 : article.getTimeFetched().toInstant().toEpochMilli();
+
+            // The fetch time is served too, so is part of the tag: an article rewritten back to
+            // earlier content is served with a later fetch time, and must not match its old tag
+            HexFormat hex = HexFormat.of();
+            return new Validator(hex.toHexDigits(titleHash) + hex.toHexDigits(contentHash)
+                    + hex.toHexDigits(lastModified), lastModified);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package news_compiler.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Records the size of each batch of articles written and what happened to its articles.
+ * <p>
+ * Every meter is registered once at startup, so recording a batch only adds to them and never
+ * looks a meter up or builds a tag.
+ */
+@Component
+public class ArticleWriteMetrics {
+    /** Bucket boundaries of the batch size distribution, in articles */
+    private static final double[] BATCH_SIZE_BUCKETS = {1, 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    /** Every outcome, kept as <code>values()</code> copies the array on each call */
+    private static final ArticleWriteResult.Outcome[] OUTCOMES = ArticleWriteResult.Outcome.values();
+
+    /** Registry the meters are registered with */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** Distribution of the number of articles in each batch written */
+    private DistributionSummary batchSizes;
+
+    /** Number of articles written, by what happened to them */
+    private final Map<ArticleWriteResult.Outcome, Counter> written = new EnumMap<>(ArticleWriteResult.Outcome.class);
+
+    /**
+     * Registers the meters.
+     */
+    @PostConstruct
+    void register() {
+        batchSizes = DistributionSummary.builder("articles.write.batch.size")
+                .description("Number of articles in each batch written")
+                .serviceLevelObjectives(BATCH_SIZE_BUCKETS)
+                .register(meterRegistry);
+
+        for (ArticleWriteResult.Outcome outcome : OUTCOMES) {
+            written.put(outcome, Counter.builder("articles.written")
+                    .description("Number of articles written, by whether they were inserted, updated or unchanged")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Records a batch of articles that was written.
+     * @param result the result of writing the batch
+     */
+    public void record(ArticleWriteResult result) {
+        batchSizes.record(result.getOutcomes().size());
+
+        int[] counts = new int[OUTCOMES.length];
+        for (ArticleWriteResult.Outcome outcome : result.getOutcomes())
+            ++counts[outcome.ordinal()];
+
+        written.forEach((outcome, counter) -> counter.increment(counts[outcome.ordinal()]));
+    }
+}
@@ -0,0 +1,236 @@
+package news_compiler.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import news_compiler.dto.ArticleBatchStatusDto;
+import news_compiler.dto.ArticleBatchStatusDto.State;
+import news_compiler.dto.ArticleDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service queuing batches of articles to be written in the background.
+ * <p>
+ * Batches are accepted immediately and placed on a bounded in-memory queue. A single flusher
+ * thread merges whatever batches are waiting into one large write, so ingest holds at most one
+ * database connection at a time and leaves the rest of the pool to readers. If the merged write
+ * fails, the batches it did not commit are written again one at a time, so a batch that cannot be
+ * written fails on its own. When the queue is full, new batches are refused so the caller can back
+ * off.
+ */
+@Slf4j
+@Service
+public class ArticleWriteQueueService {
+    /** Maximum number of articles merged into a single write */
+    private static final int MAX_MERGED_ARTICLES = 4 * ArticleService.WRITE_CHUNK_SIZE;
+
+    /** Number of finished batches whose status is kept for polling */
+    private static final int RETAINED_STATUSES = 1000;
+
+    /** How long the flusher waits for a batch before checking whether it should stop */
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    /** Service for Article entities */
+    @Autowired
+    private ArticleService articleService;
+
+    /** Maximum number of articles waiting in the queue */
+    @Value("${articles.write-queue.capacity:10000}")
+    private int capacity;
+
+    /** Batches waiting to be written */
+    private final BlockingQueue<QueuedBatch> queue = new LinkedBlockingQueue<>();
+
+    /** Number of articles waiting in the queue, across all batches */
+    private final AtomicInteger queuedArticles = new AtomicInteger();
+
+    /** Status of each queued, writing or recently finished batch, by ID */
+    private final Map<String, ArticleBatchStatusDto> statuses = new ConcurrentHashMap<>();
+
+    /** IDs of finished batches, oldest first, used to forget old statuses */
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+
+    /** Thread writing queued batches */
+    private Thread flusher;
+
+    /** Whether the flusher should keep waiting for new batches */
+    private volatile boolean running;
+
+    /**
+     * Starts the flusher thread.
+     */
+    @PostConstruct
+    void start() {
+        running = true;
+        flusher = Thread.ofPlatform().name("article-write-flusher").daemon().start(this::flushLoop);
+    }
+
+    /**
+     * Stops the flusher once every queued batch has been written.
+     * @throws InterruptedException if interrupted while waiting for the flusher
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.join();
+    }
+
+    /**
+     * Queues a batch of articles to be written.
+     *
+     * @param articles the articles to write
+     * @return the status of the queued batch, or null if the queue is too full to accept it
+     * @throws IllegalArgumentException if the batch is larger than the whole queue
+     */
+    public ArticleBatchStatusDto enqueue(List<ArticleDto> articles) {
+        if (articles.size() > capacity)
+            throw new IllegalArgumentException("Batch is larger than the queue");
+
+        // Reserve room in the queue, refusing the batch if there is none
+        int queued;
+        do {
+            queued = queuedArticles.get();
+            if (queued + articles.size() > capacity)
+                return null;
+        } while (!queuedArticles.compareAndSet(queued, queued + articles.size()));
+
+        String id = UUID.randomUUID().toString();
+        ArticleBatchStatusDto status = new ArticleBatchStatusDto(id, State.QUEUED, articles.size(), 0, 0, 0, null);
+        statuses.put(id, status);
+        queue.add(new QueuedBatch(id, articles));
+
+        return status;
+    }
+
+    /**
+     * Returns the status of a batch.
+     *
+     * @param id the ID of the batch
+     * @return the status of the batch, or null if it is unknown or was forgotten
+     */
+    public ArticleBatchStatusDto getStatus(String id) {
+        return statuses.get(id);
+    }
+
+    /**
+     * Writes queued batches until stopped and the queue is empty.
+     */
+    private void flushLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedBatch first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null)
+                    flush(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error while writing queued articles", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the given batch together with any others waiting behind it.
+     *
+     * @param first the first batch to write
+     */
+    private void flush(QueuedBatch first) {
+        // Merge waiting batches into a single write
+        List<QueuedBatch> batches = new ArrayList<>();
+        List<ArticleDto> merged = new ArrayList<>(first.articles());
+        batches.add(first);
+        for (QueuedBatch next = queue.peek();
+             next != null && merged.size() + next.articles().size() <= MAX_MERGED_ARTICLES;
+             next = queue.peek()) {
+            batches.add(queue.poll());
+            merged.addAll(next.articles());
+        }
+
+        queuedArticles.addAndGet(-merged.size());
+        batches.forEach(batch -> setStatus(batch, State.WRITING, 0, 0, 0, null));
+
+        // Write the batches together, keeping the outcome of the chunks committed before any failure
+        ArticleWriteResult result = new ArticleWriteResult(merged.size());
+        try {
+            articleService.upsertArticles(merged, result);
+        } catch (RuntimeException e) {
+            log.warn("Could not write {} queued articles together, writing each batch on its own", merged.size(), e);
+        }
+
+        // Split the outcome back out per batch, writing on its own any batch not wholly committed
+        int committed = result.getOutcomes().size();
+        int offset = 0;
+        for (QueuedBatch batch : batches) {
+            int end = offset + batch.articles().size();
+            ArticleWriteResult batchResult = new ArticleWriteResult(batch.articles().size());
+            if (offset < committed) {
+                int committedEnd = Math.min(end, committed);
+                batchResult.addAll(new ArticleWriteResult(result.getArticles().subList(offset, committedEnd),
+                        result.getOutcomes().subList(offset, committedEnd)));
+            }
+
+            String error = null;
+            if (end > committed) {
+                try {
+                    articleService.upsertArticles(
+                            batch.articles().subList(batchResult.getOutcomes().size(), batch.articles().size()),
+                            batchResult);
+                } catch (RuntimeException e) {
+                    log.error("Could not write queued batch {} of {} articles", batch.id(), batch.articles().size(), e);
+                    error = e.getMessage();
+                }
+            }
+            offset = end;
+
+            setStatus(batch, error == null ? State.DONE : State.FAILED,
+                    batchResult.count(ArticleWriteResult.Outcome.INSERTED),
+                    batchResult.count(ArticleWriteResult.Outcome.UPDATED),
+                    batchResult.count(ArticleWriteResult.Outcome.UNCHANGED),
+                    error);
+        }
+
+        // Forget the oldest finished batches
+        batches.forEach(batch -> finished.add(batch.id()));
+        while (finished.size() > RETAINED_STATUSES)
+            statuses.remove(finished.poll());
+    }
+
+    /**
+     * Replaces the status of a batch.
+     *
+     * @param batch the batch
+     * @param state where the batch is in the write process
+     * @param inserted number of articles inserted
+     * @param updated number of articles updated
+     * @param unchanged number of articles left unchanged
+     * @param error description of the error, if any
+     */
+    private void setStatus(QueuedBatch batch, State state, int inserted, int updated, int unchanged, String error) {
+        statuses.put(batch.id(), new ArticleBatchStatusDto(batch.id(), state, batch.articles().size(),
+                inserted, updated, unchanged, error));
+    }
+
+    /**
+     * A batch of articles waiting in the queue.
+     *
+     * @param id the ID of the batch
+     * @param articles the articles to write
+     */
+    private record QueuedBatch(String id, List<ArticleDto> articles) {
+    }
+}
@@ -0,0 +1,154 @@
+package news_compiler.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticleWriteReportDto;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Result of writing a batch of articles.
+ * Holds each written article along with what happened to it, in the order they were given.
+ */
+@Getter
+@AllArgsConstructor
+public class ArticleWriteResult {
+    /** The articles as they are stored, in the order they were given */
+    private final List<ArticleDto> articles;
+
+    /** What happened to each article, in the same order as the articles */
+    private final List<Outcome> outcomes;
+
+    /** IDs of the inserted or updated articles nearly duplicating an earlier article */
+    private final Set<Long> duplicateIds;
+
+    /**
+     * Creates an empty result.
+     * @param capacity the number of articles expected
+     */
+    public ArticleWriteResult(int capacity) {
+        this(new ArrayList<>(capacity), new ArrayList<>(capacity), new HashSet<>());
+    }
+
+    /**
+     * Creates a result without noting near-duplicates, such as a slice kept only for its counts.
+     * @param articles the articles as they are stored
+     * @param outcomes what happened to each article, in the same order
+     */
+    public ArticleWriteResult(List<ArticleDto> articles, List<Outcome> outcomes) {
+        this(articles, outcomes, new HashSet<>());
+    }
+
+    /**
+     * Records a written article.
+     * @param article the article as it is stored
+     * @param outcome what happened to the article
+     */
+    public void add(ArticleDto article, Outcome outcome) {
+        articles.add(article);
+        outcomes.add(outcome);
+    }
+
+    /**
+     * Records a written article nearly duplicating an earlier one.
+     * @param article the article as it is stored
+     * @param outcome what happened to the article
+     */
+    public void addDuplicate(ArticleDto article, Outcome outcome) {
+        add(article, outcome);
+        duplicateIds.add(article.getId());
+    }
+
+    /**
+     * Adds all articles from another result to this one.
+     * @param other the result to add
+     */
+    public void addAll(ArticleWriteResult other) {
+        articles.addAll(other.articles);
+        outcomes.addAll(other.outcomes);
+        duplicateIds.addAll(other.duplicateIds);
+    }
+
+    /**
+     * Counts the articles with the given outcome.
+     * @param outcome the outcome to count
+     * @return the number of articles with the outcome
+     */
+    public int count(Outcome outcome) {
+        return (int) outcomes.stream().filter(outcome::equals).count();
+    }
+
+    /**
+     * Returns the articles that were inserted or updated.
+     * @return the articles whose content changed, in the order they were given
+     */
+    public List<ArticleDto> changed() {
+        List<ArticleDto> changed = new ArrayList<>(articles.size());
+        for (int i = 0; i < articles.size(); ++i) {
+            if (outcomes.get(i) != Outcome.UNCHANGED)
+                changed.add(articles.get(i));
+        }
+
+        return changed;
+    }
+
+    /**
+     * Returns the articles that were inserted or updated and belong in the recent feeds.
+     * @return the changed articles that are not near-duplicates, in the order they were given
+     */
+    public List<ArticleDto> published() {
+        List<ArticleDto> published = changed();
+        published.removeIf(article -> duplicateIds.contains(article.getId()));
+        return published;
+    }
+
+    /**
+     * Returns the IDs of the articles updated into near-duplicates, which clients following the
+     * recent feeds may hold from before and should drop.
+     * @return the IDs of the updated near-duplicates, in the order they were given
+     */
+    public List<Long> unpublished() {
+        List<Long> unpublished = new ArrayList<>();
+        for (int i = 0; i < articles.size(); ++i) {
+            Long id = articles.get(i).getId();
+            if (outcomes.get(i) == Outcome.UPDATED && duplicateIds.contains(id))
+                unpublished.add(id);
+        }
+
+        return unpublished;
+    }
+
+    /**
+     * Creates a report of the IDs of the articles with each outcome.
+     * @return the report
+     */
+    public ArticleWriteReportDto toReport() {
+        ArticleWriteReportDto report = new ArticleWriteReportDto(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (int i = 0; i < articles.size(); ++i) {
+            Long id = articles.get(i).getId();
+            switch (outcomes.get(i)) {
+                case INSERTED -> report.getInserted().add(id);
+                case UPDATED -> report.getUpdated().add(id);
+                case UNCHANGED -> report.getUnchanged().add(id);
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * What happened to an article when it was written.
+     */
+    public enum Outcome {
+        /** The article did not exist and was inserted */
+        INSERTED,
+        /** The article existed and its content changed */
+        UPDATED,
+        /** The article existed with the same content and was left untouched */
+        UNCHANGED
+    }
+}
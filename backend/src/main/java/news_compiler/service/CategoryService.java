@@ -30,7 +30,7 @@ public class CategoryService {
      * @param category the category to format
      * @return the formatted category
      */
-    private String formatCategory(String category) {
+    String formatCategory(String category) {
         String[] words = category.toLowerCase().split("_");
         StringBuilder formatted = new StringBuilder();
 
@@ -0,0 +1,53 @@
+package news_compiler.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service tracking the version of the article data.
+ * <p>
+ * The version increases every time an article is created, updated or deleted, so anything derived
+ * from the articles can tell whether it is out of date by comparing versions.
+ */
+@Service
+public class DataVersionService {
+    /** Key marking that the current transaction will bump the version once it completes */
+    private static final Object TRANSACTION_KEY = new Object();
+
+    /** The current version of the article data */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Returns the current version of the article data.
+     * @return the current version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Records that the article data has changed.
+     * <p>
+     * If called within a transaction, the version is bumped again once the transaction commits or
+     * rolls back, so that anything rebuilt while the transaction was open is discarded.
+     */
+    public void changed() {
+        version.incrementAndGet();
+
+        // Bump the version once more when the transaction completes, once per transaction
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(TRANSACTION_KEY)) {
+            TransactionSynchronizationManager.bindResource(TRANSACTION_KEY, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_KEY);
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package news_compiler.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of encoded response payloads, each stored both as-is and compressed.
+ * <p>
+ * Every distinct payload is serialized and compressed once, then served from memory for as long
+ * as the version it was built at is current. Payloads are compressed at the highest level, as the
+ * cost is paid once rather than on every request.
+ */
+@Service
+public class EncodedPayloadCache {
+    /** Content coding for gzip-compressed payloads */
+    public static final String GZIP = "gzip";
+
+    /** Content coding for payloads sent as-is */
+    public static final String IDENTITY = "identity";
+
+    /** Maximum number of bytes held across all payloads, counting both encodings */
+    @Value("${articles.response-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    /** Payloads by key, along with the version each was built at. Read without the lock. */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Lock storing payloads, so the size always matches the entries held */
+    private final ReentrantLock storeLock = new ReentrantLock();
+
+    /** Number of bytes held across all payloads. Guarded by the store lock. */
+    private long size;
+
+    /**
+     * Returns a payload, building and storing it if it is missing or was built at another version.
+     *
+     * @param key the key identifying the payload
+     * @param version the version the payload must have been built at
+     * @param builder builds the payload, returning null if there is none
+     * @return the payload, or null if there is none
+     */
+    public Payload get(String key, long version, Supplier<Payload> builder) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version() == version)
+            return entry.payload();
+
+        Payload payload = builder.get();
+        if (payload == null)
+            return null;
+
+        storeLock.lock();
+        try {
+            // Start over when full; most entries go stale together when the data changes anyway
+            if (size + payload.size() > maxBytes) {
+                entries.clear();
+                size = 0;
+            }
+
+            Entry previous = entries.put(key, new Entry(version, payload));
+            size += payload.size() - (previous == null ? 0 : previous.payload().size());
+        } finally {
+            storeLock.unlock();
+        }
+
+        return payload;
+    }
+
+    /**
+     * Chooses the content coding to respond with, given the request's <code>Accept-Encoding</code>.
+     *
+     * @param acceptEncoding the value of the <code>Accept-Encoding</code> header, or null if absent
+     * @return <code>gzip</code> if the client accepts it, otherwise <code>identity</code>
+     */
+    public static String selectEncoding(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return IDENTITY;
+
+        // gzip is used if listed with a non-zero quality, or if covered by a wildcard and not refused
+        Double gzipQuality = null, wildcardQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+
+            double quality = 1;
+            for (int i = 1; i < parts.length; ++i) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (name.equals(GZIP) || name.equals("x-gzip"))
+                gzipQuality = quality;
+            else if (name.equals("*"))
+                wildcardQuality = quality;
+        }
+
+        double quality = gzipQuality != null ? gzipQuality : wildcardQuality != null ? wildcardQuality : 0;
+        return quality > 0 ? GZIP : IDENTITY;
+    }
+
+    /**
+     * Compresses bytes with gzip.
+     *
+     * @param bytes the bytes to compress
+     * @return the compressed bytes
+     */
+    static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        // The deflater is only reachable from a subclass
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * A response payload in each supported encoding, along with its HTTP validators.
+     *
+     * @param identity the payload as-is
+     * @param gzip the payload compressed with gzip
+     * @param etag the strong entity tag of the payload, before encoding
+     * @param lastModified the time the payload last changed, in epoch milliseconds, or -1 if unknown
+     */
+    public record Payload(byte[] identity, byte[] gzip, String etag, long lastModified) {
+        /**
+         * Creates a payload, compressing it once.
+         *
+         * @param identity the payload as-is
+         * @param etag the strong entity tag of the payload
+         * @param lastModified the time the payload last changed, in epoch milliseconds, or -1 if unknown
+         * @return the payload
+         */
+        public static Payload of(byte[] identity, String etag, long lastModified) {
+            return new Payload(identity, EncodedPayloadCache.gzip(identity), etag, lastModified);
+        }
+
+        /**
+         * Returns the payload in the given encoding.
+         *
+         * @param encoding the content coding to return, either {@link #GZIP} or {@link #IDENTITY}
+         * @return the encoded payload
+         */
+        public byte[] encoded(String encoding) {
+            return GZIP.equals(encoding) ? gzip : identity;
+        }
+
+        /**
+         * Returns the entity tag of the payload in the given encoding.
+         * Each encoding is a different representation, so each gets its own strong tag.
+         *
+         * @param encoding the content coding, either {@link #GZIP} or {@link #IDENTITY}
+         * @return the entity tag of the encoded payload
+         */
+        public String etag(String encoding) {
+            return tag(etag, encoding);
+        }
+
+        /**
+         * Returns the entity tag of a representation in the given encoding.
+         *
+         * @param etag the entity tag of the payload, before encoding
+         * @param encoding the content coding, either {@link #GZIP} or {@link #IDENTITY}
+         * @return the entity tag of the encoded representation
+         */
+        public static String tag(String etag, String encoding) {
+            return IDENTITY.equals(encoding) ? etag : etag + "-" + encoding;
+        }
+
+        /**
+         * Returns the number of bytes held by the payload.
+         *
+         * @return the size of both encodings
+         */
+        long size() {
+            return identity.length + gzip.length;
+        }
+    }
+
+    /**
+     * A cached payload and the version it was built at.
+     *
+     * @param version the version the payload was built at
+     * @param payload the payload
+     */
+    private record Entry(long version, Payload payload) {
+    }
+}
@@ -0,0 +1,187 @@
+package news_compiler.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.Category;
+import news_compiler.repository.ArticleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service holding an in-memory snapshot of the lightweight articles fetched in the last 24 hours.
+ * <p>
+ * The snapshot holds the sorted articles along with their JSON encoding, so they can be served
+ * without a database round trip or any serialization. The articles of each category are also held
+ * separately, in the same order, so a single category can be served without filtering the window.
+ * It is rebuilt after articles are written, whenever the article data changes through any other
+ * path, and as articles age out of the window.
+ */
+@Service
+public class RecentArticlesSnapshotService {
+    /** Repository for Article entities */
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    /** Service tracking the version of the article data */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** Mapper used to encode the snapshot, so it matches what the controllers would return */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** The current snapshot. Null until first built. */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Lock ensuring only one thread rebuilds the snapshot at a time.
+     * A lock is used rather than <code>synchronized</code> so that virtual threads waiting on the
+     * database do not pin their carrier thread.
+     */
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /** Number of snapshots built so far. Guarded by the rebuild lock. */
+    private long generation;
+
+    /**
+     * Returns the current snapshot, rebuilding it first if the article data has changed.
+     * @return an up-to-date snapshot of the recent articles
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.getVersion() == dataVersionService.getVersion())
+            return current;
+
+        return rebuild(false);
+    }
+
+    /**
+     * Rebuilds the snapshot from the database and swaps it in.
+     * Called once a batch of articles has been written.
+     */
+    public void refresh() {
+        rebuild(true);
+    }
+
+    /**
+     * Rebuilds the snapshot once its oldest article has left the 24-hour window.
+     */
+    @Scheduled(fixedDelayString = "${articles.snapshot.expiry-check-interval:PT10S}")
+    public void expire() {
+        Snapshot current = snapshot;
+        if (current != null && !OffsetDateTime.now().isBefore(current.getExpiresAt()))
+            refresh();
+    }
+
+    /**
+     * Builds a new snapshot from the database and swaps it in.
+     * @param force whether to rebuild even if the current snapshot is up-to-date
+     * @return the new snapshot
+     */
+    private Snapshot rebuild(boolean force) {
+        rebuildLock.lock();
+        try {
+            // Read the version first, so that changes made while querying leave the snapshot stale
+            long version = dataVersionService.getVersion();
+
+            // Another thread may have rebuilt the snapshot while this one waited
+            Snapshot current = snapshot;
+            if (!force && current != null && current.getVersion() == version)
+                return current;
+
+            OffsetDateTime since = OffsetDateTime.now().minus(ArticleService.RECENT_WINDOW);
+            List<ArticleDto> articles = Collections.unmodifiableList(articleRepository.findLiteFetchedSince(since));
+
+            // The snapshot expires when its earliest fetched article leaves the window
+            OffsetDateTime expiresAt = articles.stream()
+                    .map(ArticleDto::getTimeFetched)
+                    .min(OffsetDateTime::compareTo)
+                    .map(earliest -> earliest.plus(ArticleService.RECENT_WINDOW))
+                    .orElse(OffsetDateTime.MAX);
+
+            // Split the window by category, keeping the order within each category
+            Map<Category, List<ArticleDto>> byCategory = new EnumMap<>(Category.class);
+            for (ArticleDto article : articles) {
+                if (article.getCategory() != null)
+                    byCategory.computeIfAbsent(article.getCategory(), category -> new ArrayList<>()).add(article);
+            }
+            byCategory.replaceAll((category, categoryArticles) -> Collections.unmodifiableList(categoryArticles));
+
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(articles);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // Keep the modification time if the encoded articles did not actually change
+            String etag = DigestUtils.md5DigestAsHex(json);
+            Instant lastModified = current != null && current.getEtag().equals(etag)
+                    ? current.getLastModified()
+                    : Instant.now();
+
+            snapshot = new Snapshot(++generation, version, articles, byCategory, json, etag, lastModified, expiresAt);
+
+            return snapshot;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * An immutable snapshot of the lightweight articles fetched in the last 24 hours.
+     * <p>
+     * The articles are shared between all readers and must not be modified.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        /** Sequence number of the snapshot, increasing with every rebuild */
+        private final long generation;
+
+        /** Version of the article data the snapshot was built from */
+        private final long version;
+
+        /** Articles fetched in the last 24 hours with a null body, sorted by time published */
+        private final List<ArticleDto> articles;
+
+        /** The same articles split by category, in the same order. Empty categories are absent. */
+        private final Map<Category, List<ArticleDto>> articlesByCategory;
+
+        /** The articles encoded as JSON */
+        private final byte[] json;
+
+        /** Strong entity tag of the JSON encoding */
+        private final String etag;
+
+        /** Time at which the JSON encoding last changed */
+        private final Instant lastModified;
+
+        /** Time at which the earliest fetched article leaves the window */
+        private final OffsetDateTime expiresAt;
+
+        /**
+         * Returns the articles in the given category.
+         * @param category the category of the articles
+         * @return the articles in the category, in the same order as all articles
+         */
+        public List<ArticleDto> getArticles(Category category) {
+            return articlesByCategory.getOrDefault(category, List.of());
+        }
+    }
+}
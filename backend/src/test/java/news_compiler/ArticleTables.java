@@ -0,0 +1,63 @@
+package news_compiler;
+
+import news_compiler.service.ArticleMigrationService;
+import news_compiler.service.ArticleRetentionService;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Restores the <code>articles</code> table for tests that partition it through the
+ * <code>ArticleRetentionService</code>.
+ * <p>
+ * Every test shares the same database, so tests partitioning the table return it to the state
+ * Hibernate and the <code>ArticleMigrationService</code> create it in, both before they run, as the
+ * service partitions it at startup, and after.
+ */
+public class ArticleTables {
+    /**
+     * Empties the table, removes its partitioning, puts back its keys as they are first created, and
+     * drops the archive tables. The titles table is emptied, as the service creates it at startup.
+     * @param jdbcTemplate the template to run the statements with
+     */
+    public static void restore(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("DELETE FROM articles");
+        if (count(jdbcTemplate, "information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = '" + ArticleRetentionService.TITLES_TABLE + "'") > 0)
+            jdbcTemplate.execute("DELETE FROM " + ArticleRetentionService.TITLES_TABLE);
+
+        List<String> archives = jdbcTemplate.queryForList("SELECT TABLE_NAME FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME LIKE 'articles\\_archive\\_%'", String.class);
+        archives.forEach(archive -> jdbcTemplate.execute("DROP TABLE " + archive));
+
+        if (count(jdbcTemplate, "information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_NAME = 'articles' AND PARTITION_NAME IS NOT NULL") == 0)
+            return;
+
+        // The primary key made the fetch time required, which Hibernate leaves optional
+        jdbcTemplate.execute("ALTER TABLE articles REMOVE PARTITIONING");
+        jdbcTemplate.execute("ALTER TABLE articles DROP PRIMARY KEY, ADD PRIMARY KEY (id), " +
+                "MODIFY time_fetched TIMESTAMP NULL, ADD CONSTRAINT " + ArticleMigrationService.TITLE_KEY + " UNIQUE (title)");
+    }
+
+    /**
+     * Counts the rows of a table.
+     * @param jdbcTemplate the template to run the query with
+     * @param table the name of the table, optionally followed by a condition
+     * @return the number of rows
+     */
+    public static int count(JdbcTemplate jdbcTemplate, String table) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the name of the table a month's articles are archived in.
+     * @param month the month
+     * @return the name of the archive table
+     */
+    public static String archiveOf(YearMonth month) {
+        return "articles_archive_" + month.getYear() + String.format("%02d", month.getMonthValue());
+    }
+}
@@ -0,0 +1,67 @@
+package news_compiler;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Holds code under test to a budget of SQL statements, so a change making an endpoint issue more
+ * SQL, such as a query per article, fails the build.
+ * <p>
+ * Statements are captured with {@link SqlStatementCapture}. When a budget is exceeded, the
+ * failure lists every statement along with what Hibernate's statistics counted meanwhile. The
+ * statistics are shared by every thread, so they may include background work and are only
+ * reported, never asserted.
+ */
+public class SqlBudget {
+    /** Statistics of the session factory, enabled by <code>hibernate.generate_statistics</code> */
+    private final Statistics statistics;
+
+    /**
+     * Creates a budget checker.
+     * @param entityManagerFactory the factory whose statistics are reported
+     */
+    public SqlBudget(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Runs an action, failing if it prepares more statements than its budget.
+     * @param budget the largest number of statements the action may prepare
+     * @param action the action to run, usually a single request
+     * @return the statements the action prepared
+     * @throws Throwable if the action fails
+     */
+    public List<String> assertAtMost(int budget, Executable action) throws Throwable {
+        long prepared = statistics.getPrepareStatementCount();
+        long queries = statistics.getQueryExecutionCount();
+        long entityLoads = statistics.getEntityLoadCount();
+        long collectionFetches = statistics.getCollectionFetchCount();
+        long cacheHits = statistics.getSecondLevelCacheHitCount();
+        long cacheMisses = statistics.getSecondLevelCacheMissCount();
+
+        List<String> statements = SqlStatementCapture.capture(action);
+        if (statements.size() <= budget)
+            return statements;
+
+        StringBuilder message = new StringBuilder()
+                .append("Expected at most ").append(budget).append(" SQL statements, but ")
+                .append(statements.size()).append(" were prepared:");
+        for (int i = 0; i < statements.size(); ++i)
+            message.append("\n  ").append(i + 1).append(". ").append(statements.get(i));
+        message.append("\nHibernate statistics meanwhile: ")
+                .append(statistics.getPrepareStatementCount() - prepared).append(" statements prepared, ")
+                .append(statistics.getQueryExecutionCount() - queries).append(" queries, ")
+                .append(statistics.getEntityLoadCount() - entityLoads).append(" entity loads, ")
+                .append(statistics.getCollectionFetchCount() - collectionFetches).append(" collection fetches, ")
+                .append(statistics.getSecondLevelCacheHitCount() - cacheHits).append(" cache hits, ")
+                .append(statistics.getSecondLevelCacheMissCount() - cacheMisses).append(" cache misses");
+
+        return fail(message.toString());
+    }
+}
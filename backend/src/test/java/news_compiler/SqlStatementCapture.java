@@ -0,0 +1,51 @@
+package news_compiler;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Captures the SQL statements Hibernate prepares on the current thread.
+ * <p>
+ * Hibernate creates this inspector itself, as named by the
+ * <code>hibernate.session_factory.statement_inspector</code> property of the tests, and passes it
+ * every statement before preparing it. A batch of inserts or updates is prepared once, so it is
+ * captured once, like the single round trip it costs. Statements sent through
+ * <code>JdbcTemplate</code> bypass Hibernate and are not captured, and neither are the IDs drawn
+ * from the sequence table, which Hibernate does outside the session once per allocation.
+ */
+public class SqlStatementCapture implements StatementInspector {
+    /** Statements captured on each thread, or null while nothing is being captured */
+    private static final ThreadLocal<List<String>> captured = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = captured.get();
+        if (statements != null)
+            statements.add(sql);
+
+        return sql;
+    }
+
+    /**
+     * Runs an action, capturing the statements it prepares on the current thread.
+     * MockMvc handles requests on the thread performing them, so this captures every statement
+     * of a request to a synchronous endpoint.
+     * @param action the action to run
+     * @return the statements, in the order they were prepared
+     * @throws Throwable if the action fails
+     */
+    public static List<String> capture(Executable action) throws Throwable {
+        List<String> statements = new ArrayList<>();
+        captured.set(statements);
+        try {
+            action.execute();
+        } finally {
+            captured.remove();
+        }
+
+        return statements;
+    }
+}
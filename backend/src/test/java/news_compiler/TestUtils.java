@@ -16,7 +16,7 @@ import java.time.format.DateTimeFormatter;
 public class TestUtils {
     /** GSON object for use in serialization */
     public static final Gson gson = new GsonBuilder()
-                                        .registerTypeAdapter(OffsetDateTime.class, new timeAdapter())
+                                        .registerTypeAdapter(OffsetDateTime.class, new timeAdapter().nullSafe())
                                         .create();
 
     /**
@@ -1,31 +1,64 @@
 package news_compiler.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.reflect.TypeToken;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
 import news_compiler.BaseTest;
+import news_compiler.SqlBudget;
 import news_compiler.TestUtils;
 import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticlePageDto;
+import news_compiler.dto.CacheStatsDto;
 import news_compiler.entity.Article;
 import news_compiler.entity.Category;
 import news_compiler.mapper.ArticleMapper;
 import news_compiler.repository.ArticleRepository;
+import news_compiler.service.ArticleCacheService;
+import news_compiler.service.ArticleFacetService;
+import news_compiler.service.ArticleStoryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Type;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -46,6 +79,38 @@ class ArticleReaderControllerTest extends BaseTest {
     @Autowired
     private ArticleRepository articleRepository;
 
+    /** Service reporting on the article cache */
+    @Autowired
+    private ArticleCacheService articleCacheService;
+
+    /** Service counting the recent articles, rebuilt to compare against its running counts */
+    @Autowired
+    private ArticleFacetService articleFacetService;
+
+    /** Service grouping the recent articles into stories, rebuilt to clear articles of earlier tests */
+    @Autowired
+    private ArticleStoryService articleStoryService;
+
+    /** Used to change the database without going through JPA */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Entity manager of the test's transaction, cleared after changing the database directly */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Mapper of the JSON responses, used to compare them with the CBOR ones */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Converter of the CBOR responses, whose mapper decodes them */
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
+    /** Factory whose statistics are reported when an endpoint exceeds its SQL budget */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     /**
      * A list of articles to test with.
      * These articles will be added to the database before each test.
@@ -59,8 +124,9 @@ class ArticleReaderControllerTest extends BaseTest {
      */
     @BeforeEach
     void setUp() {
-        // Clear database
+        // Clear database, deleting before the inserts below are flushed
         articleRepository.deleteAll();
+        articleRepository.flush();
 
         // Generate random datetime
         OffsetDateTime now = OffsetDateTime.now();
@@ -99,6 +165,30 @@ class ArticleReaderControllerTest extends BaseTest {
                 .andExpect(content().string(containsString(testArticles.get(1).getTitle())));
     }
 
+    /**
+     * Tests that the <code>getRecentArticles</code> endpoint returns each article with its own
+     * body, as bodies are read separately from the rest of the article.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesIncludesBodies() throws Exception {
+        final String resultString = mockMVC.perform(get("/api/articles/recent"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Parse the resulting string into a list of ArticleDto objects
+        final Type listType = new TypeToken<List<ArticleDto>>() {}.getType();
+        final List<ArticleDto> resultArticles = TestUtils.gson.fromJson(resultString, listType);
+
+        // Ensure that each article has the body it was saved with
+        assertEquals(testArticles.size(), resultArticles.size());
+        for (ArticleDto article : testArticles) {
+            assertTrue(resultArticles.stream().anyMatch(result ->
+                    result.getTitle().equals(article.getTitle()) && result.getBody().equals(article.getBody())));
+        }
+    }
+
     /**
      * Tests that the <code>getRecentArticles</code> endpoint functions as intended when the
      * database is empty.
@@ -243,4 +333,868 @@ class ArticleReaderControllerTest extends BaseTest {
                 .andExpect(content().string(not(containsString(testArticles.get(2).getBody()))))
                 .andExpect(content().string(not(containsString(testArticles.get(1).getBody()))));
     }
+
+    /**
+     * Tests that paging through the <code>getRecentArticlesPage</code> endpoint returns every
+     * recent article exactly once, in the same order as the unpaged endpoint.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesPage() throws Exception {
+        // Add an article without a publishing time, which belongs on the last page
+        Article nullTimeArticle = new Article(null, "title4", "body4", null, OffsetDateTime.now(), "source4", "url4", "image4", Category.FOOD);
+        articleRepository.save(nullTimeArticle);
+
+        // Fetch the unpaged list to compare against
+        final Type listType = new TypeToken<List<ArticleDto>>() {}.getType();
+        final String unpagedString = mockMVC.perform(get("/api/articles/recent"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        final List<ArticleDto> unpaged = TestUtils.gson.fromJson(unpagedString, listType);
+
+        // Page through the articles two at a time
+        List<ArticleDto> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var request = get("/api/articles/recent").param("limit", "2");
+            if (cursor != null)
+                request.param("cursor", cursor);
+
+            final String resultString = mockMVC.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            final ArticlePageDto page = TestUtils.gson.fromJson(resultString, ArticlePageDto.class);
+
+            assertThat(page.getArticles().size()).isLessThanOrEqualTo(2);
+            paged.addAll(page.getArticles());
+            cursor = page.getNextCursor();
+            ++pages;
+        } while (cursor != null);
+
+        // Ensure the pages hold the same articles in the same order
+        assertEquals(2, pages);
+        assertEquals(unpaged.stream().map(ArticleDto::getId).toList(),
+                paged.stream().map(ArticleDto::getId).toList());
+    }
+
+    /**
+     * Tests that the <code>getRecentArticlesLitePage</code> endpoint does not include article
+     * bodies.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesLitePage() throws Exception {
+        mockMVC.perform(get("/api/articles/recent/lite").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(testArticles.get(0).getTitle())))
+                .andExpect(content().string(containsString(testArticles.get(1).getTitle())))
+                .andExpect(content().string(containsString(testArticles.get(2).getTitle())))
+                .andExpect(content().string(not(containsString(testArticles.get(0).getBody()))))
+                .andExpect(content().string(not(containsString("nextCursor\":\""))));
+    }
+
+    /**
+     * Tests that the paged endpoints reject invalid limits and cursors.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesPageInvalid() throws Exception {
+        mockMVC.perform(get("/api/articles/recent").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMVC.perform(get("/api/articles/recent").param("limit", "100000"))
+                .andExpect(status().isBadRequest());
+        mockMVC.perform(get("/api/articles/recent/lite").param("limit", "2").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests that the <code>getRecentArticlesLite</code> endpoint reflects articles as soon as
+     * they are written, as it is served from memory.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesLiteAfterWrite() throws Exception {
+        // Read once so that the articles are held in memory
+        mockMVC.perform(get("/api/articles/recent/lite"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(containsString("title4"))));
+
+        // Write a new article through the writer endpoint
+        ArticleDto newArticle = new ArticleDto(null, "title4", "body4", OffsetDateTime.now(), OffsetDateTime.now(), "source4", "url4", "image4", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(newArticle))))
+                .andExpect(status().isOk());
+
+        // Ensure the new article is served
+        mockMVC.perform(get("/api/articles/recent/lite"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(containsString("title4")))
+                .andExpect(content().string(not(containsString("body4"))));
+
+        // Ensure that articles removed outside the writer endpoint are dropped as well
+        articleRepository.deleteAll();
+        mockMVC.perform(get("/api/articles/recent/lite"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    /**
+     * Tests that the <code>getArticleById</code> endpoint answers a conditional request for an
+     * unchanged article with 304, without reading the article from the database.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getArticleByIdNotModified() throws Exception {
+        Article article = articleRepository.findByTitle(testArticles.getFirst().getTitle());
+        String path = "/api/articles/" + article.getId();
+
+        // The first request carries the validators
+        MockHttpServletResponse response = mockMVC.perform(get(path))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse();
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull().doesNotStartWith("W/");
+
+        // Remove the row behind the data version's back, so only the cached validators can answer
+        articleRepository.flush();
+        jdbcTemplate.update("DELETE FROM articles WHERE id = ?", article.getId());
+        entityManager.clear();
+        mockMVC.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMVC.perform(get(path).header(HttpHeaders.IF_MODIFIED_SINCE, response.getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+
+        // Once any article changes, the cached validators are no longer trusted
+        Article other = articleRepository.findByTitle(testArticles.getLast().getTitle());
+        other.setBody("new body");
+        articleRepository.saveAndFlush(other);
+        mockMVC.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests that the <code>getArticleById</code> endpoint sends a new ETag once the article changes,
+     * including when it is changed back with a later fetch time.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getArticleByIdModified() throws Exception {
+        Article article = articleRepository.findByTitle(testArticles.getFirst().getTitle());
+        String path = "/api/articles/" + article.getId();
+        String body = article.getBody();
+
+        String etag = mockMVC.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Change the article and ensure it is sent again with a different tag
+        article.setBody("new body");
+        articleRepository.saveAndFlush(article);
+        String newEtag = mockMVC.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("new body")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+
+        // Change it back as a rewrite would, and ensure the first copy is not taken as current
+        article.setBody(body);
+        article.setTimeFetched(article.getTimeFetched().plusMinutes(5));
+        articleRepository.saveAndFlush(article);
+        String revertedEtag = mockMVC.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(revertedEtag).isNotEqualTo(etag).isNotEqualTo(newEtag);
+    }
+
+    /**
+     * Tests that the <code>getRecentArticlesLite</code> endpoint answers a conditional request with
+     * 304 until the articles change.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesLiteNotModified() throws Exception {
+        MockHttpServletResponse response = mockMVC.perform(get("/api/articles/recent/lite"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        String lastModified = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        assertThat(etag).isNotNull();
+        assertThat(lastModified).isNotNull();
+
+        mockMVC.perform(get("/api/articles/recent/lite").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMVC.perform(get("/api/articles/recent/lite").header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+
+        // Write a new article and ensure the list is sent again
+        ArticleDto newArticle = new ArticleDto(null, "title4", "body4", OffsetDateTime.now(), OffsetDateTime.now(), "source4", "url4", "image4", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(newArticle))))
+                .andExpect(status().isOk());
+        mockMVC.perform(get("/api/articles/recent/lite").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("title4")));
+    }
+
+    /**
+     * Tests that the reader endpoints send gzip-compressed responses to clients that accept them,
+     * and plain responses to clients that do not.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getArticlesGzip() throws Exception {
+        Article article = articleRepository.findByTitle(testArticles.getFirst().getTitle());
+
+        for (String path : List.of("/api/articles/recent", "/api/articles/recent/lite", "/api/articles/" + article.getId())) {
+            // Compressed when accepted
+            MockHttpServletResponse compressed = mockMVC.perform(get(path)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(containsString(HttpHeaders.ACCEPT_ENCODING))))
+                    .andReturn().getResponse();
+
+            // Plain when not accepted or refused
+            MockHttpServletResponse plain = mockMVC.perform(get(path)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andReturn().getResponse();
+
+            // Ensure both carry the same content under different tags
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.getContentAsByteArray()))) {
+                assertThat(gzip.readAllBytes()).isEqualTo(plain.getContentAsByteArray());
+            }
+            assertThat(plain.getContentAsString()).contains(article.getTitle());
+            assertThat(compressed.getHeader(HttpHeaders.ETAG)).isNotEqualTo(plain.getHeader(HttpHeaders.ETAG));
+
+            // Ensure each tag validates its own representation
+            mockMVC.perform(get(path)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                    .header(HttpHeaders.IF_NONE_MATCH, compressed.getHeader(HttpHeaders.ETAG)))
+                    .andExpect(status().isNotModified());
+        }
+    }
+
+    /**
+     * Tests that the article list endpoints send CBOR to clients preferring it, with each article
+     * as an array of its fields, times as epoch milliseconds and categories as ordinals.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void getArticlesCbor() throws Exception {
+        ObjectMapper cborMapper = cborHttpMessageConverter.getObjectMapper();
+        TypeReference<List<ArticleDto>> listType = new TypeReference<>() {};
+
+        for (String path : List.of("/api/articles/recent", "/api/articles/recent/lite", "/api/articles/recent/lite?category=FOOD")) {
+            MockHttpServletResponse cbor = mockMVC.perform(get(path)
+                    .header(HttpHeaders.ACCEPT, "application/cbor, */*;q=0.5"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(containsString(HttpHeaders.ACCEPT))))
+                    .andReturn().getResponse();
+
+            // JSON is still sent to clients accepting anything, or preferring JSON
+            MockHttpServletResponse json = mockMVC.perform(get(path))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andReturn().getResponse();
+            mockMVC.perform(get(path).header(HttpHeaders.ACCEPT, "application/json, application/cbor;q=0.5"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+
+            // Ensure both carry the same articles, and the binary encoding is smaller
+            List<ArticleDto> cborArticles = cborMapper.readValue(cbor.getContentAsByteArray(), listType);
+            List<ArticleDto> jsonArticles = objectMapper.readValue(json.getContentAsByteArray(), listType);
+            assertThat(cborArticles).isNotEmpty();
+            assertEquals(jsonArticles.stream().map(this::fields).toList(), cborArticles.stream().map(this::fields).toList());
+            assertThat(cbor.getContentAsByteArray().length).isLessThan(json.getContentAsByteArray().length);
+            assertThat(cbor.getHeader(HttpHeaders.ETAG)).isNotEqualTo(json.getHeader(HttpHeaders.ETAG));
+
+            // Ensure each article is an array, with its times in milliseconds and its category as an ordinal
+            JsonNode first = cborMapper.readTree(cbor.getContentAsByteArray()).get(0);
+            ArticleDto firstArticle = cborArticles.getFirst();
+            assertTrue(first.isArray());
+            assertEquals(firstArticle.getTimeFetched().toInstant().toEpochMilli(), first.get(4).longValue());
+            assertEquals(firstArticle.getCategory().ordinal(), first.get(8).intValue());
+
+            // Ensure the tag validates the binary representation
+            mockMVC.perform(get(path)
+                    .header(HttpHeaders.ACCEPT, "application/cbor")
+                    .header(HttpHeaders.IF_NONE_MATCH, cbor.getHeader(HttpHeaders.ETAG)))
+                    .andExpect(status().isNotModified());
+        }
+
+        // Pages are negotiated the same way, with their articles in the same shape
+        for (String path : List.of("/api/articles/recent", "/api/articles/recent/lite")) {
+            byte[] page = mockMVC.perform(get(path).param("limit", "2")
+                    .header(HttpHeaders.ACCEPT, "application/cbor"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(containsString(HttpHeaders.ACCEPT))))
+                    .andReturn().getResponse().getContentAsByteArray();
+            JsonNode pageNode = cborMapper.readTree(page);
+            assertEquals(2, pageNode.get("articles").size());
+            assertTrue(pageNode.get("articles").get(0).isArray());
+            assertTrue(pageNode.get("nextCursor").isTextual());
+
+            mockMVC.perform(get(path).param("limit", "2")
+                    .header(HttpHeaders.ACCEPT, "application/json, application/cbor;q=0.5"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(containsString(HttpHeaders.ACCEPT))));
+            mockMVC.perform(get(path).param("limit", "2").header(HttpHeaders.ACCEPT, "*/*"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        }
+    }
+
+    /**
+     * Returns the fields of an article, with times as instants so that offsets do not matter.
+     * @param article the article
+     * @return the fields of the article, in the order they are declared
+     */
+    private List<Object> fields(ArticleDto article) {
+        return Arrays.asList(article.getId(), article.getTitle(), article.getBody(),
+                article.getTimePublished() == null ? null : article.getTimePublished().toInstant(),
+                article.getTimeFetched().toInstant(), article.getSource(), article.getArticleUrl(),
+                article.getImageUrl(), article.getCategory());
+    }
+
+    /**
+     * Tests that the <code>getArticleById</code> endpoint reads unchanged articles from the
+     * second-level cache, and reads updated articles afresh.
+     * <p>
+     * This test is not transactional, as only committed articles are cached.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    void getArticleByIdCached() throws Exception {
+        ArticleDto testArticle = testArticles.getFirst();
+        String path = "/api/articles/" + articleRepository.findByTitle(testArticle.getTitle()).getId();
+        mockMVC.perform(get(path)).andExpect(status().isOk());
+        CacheStatsDto before = articleCacheService.getStats();
+
+        // Write another article, so the response can no longer be served from memory
+        ArticleDto newArticle = new ArticleDto(null, "title4", "body4", OffsetDateTime.now(), OffsetDateTime.now(), "source4", "url4", "image4", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(newArticle))))
+                .andExpect(status().isOk());
+
+        // Ensure the unchanged article is read from the cache
+        mockMVC.perform(get(path))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(testArticle.getBody())));
+        assertThat(articleCacheService.getStats().getHits()).isGreaterThan(before.getHits());
+
+        // Update the article and ensure the cached copy is replaced
+        ArticleDto updatedArticle = new ArticleDto(null, testArticle.getTitle(), "new body", testArticle.getTimePublished(),
+                testArticle.getTimeFetched(), testArticle.getSource(), testArticle.getArticleUrl(),
+                testArticle.getImageUrl(), testArticle.getCategory());
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(updatedArticle))))
+                .andExpect(status().isOk());
+        mockMVC.perform(get(path))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("new body")));
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>searchArticles</code> endpoint ranks articles written through the
+     * writer endpoint, and reports where the terms appear.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    @Transactional
+    void searchArticles() throws Exception {
+        // Write articles through the writer endpoint, so they are indexed
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> newArticles = List.of(
+                new ArticleDto(null, "Mars rover lands", "The rover touched down on Mars after a long trip.", now, now, "source4", "url4", "image4", Category.SCIENCE),
+                new ArticleDto(null, "Budget talks stall", "Lawmakers mentioned Mars only in passing.", now, now, "source5", "url5", "image5", Category.WORLD_POLITICS),
+                new ArticleDto(null, "Local bakery opens", "Fresh bread every morning.", now, now, "source6", "url6", "image6", Category.FOOD)
+        );
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(newArticles)))
+                .andExpect(status().isOk());
+
+        // Ensure the article matching both terms in its title ranks first
+        mockMVC.perform(get("/api/articles/search").param("q", "MARS rover"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].article.title").value("Mars rover lands"))
+                .andExpect(jsonPath("$[0].article.body").doesNotExist())
+                .andExpect(jsonPath("$[0].titleHighlights[0][0]").value(0))
+                .andExpect(jsonPath("$[0].titleHighlights[0][1]").value(4))
+                .andExpect(jsonPath("$[0].titleHighlights[1][0]").value(5))
+                .andExpect(jsonPath("$[0].titleHighlights[1][1]").value(10))
+                .andExpect(jsonPath("$[0].bodyHighlights.length()").value(2))
+                .andExpect(jsonPath("$[1].article.title").value("Budget talks stall"))
+                .andExpect(jsonPath("$[1].titleHighlights").isEmpty());
+
+        // Ensure the limit is respected
+        mockMVC.perform(get("/api/articles/search").param("q", "mars").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        // Ensure articles removed outside the writer endpoint are not returned
+        articleRepository.deleteAll();
+        mockMVC.perform(get("/api/articles/search").param("q", "mars"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    /**
+     * Tests that the <code>searchArticles</code> endpoint rejects queries without terms and
+     * invalid limits.
+     * @throws Exception if the test fails or if there is an issue with the GET request
+     */
+    @Test
+    @Transactional
+    void searchArticlesInvalid() throws Exception {
+        mockMVC.perform(get("/api/articles/search").param("q", " ?! "))
+                .andExpect(status().isBadRequest());
+        mockMVC.perform(get("/api/articles/search").param("q", "title1").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMVC.perform(get("/api/articles/search").param("q", "title1").param("limit", "101"))
+                .andExpect(status().isBadRequest());
+        mockMVC.perform(get("/api/articles/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests that the <code>getRecentArticlesLite</code> endpoint can be filtered by category,
+     * keeping the order of the unfiltered list.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    @Transactional
+    void getRecentArticlesLiteByCategory() throws Exception {
+        MockHttpServletResponse response = mockMVC.perform(get("/api/articles/recent/lite").param("category", "FOOD"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse();
+
+        Type listType = new TypeToken<ArrayList<ArticleDto>>() {}.getType();
+        List<ArticleDto> articles = TestUtils.gson.fromJson(response.getContentAsString(), listType);
+        assertEquals(List.of("title3", "title2"), articles.stream().map(ArticleDto::getTitle).toList());
+        assertTrue(articles.stream().allMatch(article -> article.getBody() == null));
+
+        // Ensure empty categories and newly written articles are served
+        mockMVC.perform(get("/api/articles/recent/lite").param("category", "SCIENCE"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+
+        ArticleDto newArticle = new ArticleDto(null, "title4", "body4", OffsetDateTime.now(), OffsetDateTime.now(), "source4", "url4", "image4", Category.SCIENCE);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(newArticle))))
+                .andExpect(status().isOk());
+        mockMVC.perform(get("/api/articles/recent/lite").param("category", "SCIENCE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title").value("title4"));
+
+        // Ensure unknown categories and paging by category are rejected
+        mockMVC.perform(get("/api/articles/recent/lite").param("category", "NOT_A_CATEGORY"))
+                .andExpect(status().isBadRequest());
+        mockMVC.perform(get("/api/articles/recent/lite").param("category", "FOOD").param("limit", "1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests that the <code>getFacets</code> endpoint counts committed articles by category and
+     * source, and follows articles as they are updated and deleted.
+     * This test is not transactional, as only committed changes are counted.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    void getFacets() throws Exception {
+        mockMVC.perform(get("/api/articles/facets"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories.BUSINESS").value(1))
+                .andExpect(jsonPath("$.categories.FOOD").value(2))
+                .andExpect(jsonPath("$.categories.SCIENCE").value(0))
+                .andExpect(jsonPath("$.sources.source1").value(1))
+                .andExpect(jsonPath("$.sources.length()").value(3));
+
+        // Move an article to another category, and write one that is only in the weekly window
+        ArticleDto testArticle = testArticles.getFirst();
+        OffsetDateTime threeDaysAgo = OffsetDateTime.now().minusDays(3);
+        List<ArticleDto> newArticles = List.of(
+                new ArticleDto(null, testArticle.getTitle(), testArticle.getBody(), testArticle.getTimePublished(),
+                        testArticle.getTimeFetched(), testArticle.getSource(), testArticle.getArticleUrl(),
+                        testArticle.getImageUrl(), Category.FOOD),
+                new ArticleDto(null, "title4", "body4", threeDaysAgo, threeDaysAgo, "source1", "url4", "image4", Category.SCIENCE)
+        );
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(newArticles)))
+                .andExpect(status().isOk());
+
+        mockMVC.perform(get("/api/articles/facets").param("window", "DAY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories.BUSINESS").value(0))
+                .andExpect(jsonPath("$.categories.FOOD").value(3))
+                .andExpect(jsonPath("$.categories.SCIENCE").value(0))
+                .andExpect(jsonPath("$.sources.source1").value(1));
+        mockMVC.perform(get("/api/articles/facets").param("window", "WEEK"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories.FOOD").value(3))
+                .andExpect(jsonPath("$.categories.SCIENCE").value(1))
+                .andExpect(jsonPath("$.sources.source1").value(2));
+
+        // Ensure the counts match a rebuild from the database
+        String counted = mockMVC.perform(get("/api/articles/facets").param("window", "WEEK"))
+                .andReturn().getResponse().getContentAsString();
+        articleFacetService.rebuild();
+        String rebuilt = mockMVC.perform(get("/api/articles/facets").param("window", "WEEK"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(TestUtils.gson.fromJson(rebuilt, Object.class), TestUtils.gson.fromJson(counted, Object.class));
+
+        // Ensure deleted articles are no longer counted, and unknown windows are rejected
+        articleRepository.deleteAll();
+        mockMVC.perform(get("/api/articles/facets").param("window", "WEEK"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories.FOOD").value(0))
+                .andExpect(jsonPath("$.sources").isEmpty());
+        mockMVC.perform(get("/api/articles/facets").param("window", "MONTH"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests that articles nearly duplicating an earlier article are left out of the
+     * <code>getRecentArticlesLite</code> endpoint, whether the original was written in the same
+     * request or an earlier one, while still being served by ID.
+     * This test is not transactional, as articles are only indexed once committed.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    void getRecentArticlesLiteSkipsDuplicates() throws Exception {
+        String wire = "City officials approved a plan on Tuesday to rebuild the old harbor bridge, which has been " +
+                "closed to heavy traffic since engineers found cracks in its supports last spring. The project " +
+                "is expected to cost about 240 million dollars and take three years to finish, according to a " +
+                "statement from the mayor's office. Residents who live near the bridge have complained for " +
+                "months about detours that added as much as half an hour to their daily commute. The council " +
+                "voted seven to two in favor of the plan after a long public hearing.";
+        String edited = wire.replace("on Tuesday", "on Tuesday evening").replace("months", "many months") +
+                " Reporting by the Harbor Gazette.";
+        String distinct = "The regional orchestra announced its new season on Monday, opening with a program of " +
+                "works by young composers from across the country. The conductor said the season would also " +
+                "include free concerts in parks and schools, paid for by a grant from a local foundation. " +
+                "Tickets for the opening night go on sale next week, and the orchestra expects them to sell out " +
+                "quickly after last year's sold out run of holiday performances.";
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> firstBatch = List.of(
+                new ArticleDto(null, "title4", wire, now, now, "source4", "url4", "image4", Category.UNITED_STATES_POLITICS),
+                new ArticleDto(null, "title5", edited, now, now, "source5", "url5", "image5", Category.UNITED_STATES_POLITICS),
+                new ArticleDto(null, "title6", distinct, now, now, "source4", "url6", "image6", Category.ENTERTAINMENT)
+        );
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(firstBatch)))
+                .andExpect(status().isOk());
+
+        ArticleDto secondCopy = new ArticleDto(null, "title7", wire + " Copyright Example News.", now, now,
+                "source6", "url7", "image7", Category.UNITED_STATES_POLITICS);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(secondCopy))))
+                .andExpect(status().isOk());
+
+        // Ensure both copies are tagged with the original
+        Article original = articleRepository.findByTitle("title4");
+        assertEquals(original.getId(), articleRepository.findByTitle("title5").getDuplicateOf());
+        assertEquals(original.getId(), articleRepository.findByTitle("title7").getDuplicateOf());
+        assertNull(articleRepository.findByTitle("title6").getDuplicateOf());
+
+        // Ensure the copies are left out of the recent articles, but can still be read
+        mockMVC.perform(get("/api/articles/recent/lite"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", hasItem("title4")))
+                .andExpect(jsonPath("$[*].title", hasItem("title6")))
+                .andExpect(jsonPath("$[*].title", not(hasItem("title5"))))
+                .andExpect(jsonPath("$[*].title", not(hasItem("title7"))));
+        mockMVC.perform(get("/api/articles/" + articleRepository.findByTitle("title5").getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.body").value(edited));
+
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>getStories</code> endpoint groups articles from several sources covering
+     * the same event, leaves out events covered by a single source, and follows deletions.
+     * This test is not transactional, as deletions are only followed once committed.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    void getStories() throws Exception {
+        articleStoryService.rebuild();
+        mockMVC.perform(get("/api/articles/stories"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime minuteAgo = now.minusMinutes(1);
+        List<ArticleDto> newArticles = List.of(
+                new ArticleDto(null, "Council approves harbor bridge rebuild",
+                        "The city council voted to rebuild the harbor bridge after engineers found cracks in its " +
+                        "supports. The rebuild will cost 240 million dollars and close the bridge for three years.",
+                        minuteAgo, minuteAgo, "source4", "url4", "image4", Category.UNITED_STATES_POLITICS),
+                new ArticleDto(null, "Orchestra unveils season of young composers",
+                        "The regional orchestra opened its season announcement with works by young composers, " +
+                        "and promised free concerts in parks paid for by a foundation grant.",
+                        minuteAgo, minuteAgo, "source4", "url5", "image5", Category.ENTERTAINMENT),
+                new ArticleDto(null, "Harbor bridge to close for three years",
+                        "Commuters face long detours as the harbor bridge closes for a rebuild approved by the " +
+                        "council. Engineers said cracks in the bridge supports made the 240 million dollar project urgent.",
+                        now, now, "source5", "url6", "image6", Category.UNITED_STATES_POLITICS),
+                new ArticleDto(null, "Young composers headline orchestra season",
+                        "Works by young composers headline the orchestra's new season, which also brings free " +
+                        "concerts in parks thanks to a foundation grant.",
+                        now, now, "source6", "url7", "image7", Category.ENTERTAINMENT),
+                new ArticleDto(null, "What the harbor bridge rebuild means for commuters",
+                        "Drivers who cross the harbor bridge should plan detours. The council approved the rebuild " +
+                        "after cracks were found in the bridge supports by engineers.",
+                        now, now, "source6", "url8", "image8", Category.UNITED_STATES_POLITICS),
+                new ArticleDto(null, "Local bakery wins national bread award",
+                        "A family bakery on Main Street won a national award for its sourdough, beating hundreds of " +
+                        "entries from bakeries around the country.",
+                        now, now, "source5", "url9", "image9", Category.FOOD)
+        );
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(newArticles)))
+                .andExpect(status().isOk());
+
+        // Ensure the stories covered by several sources are served, most widely covered first
+        List<Long> bridgeIds = List.of(articleRepository.findByTitle(newArticles.get(4).getTitle()).getId(),
+                articleRepository.findByTitle(newArticles.get(2).getTitle()).getId(),
+                articleRepository.findByTitle(newArticles.get(0).getTitle()).getId());
+        mockMVC.perform(get("/api/articles/stories"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].coverage").value(3))
+                .andExpect(jsonPath("$[0].sources", contains("source4", "source5", "source6")))
+                .andExpect(jsonPath("$[0].articleIds.length()").value(3))
+                .andExpect(jsonPath("$[0].headline", containsString("arbor bridge")))
+                .andExpect(jsonPath("$[1].coverage").value(2))
+                .andExpect(jsonPath("$[1].headline", containsString("omposers")));
+        String stories = mockMVC.perform(get("/api/articles/stories").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(stories).contains(bridgeIds.stream().map(String::valueOf).toList());
+
+        // Ensure the stories match a rebuild from the database, and invalid limits are rejected
+        List<List<Object>> served = articleStoryService.getStories(ArticleStoryService.MAX_STORIES).stream()
+                .map(story -> List.<Object>of(story.getHeadline(), story.getArticleIds(), story.getSources()))
+                .toList();
+        articleStoryService.rebuild();
+        List<List<Object>> rebuilt = articleStoryService.getStories(ArticleStoryService.MAX_STORIES).stream()
+                .map(story -> List.<Object>of(story.getHeadline(), story.getArticleIds(), story.getSources()))
+                .toList();
+        assertEquals(served, rebuilt);
+        mockMVC.perform(get("/api/articles/stories").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        // Ensure deleted articles leave their stories
+        articleRepository.deleteAll();
+        mockMVC.perform(get("/api/articles/stories"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    /**
+     * Tests that each endpoint stays within its budget of SQL statements, so that a query per
+     * article or a redundant lookup fails the build.
+     * <p>
+     * This test is not transactional, as the second-level cache and the in-memory snapshots only
+     * hold committed articles.
+     * @throws Throwable if the test fails or if there is an issue with a request
+     */
+    @Test
+    void sqlBudgets() throws Throwable {
+        SqlBudget budget = new SqlBudget(entityManagerFactory);
+
+        // Write an article through the writer endpoint, so the snapshots and indexes hold it
+        OffsetDateTime now = OffsetDateTime.now();
+        ArticleDto newArticle = new ArticleDto(null, "Mars rover lands", "The rover touched down on Mars.", now, now, "source4", "url4", "image4", Category.SCIENCE);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(newArticle))))
+                .andExpect(status().isOk());
+        String path = "/api/articles/" + articleRepository.findByTitle(newArticle.getTitle()).getId();
+
+        // Recent articles without bodies are served from memory
+        budget.assertAtMost(1, () -> mockMVC.perform(get("/api/articles/recent/lite")).andExpect(status().isOk()));
+        budget.assertAtMost(1, () -> mockMVC.perform(get("/api/articles/recent/lite")
+                .param("category", Category.SCIENCE.name())).andExpect(status().isOk()));
+
+        // Bodies are read in a single query for all the articles
+        budget.assertAtMost(2, () -> mockMVC.perform(get("/api/articles/recent")).andExpect(status().isOk()));
+
+        // A page reads the published, then the unpublished articles, and their bodies
+        budget.assertAtMost(2, () -> mockMVC.perform(get("/api/articles/recent/lite").param("limit", "2"))
+                .andExpect(status().isOk()));
+        budget.assertAtMost(3, () -> mockMVC.perform(get("/api/articles/recent").param("limit", "2"))
+                .andExpect(status().isOk()));
+
+        // A single article is read once, then served from memory until articles change
+        budget.assertAtMost(1, () -> mockMVC.perform(get(path)).andExpect(status().isOk()));
+        budget.assertAtMost(0, () -> mockMVC.perform(get(path)).andExpect(status().isOk()));
+
+        // Matches are searched in memory, and read from the second-level cache
+        budget.assertAtMost(1, () -> mockMVC.perform(get("/api/articles/search").param("q", "mars"))
+                .andExpect(status().isOk()));
+
+        // Facets and stories are counted in memory
+        budget.assertAtMost(0, () -> mockMVC.perform(get("/api/articles/facets")).andExpect(status().isOk()));
+        budget.assertAtMost(0, () -> mockMVC.perform(get("/api/articles/stories")).andExpect(status().isOk()));
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>getArticleEvents</code> endpoint pushes written articles without their
+     * bodies, replays the events a reconnecting client missed, and tells a client that missed
+     * events no longer kept to fetch the articles afresh.
+     * This test is not transactional, as articles are only pushed once committed.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    void getArticleEvents() throws Exception {
+        MvcResult subscription = mockMVC.perform(get("/api/articles/events"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("X-Accel-Buffering", "no"))
+                .andReturn();
+        awaitEvents(subscription, "retry: ");
+
+        // Ensure a written article is pushed without its body
+        OffsetDateTime now = OffsetDateTime.now();
+        ArticleDto first = new ArticleDto(null, "Comet seen from Earth", "The comet lit up the night sky.", now, now, "source4", "url4", "image4", Category.SCIENCE);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(first))))
+                .andExpect(status().isOk());
+        String events = awaitEvents(subscription, first.getTitle());
+        assertThat(subscription.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(events).contains("event: articles").doesNotContain(first.getBody());
+        Matcher lastEvent = Pattern.compile("id: (\\d+)\nevent: articles").matcher(events);
+        assertTrue(lastEvent.find());
+        String firstId = lastEvent.group(1);
+
+        // Ensure a client reconnecting after the first article is only sent the ones after it
+        ArticleDto second = new ArticleDto(null, "Comet fades from view", "The comet can no longer be seen.", now, now, "source5", "url5", "image5", Category.SCIENCE);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(second))))
+                .andExpect(status().isOk());
+        MvcResult reconnected = mockMVC.perform(get("/api/articles/events").header("Last-Event-ID", firstId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(awaitEvents(reconnected, second.getTitle())).doesNotContain(first.getTitle());
+        awaitEvents(subscription, second.getTitle());
+
+        // Ensure a client whose last event is no longer kept is told to start over
+        MvcResult stale = mockMVC.perform(get("/api/articles/events").header("Last-Event-ID", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(awaitEvents(stale, "event: resync")).doesNotContain("event: articles");
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>getArticleEvents</code> endpoint tells subscribers to drop an article
+     * updated into a near-duplicate of another, as it leaves the recent articles.
+     * This test is not transactional, as articles are only pushed once committed.
+     * @throws Exception if the test fails or if there is an issue with a request
+     */
+    @Test
+    void getArticleEventsRemovesDuplicates() throws Exception {
+        String wire = "City officials approved a plan on Tuesday to rebuild the old harbor bridge, which has been " +
+                "closed to heavy traffic since engineers found cracks in its supports last spring. The project " +
+                "is expected to cost about 240 million dollars and take three years to finish, according to a " +
+                "statement from the mayor's office. Residents who live near the bridge have complained for " +
+                "months about detours that added as much as half an hour to their daily commute. The council " +
+                "voted seven to two in favor of the plan after a long public hearing.";
+
+        MvcResult subscription = mockMVC.perform(get("/api/articles/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(subscription, "retry: ");
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> articles = List.of(
+                new ArticleDto(null, "title4", wire, now, now, "source4", "url4", "image4", Category.UNITED_STATES_POLITICS),
+                new ArticleDto(null, "title5", "The bridge will be rebuilt.", now, now, "source5", "url5", "image5", Category.UNITED_STATES_POLITICS)
+        );
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(articles)))
+                .andExpect(status().isOk());
+        awaitEvents(subscription, "title5");
+        Long id = articleRepository.findByTitle("title5").getId();
+
+        // Ensure updating the second article into a copy of the first removes it
+        ArticleDto copy = new ArticleDto(null, "title5", wire + " Reporting by the Harbor Gazette.", now, now,
+                "source5", "url5", "image5", Category.UNITED_STATES_POLITICS);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtils.asJsonString(List.of(copy))))
+                .andExpect(status().isOk());
+        assertThat(awaitEvents(subscription, "event: articles-removed")).contains("data: [" + id + "]");
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Waits for a subscription to the article events to have received some text.
+     * @param subscription the subscription, whose response is written to as events are pushed
+     * @param expected the text to wait for
+     * @return everything the subscription received
+     * @throws Exception if the text is not received within 10 seconds
+     */
+    private static String awaitEvents(MvcResult subscription, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        String events = subscription.getResponse().getContentAsString();
+        while (!events.contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            events = subscription.getResponse().getContentAsString();
+        }
+
+        assertThat(events).contains(expected);
+        return events;
+    }
 }
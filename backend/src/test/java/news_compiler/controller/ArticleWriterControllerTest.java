@@ -1,33 +1,47 @@
 package news_compiler.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
 import news_compiler.BaseTest;
+import news_compiler.SqlBudget;
 import news_compiler.TestUtils;
+import news_compiler.dto.ArticleBatchStatusDto;
 import news_compiler.dto.ArticleDto;
+import news_compiler.dto.ArticleIngestReportDto;
+import news_compiler.dto.ArticleWriteReportDto;
 import news_compiler.entity.Article;
 import news_compiler.entity.Category;
 import news_compiler.mapper.ArticleMapper;
 import news_compiler.repository.ArticleRepository;
+import news_compiler.service.ArticleService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import org.testcontainers.shaded.com.google.common.reflect.TypeToken;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 import static news_compiler.TestUtils.asJsonString;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -47,6 +61,14 @@ class ArticleWriterControllerTest extends BaseTest {
     @Autowired
     private ArticleRepository articleRepository;
 
+    /** Factory whose statistics are reported when a write exceeds its SQL budget. */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** The registry the write metrics are recorded in. */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * A list of articles to test with.
      * These articles will be added to the database before each test.
@@ -282,4 +304,478 @@ class ArticleWriterControllerTest extends BaseTest {
             assertTrue(result.contains(article));
         }
     }
+
+    /**
+     * Tests that the <code>writeArticles</code> method functions as intended when the same title
+     * appears more than once in a single request. The last occurrence should win.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void writeArticlesDuplicateTitles() throws Exception {
+        ArticleDto first = testArticles.getFirst();
+        ArticleDto second = new ArticleDto(null, first.getTitle(), "A newer body", first.getTimePublished(),
+                first.getTimeFetched(), first.getSource(), first.getArticleUrl(), first.getImageUrl(), first.getCategory());
+
+        // Call the endpoint
+        String resultString = mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(first, second))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Ensure both articles are returned in order, under the same ID
+        List<ArticleDto> result = TestUtils.gson.fromJson(resultString, listType);
+        assertEquals(2, result.size());
+        assertEquals(result.get(0).getId(), result.get(1).getId());
+        assertThat(result.get(0)).isEqualTo(first);
+        assertThat(result.get(1)).isEqualTo(second);
+
+        // Ensure only the last one was kept
+        assertEquals(1, articleRepository.count());
+        assertThat(ArticleMapper.articleToDto(articleRepository.findByTitle(first.getTitle()))).isEqualTo(second);
+    }
+
+    /**
+     * Tests that a title resubmitted with a different case or accents updates the existing article,
+     * as the database's unique key on titles holds them to be the same title.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void writeArticlesTitleCase() throws Exception {
+        OffsetDateTime now = OffsetDateTime.now();
+        ArticleDto original = new ArticleDto(null, "Title", "body", now, now, "source", "url", "image", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(original))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ArticleWriterController.INSERTED_HEADER, "1"));
+
+        // Ensure a title differing only in case updates the article, taking the new title
+        ArticleDto lowerCase = new ArticleDto(null, "title", "body", now, now, "source", "url", "image", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(lowerCase))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ArticleWriterController.INSERTED_HEADER, "0"))
+                .andExpect(header().string(ArticleWriterController.UPDATED_HEADER, "1"));
+
+        // Ensure a title differing only in accents does too
+        ArticleDto accented = new ArticleDto(null, "Títle", "A newer body", now, now, "source", "url", "image", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(accented))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ArticleWriterController.INSERTED_HEADER, "0"))
+                .andExpect(header().string(ArticleWriterController.UPDATED_HEADER, "1"));
+
+        long titles = articleRepository.findAll().stream()
+                .filter(article -> article.getTitle().equalsIgnoreCase("title") || article.getTitle().equals("Títle"))
+                .count();
+        assertEquals(1, titles);
+        assertEquals("A newer body", articleRepository.findByTitle("Títle").getBody());
+    }
+
+    /**
+     * Tests that articles written without a fetch time, whether inserted or updated, are given the
+     * time they were written, as the partitioned table cannot hold them without one.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void writeArticlesWithoutTimeFetched() throws Exception {
+        OffsetDateTime before = OffsetDateTime.now().minusSeconds(1);
+        ArticleDto article = new ArticleDto(null, "title", "body", before, null, "source", "url", "image", Category.FOOD);
+        String resultString = mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(article))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ArticleWriterController.INSERTED_HEADER, "1"))
+                .andReturn().getResponse().getContentAsString();
+
+        // Ensure the returned and stored articles were both given the time they were written
+        List<ArticleDto> result = TestUtils.gson.fromJson(resultString, listType);
+        OffsetDateTime inserted = articleRepository.findByTitle("title").getTimeFetched();
+        assertThat(inserted).isAfterOrEqualTo(before).isBeforeOrEqualTo(OffsetDateTime.now());
+        assertTrue(result.getFirst().getTimeFetched().isEqual(inserted));
+
+        // Ensure an update without a fetch time is given one too
+        ArticleDto updated = new ArticleDto(null, "title", "A newer body", before, null, "source", "url", "image", Category.FOOD);
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(updated))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ArticleWriterController.UPDATED_HEADER, "1"));
+
+        assertThat(articleRepository.findByTitle("title").getTimeFetched()).isAfterOrEqualTo(inserted);
+    }
+
+    /**
+     * Tests that the <code>writeArticles</code> method functions as intended when a request is
+     * larger than a single write chunk.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void writeArticlesMultipleChunks() throws Exception {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> articles = new LinkedList<>();
+        for (int i = 0; i < ArticleService.WRITE_CHUNK_SIZE + 10; ++i)
+            articles.add(new ArticleDto(null, "title" + i, "body" + i, now, now, "source", "url", "image", Category.FOOD));
+
+        // Call the endpoint
+        String resultString = mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(articles)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Ensure every article was written and returned in order
+        List<ArticleDto> result = TestUtils.gson.fromJson(resultString, listType);
+        assertEquals(articles.size(), result.size());
+        assertEquals(articles.size(), articleRepository.count());
+        for (int i = 0; i < articles.size(); ++i)
+            assertEquals(articles.get(i).getTitle(), result.get(i).getTitle());
+    }
+
+    /**
+     * Tests that resubmitting unchanged articles leaves them untouched, and that the write
+     * response reports what happened to each article.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void writeArticlesUnchanged() throws Exception {
+        // Write the articles for the first time
+        mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(testArticles)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ArticleWriterController.INSERTED_HEADER, "3"))
+                .andExpect(header().string(ArticleWriterController.UPDATED_HEADER, "0"))
+                .andExpect(header().string(ArticleWriterController.UNCHANGED_HEADER, "0"));
+
+        // Resubmit the articles with one changed, and a newer fetch time for all of them
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> resubmitted = new LinkedList<>();
+        for (ArticleDto article : testArticles) {
+            String body = article == testArticles.getFirst() ? "A changed body" : article.getBody();
+            resubmitted.add(new ArticleDto(null, article.getTitle(), body, article.getTimePublished(), now,
+                    article.getSource(), article.getArticleUrl(), article.getImageUrl(), article.getCategory()));
+        }
+
+        String resultString = mockMVC.perform(post("/api/articles")
+                .param("report", "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(resubmitted)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Ensure the report lists each article under the right outcome
+        ArticleWriteReportDto report = TestUtils.gson.fromJson(resultString, ArticleWriteReportDto.class);
+        assertEquals(0, report.getInserted().size());
+        assertEquals(List.of(articleRepository.findByTitle(testArticles.get(0).getTitle()).getId()), report.getUpdated());
+        assertEquals(2, report.getUnchanged().size());
+
+        // Ensure the changed article was updated and the others kept their original fetch time
+        assertEquals("A changed body", articleRepository.findByTitle(testArticles.get(0).getTitle()).getBody());
+        for (ArticleDto article : testArticles.subList(1, testArticles.size())) {
+            ArticleDto writtenArticle = ArticleMapper.articleToDto(articleRepository.findByTitle(article.getTitle()));
+            assertThat(writtenArticle).isEqualTo(article);
+        }
+        assertEquals(testArticles.size(), articleRepository.count());
+    }
+
+    /**
+     * Tests that writing articles records the size of the batch and what happened to its articles.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void writeArticlesMetrics() throws Exception {
+        double inserted = writtenCount("inserted");
+        double unchanged = writtenCount("unchanged");
+        long batches = meterRegistry.get("articles.write.batch.size").summary().count();
+
+        // Write the articles, then resubmit them unchanged
+        for (int i = 0; i < 2; ++i) {
+            mockMVC.perform(post("/api/articles")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(testArticles)))
+                    .andExpect(status().isOk());
+        }
+
+        // Ensure both batches and each article's outcome were recorded
+        assertEquals(batches + 2, meterRegistry.get("articles.write.batch.size").summary().count());
+        assertEquals(inserted + testArticles.size(), writtenCount("inserted"));
+        assertEquals(unchanged + testArticles.size(), writtenCount("unchanged"));
+    }
+
+    /**
+     * Returns the number of articles written with an outcome so far.
+     * @param outcome the outcome, such as <code>inserted</code>
+     * @return the number of articles
+     */
+    private double writtenCount(String outcome) {
+        return meterRegistry.get("articles.written").tag("outcome", outcome).counter().count();
+    }
+
+    /**
+     * Tests that writing a batch of articles costs a fixed number of SQL statements, rather than
+     * a statement or lookup per article.
+     * <p>
+     * This test is not transactional, so the statements of each commit are counted.
+     * @throws Throwable if the test fails or if there is an issue with a request
+     */
+    @Test
+    void writeArticlesSqlBudget() throws Throwable {
+        SqlBudget budget = new SqlBudget(entityManagerFactory);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> articles = new LinkedList<>();
+        for (int i = 0; i < 100; ++i)
+            articles.add(new ArticleDto(null, "title" + i, "body" + i, now, now, "source", "url" + i, "image" + i, Category.FOOD));
+
+        // Look up existing titles, insert in a batch and refresh the recent articles
+        budget.assertAtMost(3, () -> mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(articles)))
+                .andExpect(status().isOk()));
+
+        // Unchanged articles are only looked up
+        budget.assertAtMost(1, () -> mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(articles)))
+                .andExpect(status().isOk()));
+
+        // Changed articles are updated in a batch
+        List<ArticleDto> changed = articles.stream()
+                .map(article -> new ArticleDto(null, article.getTitle(), article.getBody() + " changed", now, now,
+                        article.getSource(), article.getArticleUrl(), article.getImageUrl(), article.getCategory()))
+                .toList();
+        budget.assertAtMost(3, () -> mockMVC.perform(post("/api/articles")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(changed)))
+                .andExpect(status().isOk()));
+        assertEquals(articles.size(), articleRepository.count());
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>streamArticles</code> method writes each line of a newline-delimited
+     * JSON body and reports lines that could not be parsed.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void streamArticles() throws Exception {
+        // One article per line, with a blank line and a malformed line mixed in
+        String body = asJsonString(testArticles.get(0)) + "\n\n" +
+                "{not json}\n" +
+                asJsonString(testArticles.get(1)) + "\n" +
+                asJsonString(testArticles.get(2));
+
+        String resultString = mockMVC.perform(post("/api/articles/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Ensure the valid articles were written and the malformed line was reported
+        ArticleIngestReportDto report = TestUtils.gson.fromJson(resultString, ArticleIngestReportDto.class);
+        assertEquals(4, report.getLines());
+        assertEquals(3, report.getInserted());
+        assertEquals(1, report.getFailed());
+        assertEquals(3, report.getErrors().getFirst().getLine());
+
+        assertEquals(testArticles.size(), articleRepository.count());
+        for (ArticleDto article : testArticles) {
+            ArticleDto writtenArticle = ArticleMapper.articleToDto(articleRepository.findByTitle(article.getTitle()));
+            assertThat(writtenArticle).isEqualTo(article);
+        }
+    }
+
+    /**
+     * Tests that the <code>streamArticles</code> method reports only the lines the database rejects
+     * when a chunk cannot be written, writing the rest of the chunk, and reports lines that are too
+     * long without reading them whole.
+     * This test is not transactional, as a failed chunk must roll back on its own.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    void streamArticlesFailures() throws Exception {
+        // The source is longer than its column, so the database rejects the second article
+        OffsetDateTime now = OffsetDateTime.now();
+        ArticleDto rejected = new ArticleDto(null, "rejected", "body", now, now, "source".repeat(100), "url", "image", Category.FOOD);
+        String body = asJsonString(testArticles.get(0)) + "\n" +
+                asJsonString(rejected) + "\n" +
+                asJsonString(testArticles.get(1)) + "\n" +
+                "x".repeat(1_048_577) + "\n" +
+                asJsonString(testArticles.get(2)) + "\n";
+
+        String resultString = mockMVC.perform(post("/api/articles/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Ensure only the rejected and oversized lines failed
+        ArticleIngestReportDto report = TestUtils.gson.fromJson(resultString, ArticleIngestReportDto.class);
+        assertEquals(5, report.getLines());
+        assertEquals(3, report.getInserted());
+        assertEquals(2, report.getFailed());
+        assertEquals(List.of(4L, 2L), report.getErrors().stream().map(ArticleIngestReportDto.LineError::getLine).toList());
+        assertThat(report.getErrors().getFirst().getMessage()).contains("longer than");
+
+        assertEquals(testArticles.size(), articleRepository.count());
+        assertNull(articleRepository.findByTitle(rejected.getTitle()));
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>streamArticles</code> method accepts a gzip-compressed body.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    @Transactional
+    void streamArticlesGzip() throws Exception {
+        // Compress one article per line
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            for (ArticleDto article : testArticles)
+                gzip.write((asJsonString(article) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        String resultString = mockMVC.perform(post("/api/articles/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(compressed.toByteArray()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        ArticleIngestReportDto report = TestUtils.gson.fromJson(resultString, ArticleIngestReportDto.class);
+        assertEquals(testArticles.size(), report.getInserted());
+        assertEquals(0, report.getFailed());
+        assertEquals(testArticles.size(), articleRepository.count());
+
+        // Ensure a body that is not actually compressed is rejected
+        mockMVC.perform(post("/api/articles/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(asJsonString(testArticles.getFirst())))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests that the <code>queueArticles</code> method accepts a batch immediately and that its
+     * status can be polled until the articles are written.
+     * <p>
+     * This test is not transactional, as the articles are written by a background thread.
+     * @throws Exception if there is an issue with a request
+     */
+    @Test
+    void queueArticles() throws Exception {
+        String location = mockMVC.perform(post("/api/articles")
+                .param("async", "")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(testArticles)))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        assertThat(location).startsWith("/api/articles/batches/");
+
+        // Ensure the batch was written
+        ArticleBatchStatusDto status = awaitBatch(location);
+        assertEquals(ArticleBatchStatusDto.State.DONE, status.getState());
+        assertEquals(testArticles.size(), status.getSize());
+        assertEquals(testArticles.size(), status.getInserted());
+        assertEquals(testArticles.size(), articleRepository.count());
+        for (ArticleDto article : testArticles)
+            assertEquals(article.getBody(), articleRepository.findByTitle(article.getTitle()).getBody());
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that a queued batch that cannot be written fails on its own, while the batches merged
+     * into the same write are written and report their real outcome.
+     * <p>
+     * A large batch is queued first, so the batches after it wait and are merged into one write.
+     * This test is not transactional, as the articles are written by a background thread.
+     * @throws Exception if there is an issue with a request
+     */
+    @Test
+    void queueArticlesFailure() throws Exception {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ArticleDto> large = new LinkedList<>();
+        for (int i = 0; i < ArticleService.WRITE_CHUNK_SIZE; ++i)
+            large.add(new ArticleDto(null, "large" + i, "body" + i, now, now, "source", "url", "image", Category.FOOD));
+
+        // The source is longer than its column, so the database rejects the poisoned batch
+        List<ArticleDto> poisoned = List.of(
+                new ArticleDto(null, "poisoned1", "body", now, now, "source", "url", "image", Category.FOOD),
+                new ArticleDto(null, "poisoned2", "body", now, now, "source".repeat(100), "url", "image", Category.FOOD));
+        List<String> locations = new LinkedList<>();
+        for (List<ArticleDto> batch : List.of(large, testArticles.subList(0, 2), poisoned, testArticles.subList(2, 3))) {
+            locations.add(mockMVC.perform(post("/api/articles")
+                    .param("async", "")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(batch)))
+                    .andExpect(status().isAccepted())
+                    .andReturn().getResponse().getHeader(HttpHeaders.LOCATION));
+        }
+
+        // Ensure only the poisoned batch failed, and the others count the articles they inserted
+        List<ArticleBatchStatusDto> statuses = new LinkedList<>();
+        for (String location : locations)
+            statuses.add(awaitBatch(location));
+        assertEquals(List.of(ArticleBatchStatusDto.State.DONE, ArticleBatchStatusDto.State.DONE,
+                        ArticleBatchStatusDto.State.FAILED, ArticleBatchStatusDto.State.DONE),
+                statuses.stream().map(ArticleBatchStatusDto::getState).toList());
+        assertEquals(List.of(large.size(), 2, 0, 1), statuses.stream().map(ArticleBatchStatusDto::getInserted).toList());
+        assertThat(statuses.get(2).getError()).isNotNull();
+
+        assertEquals(large.size() + testArticles.size(), articleRepository.count());
+        assertNull(articleRepository.findByTitle("poisoned1"));
+
+        // Clean up, as nothing here was rolled back
+        articleRepository.deleteAll();
+    }
+
+    /**
+     * Tests that the <code>getBatchStatus</code> method returns 404 for an unknown batch.
+     * @throws Exception if there is an issue with the request
+     */
+    @Test
+    void getBatchStatusUnknown() throws Exception {
+        mockMVC.perform(get("/api/articles/batches/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Polls the status of a queued batch until it is written or has failed.
+     * @param location the URL of the batch's status
+     * @return the last status of the batch
+     * @throws Exception if there is an issue with a request
+     */
+    private ArticleBatchStatusDto awaitBatch(String location) throws Exception {
+        ArticleBatchStatusDto status;
+        long deadline = System.currentTimeMillis() + 10_000;
+        do {
+            Thread.sleep(50);
+            String resultString = mockMVC.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            status = TestUtils.gson.fromJson(resultString, ArticleBatchStatusDto.class);
+        } while (status.getState() != ArticleBatchStatusDto.State.DONE
+                && status.getState() != ArticleBatchStatusDto.State.FAILED
+                && System.currentTimeMillis() < deadline);
+
+        return status;
+    }
 }
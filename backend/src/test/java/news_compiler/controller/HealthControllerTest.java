@@ -3,13 +3,17 @@ package news_compiler.controller;
 import news_compiler.BaseTest;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -17,6 +21,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability  // Metrics are only exported to Prometheus in tests when asked for
 class HealthControllerTest extends BaseTest {
 
     /** The mock MVC object for testing. */
@@ -30,4 +35,39 @@ class HealthControllerTest extends BaseTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string(containsString("pong")));
     }
-}
\ No newline at end of file
+
+    /** Tests that the `getArticleCacheStats` method reports the article cache's counters. */
+    @Test
+    void getArticleCacheStats() throws Exception {
+        this.mockMVC.perform(get("/api/health/cache/articles"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits").isNumber())
+                .andExpect(jsonPath("$.misses").isNumber())
+                .andExpect(jsonPath("$.evictions").isNumber())
+                .andExpect(jsonPath("$.maximumWeight").value(greaterThan(0)));
+    }
+
+    /**
+     * Tests that the Prometheus endpoint exposes request and repository latencies, the written
+     * articles, the connection pool and the JVM.
+     */
+    @Test
+    void getPrometheusMetrics() throws Exception {
+        // Make requests so that request and repository latencies are recorded
+        this.mockMVC.perform(get("/api/health/ping")).andExpect(status().isOk());
+        this.mockMVC.perform(get("/api/articles/0")).andExpect(status().isNotFound());
+
+        this.mockMVC.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(allOf(
+                        containsString("http_server_requests_seconds_bucket{"),
+                        containsString("uri=\"/api/health/ping\""),
+                        containsString("spring_data_repository_invocations_seconds_bucket{"),
+                        containsString("repository=\"ArticleRepository\""),
+                        containsString("articles_write_batch_size_bucket{"),
+                        containsString("articles_written_total{"),
+                        containsString("outcome=\"inserted\""),
+                        containsString("hikaricp_connections_pending{"),
+                        containsString("jvm_gc_memory_allocated_bytes_total{"))));
+    }
+}
@@ -0,0 +1,113 @@
+package news_compiler.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests encoding article bodies for storage and decoding them back with the
+ * <code>ArticleBodyCodec</code>.
+ */
+class ArticleBodyCodecTest {
+    /** A body long enough to be compressed, with the line breaks and accents of real articles */
+    private static final String LONG_BODY = ("The mayor said on Monday that the city would review the report. " +
+            "Officials did not immediately respond to a request for comment.\n\nCafé owners welcomed the " +
+            "decision, according to a statement released by the association. ").repeat(5);
+
+    /**
+     * Tests that bodies read back as they were written, whether or not they are compressed.
+     */
+    @Test
+    void roundTrip() {
+        for (String body : new String[] { LONG_BODY, "Short body", "", "日本語の記事 ".repeat(40) }) {
+            assertEquals(body, ArticleBodyCodec.decode(ArticleBodyCodec.encode(body, true)));
+            assertEquals(body, ArticleBodyCodec.decode(ArticleBodyCodec.encode(body, false)));
+        }
+
+        assertNull(ArticleBodyCodec.encode(null, true));
+        assertNull(ArticleBodyCodec.decode(null));
+    }
+
+    /**
+     * Tests that long bodies are compressed only when compression is enabled, and are stored as
+     * plain UTF-8 otherwise, as older versions stored them.
+     */
+    @Test
+    void compressLongBodies() {
+        byte[] plain = LONG_BODY.getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(plain, ArticleBodyCodec.encode(LONG_BODY, false));
+
+        byte[] compressed = ArticleBodyCodec.encode(LONG_BODY, true);
+        assertTrue(ArticleBodyCodec.isEncoded(compressed));
+        assertThat(compressed.length).isLessThan(plain.length / 2);
+
+        // Bodies stored before compression was enabled are still read
+        assertEquals(LONG_BODY, ArticleBodyCodec.decode(plain));
+    }
+
+    /**
+     * Tests that bodies too short to be worth compressing are stored as plain UTF-8.
+     */
+    @Test
+    void leaveShortBodiesPlain() {
+        String shortBody = "a".repeat(ArticleBodyCodec.MIN_COMPRESSED_LENGTH - 1);
+        assertArrayEquals(shortBody.getBytes(StandardCharsets.UTF_8), ArticleBodyCodec.encode(shortBody, true));
+        assertFalse(ArticleBodyCodec.isEncoded(ArticleBodyCodec.encode(shortBody, true)));
+    }
+
+    /**
+     * Tests that a body starting with a NUL character is stored with the plain format's header,
+     * so it is not mistaken for an encoded body.
+     */
+    @Test
+    void headerForLeadingNul() {
+        String body = "\0Body starting with NUL";
+        byte[] encoded = ArticleBodyCodec.encode(body, false);
+
+        assertTrue(ArticleBodyCodec.isEncoded(encoded));
+        assertEquals(0, encoded[0]);
+        assertEquals(0, encoded[1]);
+        assertEquals(body.length() + 2, encoded.length);
+        assertEquals(body, ArticleBodyCodec.decode(encoded));
+
+        // Long enough to compress, the body is compressed like any other
+        String longBody = "\0" + LONG_BODY;
+        assertEquals(longBody, ArticleBodyCodec.decode(ArticleBodyCodec.encode(longBody, true)));
+
+        // A single NUL has no room for a header, so is not taken for one
+        assertEquals("\0", ArticleBodyCodec.decode(new byte[] { 0 }));
+    }
+
+    /**
+     * Tests that bodies stored in an unknown format, or compressed and then cut short or damaged,
+     * are rejected rather than read as garbage.
+     */
+    @Test
+    void rejectBadBodies() {
+        byte[] unknownFormat = { 0, 99, 'a', 'b', 'c' };
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> ArticleBodyCodec.decode(unknownFormat));
+        assertThat(exception.getMessage()).contains("99");
+
+        byte[] compressed = ArticleBodyCodec.encode(LONG_BODY, true);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IllegalArgumentException.class, () -> ArticleBodyCodec.decode(truncated));
+
+        byte[] headerOnly = Arrays.copyOf(compressed, 2);
+        assertThrows(IllegalArgumentException.class, () -> ArticleBodyCodec.decode(headerOnly));
+
+        // Invalid block types make the data corrupt rather than short
+        byte[] corrupt = compressed.clone();
+        Arrays.fill(corrupt, 2, corrupt.length, (byte) 0xFF);
+        assertThrows(IllegalArgumentException.class, () -> ArticleBodyCodec.decode(corrupt));
+    }
+}
@@ -0,0 +1,202 @@
+package news_compiler.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import news_compiler.BaseTest;
+import news_compiler.entity.Article;
+import news_compiler.entity.ArticleBodyCodec;
+import news_compiler.entity.Category;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests migrating articles stored by older versions through the <code>ArticleMigrationService</code>:
+ * compressing bodies stored as plain text, and adding the unique key on titles.
+ * <p>
+ * The migration converts the body column to binary, so each test returns it to text, as
+ * Hibernate creates it, first and again afterwards for the other tests.
+ */
+@SpringBootTest
+class ArticleMigrationServiceTest extends BaseTest {
+    /** Number of articles with long bodies, more than the migration handles in one batch */
+    private static final int ARTICLES = 1200;
+
+    /** Number of articles compressed before the migration was interrupted, its first batch */
+    private static final int COMPRESSED_BEFORE = 500;
+
+    /** The service being tested */
+    @Autowired
+    private ArticleMigrationService articleMigrationService;
+
+    /** Factory owning the second-level cache */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Used to seed the table as older versions left it, and to read the stored bodies */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Empties the table and returns the body column to text. */
+    @BeforeEach
+    void setUp() {
+        restore();
+    }
+
+    /** Empties the table and returns the body column to text. */
+    @AfterEach
+    void tearDown() {
+        restore();
+    }
+
+    /**
+     * Tests that a migration interrupted after compressing its first batch carries on with the
+     * articles after it, leaving those already compressed and those too short to compress as they
+     * are.
+     */
+    @Test
+    void compressBodiesResumes() {
+        List<Object[]> rows = new LinkedList<>();
+        for (int i = 0; i < ARTICLES; ++i)
+            rows.add(row(i + 1L, body(i)));
+        rows.add(row(ARTICLES + 1L, "Short body"));
+        insert(rows);
+
+        // Leave the table as a migration stopped after its first batch would, with one of the
+        // compressed bodies damaged so that reading it again would fail
+        jdbcTemplate.execute("ALTER TABLE articles MODIFY body LONGBLOB");
+        List<Object[]> compressed = new LinkedList<>();
+        for (int i = 0; i < COMPRESSED_BEFORE; ++i)
+            compressed.add(new Object[] { ArticleBodyCodec.encode(body(i), true), i + 1L });
+        jdbcTemplate.batchUpdate("UPDATE articles SET body = ? WHERE id = ?", compressed);
+        byte[] damaged = { 0, 1, (byte) 0xFF, (byte) 0xFF };
+        jdbcTemplate.update("UPDATE articles SET body = ? WHERE id = ?", damaged, COMPRESSED_BEFORE);
+
+        articleMigrationService.compressBodies();
+
+        Map<Long, byte[]> stored = storedBodies();
+        assertArrayEquals(damaged, stored.get((long) COMPRESSED_BEFORE));
+        for (int i = 0; i < ARTICLES; ++i) {
+            if (i + 1 == COMPRESSED_BEFORE)
+                continue;
+
+            byte[] body = stored.get(i + 1L);
+            assertTrue(ArticleBodyCodec.isEncoded(body), "Article " + (i + 1) + " was not compressed");
+            assertEquals(body(i), ArticleBodyCodec.decode(body));
+        }
+
+        byte[] shortBody = stored.get(ARTICLES + 1L);
+        assertFalse(ArticleBodyCodec.isEncoded(shortBody));
+        assertEquals("Short body", ArticleBodyCodec.decode(shortBody));
+
+        // Nothing is left to compress, so running again changes nothing
+        articleMigrationService.compressBodies();
+        Map<Long, byte[]> again = storedBodies();
+        stored.forEach((id, body) -> assertArrayEquals(body, again.get(id)));
+    }
+
+    /**
+     * Tests that the unique key on titles, which is not mapped, is added to a table without one,
+     * and that a table holding duplicate titles is left without it rather than failing startup.
+     */
+    @Test
+    void addTitleKey() {
+        try {
+            titleKeys().forEach(key -> jdbcTemplate.execute("ALTER TABLE articles DROP INDEX `" + key + "`"));
+            insert(List.of(row(1L, "First body"), row(2L, "Second body")));
+            jdbcTemplate.update("UPDATE articles SET title = 'Same title'");
+
+            articleMigrationService.addTitleKey();
+            assertTrue(titleKeys().isEmpty());
+
+            jdbcTemplate.update("DELETE FROM articles WHERE id = 2");
+            articleMigrationService.addTitleKey();
+            assertEquals(List.of(ArticleMigrationService.TITLE_KEY), titleKeys());
+
+            // A table with the key, under any name, is left as it is
+            articleMigrationService.addTitleKey();
+            assertEquals(List.of(ArticleMigrationService.TITLE_KEY), titleKeys());
+        } finally {
+            if (titleKeys().isEmpty()) {
+                jdbcTemplate.execute("DELETE FROM articles");
+                articleMigrationService.addTitleKey();
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the unique keys on titles.
+     * @return the names of the keys
+     */
+    private List<String> titleKeys() {
+        return jdbcTemplate.queryForList("SELECT INDEX_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' AND NON_UNIQUE = 0 " +
+                "AND COLUMN_NAME = 'title'", String.class);
+    }
+
+    /**
+     * Returns the stored body of each article.
+     * @return the stored bodies by ID
+     */
+    private Map<Long, byte[]> storedBodies() {
+        Map<Long, byte[]> bodies = new HashMap<>();
+        jdbcTemplate.query("SELECT id, body FROM articles", (RowCallbackHandler) row ->
+                bodies.put(row.getLong(1), row.getBytes(2)));
+        return bodies;
+    }
+
+    /**
+     * Inserts articles with plain bodies, as stored before compression was enabled.
+     * @param rows the ID and body of each article, followed by its other columns
+     */
+    private void insert(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO articles (id, body, title, time_published, time_fetched, " +
+                "source, article_url, image_url, category) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Makes the row of an article.
+     * @param id the ID of the article
+     * @param body the body of the article
+     * @return the row, in the order of the columns inserted
+     */
+    private static Object[] row(long id, String body) {
+        Timestamp now = Timestamp.from(Instant.now());
+        return new Object[] { id, body, "Migrated " + id, now, now, "source", "https://example.com/" + id,
+                null, Category.WORLD_POLITICS.name() };
+    }
+
+    /**
+     * Creates a body long enough to be compressed, different for each article.
+     * @param index the index of the article
+     * @return the body
+     */
+    private static String body(int index) {
+        return ("Article " + index + " reports that officials did not immediately respond to a request " +
+                "for comment on Monday, according to a statement released by the city. ").repeat(3);
+    }
+
+    /**
+     * Empties the table and returns the body column to text.
+     */
+    private void restore() {
+        jdbcTemplate.execute("DELETE FROM articles");
+        jdbcTemplate.execute("ALTER TABLE articles MODIFY body LONGTEXT");
+        entityManagerFactory.getCache().evict(Article.class);
+    }
+}
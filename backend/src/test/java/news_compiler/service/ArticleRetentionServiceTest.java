@@ -0,0 +1,293 @@
+package news_compiler.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import news_compiler.ArticleTables;
+import news_compiler.BaseTest;
+import news_compiler.dto.ArticleDto;
+import news_compiler.entity.Article;
+import news_compiler.entity.Category;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests partitioning the <code>articles</code> table by month and removing the months past the
+ * maximum age, through the <code>ArticleRetentionService</code>.
+ * <p>
+ * The service partitions the table at startup, so each test returns it to its unpartitioned state
+ * first, and again afterwards for the other tests.
+ */
+@SpringBootTest(properties = {
+        "articles.retention.enabled=true",
+        "articles.retention.max-age=" + ArticleRetentionServiceTest.MAX_AGE
+})
+class ArticleRetentionServiceTest extends BaseTest {
+    /** How long articles are kept. Months ending at least this long ago are removed. */
+    static final String MAX_AGE = "P60D";
+
+    /** Name of each month's partition */
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    /** The service being tested */
+    @Autowired
+    private ArticleRetentionService articleRetentionService;
+
+    /** Service for Article entities */
+    @Autowired
+    private ArticleService articleService;
+
+    /** Index used to search articles */
+    @Autowired
+    private ArticleSearchIndex articleSearchIndex;
+
+    /** Service counting the recent articles in each category and from each source */
+    @Autowired
+    private ArticleFacetService articleFacetService;
+
+    /** Detector of articles nearly duplicating earlier ones */
+    @Autowired
+    private ArticleDuplicateDetector articleDuplicateDetector;
+
+    /** Service tracking the version of the article data */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** Factory owning the second-level cache */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Used to inspect the partitions and write around JPA */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Articles written before each test, fetched five and four months ago, which are past the
+     * maximum age, and a month ago and now, which are not.
+     */
+    private List<ArticleDto> testArticles;
+
+    /**
+     * Returns the table to its unpartitioned state, and writes the test articles.
+     */
+    @BeforeEach
+    void setUp() {
+        ArticleTables.restore(jdbcTemplate);
+        ReflectionTestUtils.setField(articleRetentionService, "mode", ArticleRetentionService.Mode.DROP);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        testArticles = articleService.writeArticles(List.of(
+                article("Aardvark", now.minusMonths(5)),
+                article("Bison", now.minusMonths(4)),
+                article("Camel", now.minusMonths(1)),
+                article("Dingo", now)
+        ));
+    }
+
+    /**
+     * Empties the table, returns it to its unpartitioned state, and rebuilds what was derived
+     * from it.
+     */
+    @AfterEach
+    void tearDown() {
+        ArticleTables.restore(jdbcTemplate);
+        entityManagerFactory.getCache().evict(Article.class);
+        articleSearchIndex.rebuild();
+        articleFacetService.rebuild();
+        articleDuplicateDetector.rebuild();
+    }
+
+    /**
+     * Tests that the table is partitioned by month, from the month of its earliest article to two
+     * months ahead, and that its titles are still held unique by the database.
+     */
+    @Test
+    void partition() {
+        // An article without a fetch time is given its publishing time
+        OffsetDateTime published = OffsetDateTime.now().minusMonths(6);
+        jdbcTemplate.update("INSERT INTO articles (id, title, time_published, time_fetched) VALUES (?, ?, ?, NULL)",
+                1_000_000L, "Unfetched", Timestamp.from(published.toInstant()));
+
+        articleRetentionService.partition();
+
+        // Ensure there is a partition for each month, bounded by the start of the next
+        List<String> expected = new LinkedList<>();
+        YearMonth last = YearMonth.now(ZoneOffset.UTC).plusMonths(2);
+        for (YearMonth month = YearMonth.from(published.atZoneSameInstant(ZoneOffset.UTC));
+                !month.isAfter(last); month = month.plusMonths(1)) {
+            expected.add(PARTITION_NAME.format(month) + " " +
+                    month.plusMonths(1).atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC));
+        }
+        expected.add("pfuture MAXVALUE");
+        assertEquals(expected, partitions());
+
+        // Ensure every article was kept, and partitioning again changes nothing
+        assertEquals(5, ArticleTables.count(jdbcTemplate, "articles"));
+        articleRetentionService.partition();
+        assertEquals(expected, partitions());
+
+        // Ensure a title differing only in case cannot be added for another article
+        assertEquals(5, ArticleTables.count(jdbcTemplate, ArticleRetentionService.TITLES_TABLE));
+        Article duplicate = new Article(2_000_000L, "AARDVARK", null, null, null, null, null, null, null);
+        assertThrows(DuplicateKeyException.class, () -> articleRetentionService.addTitles(List.of(duplicate)));
+
+        // Ensure articles are still inserted and updated by title once partitioned
+        ArticleWriteResult result = articleService.upsertArticles(List.of(
+                article("Emu", OffsetDateTime.now()),
+                article("aardvark", OffsetDateTime.now())
+        ));
+        assertEquals(1, result.count(ArticleWriteResult.Outcome.INSERTED));
+        assertEquals(1, result.count(ArticleWriteResult.Outcome.UPDATED));
+        assertEquals(6, ArticleTables.count(jdbcTemplate, ArticleRetentionService.TITLES_TABLE));
+    }
+
+    /**
+     * Tests that dropping the months past the maximum age removes their articles, their titles,
+     * and everything derived from them.
+     */
+    @Test
+    void enforceDrop() {
+        articleRetentionService.partition();
+        List<ArticleDto> expired = testArticles.subList(0, 2);
+        List<ArticleDto> kept = testArticles.subList(2, testArticles.size());
+
+        // Cache the expired articles, and add a recent article that is not counted yet
+        expired.forEach(article -> articleService.getArticleById(article.getId()));
+        assertTrue(entityManagerFactory.getCache().contains(Article.class, expired.getFirst().getId()));
+        jdbcTemplate.update("INSERT INTO articles (id, title, time_fetched, source, category) VALUES (?, ?, ?, ?, ?)",
+                1_000_000L, "Uncounted", Timestamp.from(OffsetDateTime.now().toInstant()), "uncounted",
+                Category.FOOD.name());
+        assertNull(articleFacetService.getFacets(ArticleFacetService.Window.DAY).getSources().get("uncounted"));
+        long version = dataVersionService.getVersion();
+
+        articleRetentionService.enforce();
+
+        // Ensure only the partitions of the expired months were dropped
+        List<String> partitions = partitions();
+        for (ArticleDto article : expired)
+            assertThat(partitions).noneMatch(partition -> partition.startsWith(partitionOf(article)));
+        for (ArticleDto article : kept)
+            assertThat(partitions).anyMatch(partition -> partition.startsWith(partitionOf(article)));
+        assertEquals(kept.size() + 1, ArticleTables.count(jdbcTemplate, "articles"));
+
+        // Ensure nothing derived from the expired articles is left
+        assertTrue(dataVersionService.getVersion() > version);
+        for (ArticleDto article : expired) {
+            assertFalse(entityManagerFactory.getCache().contains(Article.class, article.getId()));
+            assertTrue(search(article.getTitle()).isEmpty());
+        }
+        for (ArticleDto article : kept)
+            assertEquals(List.of(article.getId()), search(article.getTitle()));
+        assertEquals(1, articleFacetService.getFacets(ArticleFacetService.Window.DAY).getSources().get("uncounted"));
+
+        // Ensure the expired titles were released, and can be written again
+        assertEquals(kept.size(), ArticleTables.count(jdbcTemplate, ArticleRetentionService.TITLES_TABLE));
+        ArticleWriteResult result = articleService.upsertArticles(List.of(article("Aardvark", OffsetDateTime.now())));
+        assertEquals(1, result.count(ArticleWriteResult.Outcome.INSERTED));
+
+        // Ensure enforcing again changes nothing
+        version = dataVersionService.getVersion();
+        articleRetentionService.enforce();
+        assertEquals(partitions, partitions());
+        assertEquals(version, dataVersionService.getVersion());
+    }
+
+    /**
+     * Tests that archiving the months past the maximum age moves their articles into tables of
+     * their own, picking up where an earlier attempt stopped.
+     */
+    @Test
+    void enforceArchive() {
+        ReflectionTestUtils.setField(articleRetentionService, "mode", ArticleRetentionService.Mode.ARCHIVE);
+        articleRetentionService.partition();
+        ArticleDto first = testArticles.get(0), second = testArticles.get(1);
+
+        // Leave an archive table behind for the first month, as if creating it was all an earlier
+        // attempt did, and archive the second month without dropping its partition
+        jdbcTemplate.execute("CREATE TABLE " + archiveOf(first) + " LIKE articles");
+        jdbcTemplate.execute("CREATE TABLE " + archiveOf(second) + " LIKE articles");
+        jdbcTemplate.execute("ALTER TABLE " + archiveOf(second) + " REMOVE PARTITIONING");
+        jdbcTemplate.execute("ALTER TABLE articles EXCHANGE PARTITION " + partitionOf(second) +
+                " WITH TABLE " + archiveOf(second));
+
+        articleRetentionService.enforce();
+
+        // Ensure each expired article was moved to its month's table, and its partition dropped
+        for (ArticleDto article : List.of(first, second)) {
+            assertEquals(List.of(article.getId()),
+                    jdbcTemplate.queryForList("SELECT id FROM " + archiveOf(article), Long.class));
+            assertThat(partitions()).noneMatch(partition -> partition.startsWith(partitionOf(article)));
+            assertTrue(search(article.getTitle()).isEmpty());
+        }
+        assertEquals(2, ArticleTables.count(jdbcTemplate, "articles"));
+        assertEquals(2, ArticleTables.count(jdbcTemplate, ArticleRetentionService.TITLES_TABLE));
+    }
+
+    /**
+     * Creates an article to write.
+     * @param title the title of the article, also used as its body
+     * @param timeFetched the time the article was fetched
+     * @return the article
+     */
+    private static ArticleDto article(String title, OffsetDateTime timeFetched) {
+        return new ArticleDto(null, title, title + " body", timeFetched, timeFetched, "source", "url", "image",
+                Category.OTHER);
+    }
+
+    /**
+     * Returns the partitions of the table, in order.
+     * @return the name and upper bound of each partition
+     */
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT CONCAT(PARTITION_NAME, ' ', PARTITION_DESCRIPTION) " +
+                "FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'articles' " +
+                "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION", String.class);
+    }
+
+    /**
+     * Returns the name of the partition holding an article.
+     * @param article the article
+     * @return the name of its month's partition
+     */
+    private static String partitionOf(ArticleDto article) {
+        return PARTITION_NAME.format(article.getTimeFetched().atZoneSameInstant(ZoneOffset.UTC));
+    }
+
+    /**
+     * Returns the name of the table an article is archived in.
+     * @param article the article
+     * @return the name of its month's archive table
+     */
+    private static String archiveOf(ArticleDto article) {
+        return ArticleTables.archiveOf(YearMonth.from(article.getTimeFetched().atZoneSameInstant(ZoneOffset.UTC)));
+    }
+
+    /**
+     * Searches the index for the articles with a title.
+     * @param title the title, a single word
+     * @return the IDs of the matching articles
+     */
+    private List<Long> search(String title) {
+        return articleSearchIndex.search(ArticleSearchIndex.terms(title), 10).stream()
+                .map(ArticleSearchIndex.Match::articleId).toList();
+    }
+}
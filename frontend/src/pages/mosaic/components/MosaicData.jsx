@@ -1,6 +1,6 @@
 import {createContext, useContext, useEffect, useState} from "react";
 import PropTypes from 'prop-types';
-import {getRecentArticles} from "../../../services/ArticleService.js";
+import {getRecentArticles, subscribeToArticles} from "../../../services/ArticleService.js";
 
 // Create context with default values
 const MosaicDataContext = createContext({
@@ -10,6 +10,34 @@ const MosaicDataContext = createContext({
     refreshArticles: () => {},  // Unused at the time of writing, may use later
 });
 
+// Time of an article as a number, placing missing times last
+const timeOf = (time) => time == null ? -Infinity : new Date(time).getTime();
+
+// Orders articles as the backend does: most recently published first, then most recently fetched
+const compareArticles = (a, b) =>
+    (timeOf(b.timePublished) - timeOf(a.timePublished)) ||
+    (timeOf(b.timeFetched) - timeOf(a.timeFetched)) ||
+    (b.id - a.id);
+
+// How long after being fetched an article stays, matching the backend's recent articles
+const RECENT_MILLIS = 24 * 60 * 60 * 1000;
+
+// Replaces the articles that were updated and adds the new ones, keeping the order and dropping
+// those fetched too long ago
+const mergeArticles = (current, written) => {
+    const writtenIds = new Set(written.map((article) => article.id));
+    const since = Date.now() - RECENT_MILLIS;
+    return [...written, ...current.filter((article) => !writtenIds.has(article.id))]
+        .filter((article) => timeOf(article.timeFetched) >= since)
+        .sort(compareArticles);
+};
+
+// Drops the articles that have left the recent articles
+const removeArticles = (current, removed) => {
+    const removedIds = new Set(removed);
+    return current.filter((article) => !removedIds.has(article.id));
+};
+
 // Custom hook to use the mosaic data context
 export const useMosaicData = () => useContext(MosaicDataContext);
 
@@ -38,9 +66,13 @@ export const MosaicDataProvider = ({children}) => {
         }
     };
 
-    // Fetch articles on the initial mount
+    // Fetch articles on the initial mount, then follow the articles written since
     useEffect(() => {
         fetchArticles();
+        return subscribeToArticles(
+            (written) => setArticles((current) => mergeArticles(current, written)),
+            (removed) => setArticles((current) => removeArticles(current, removed)),
+            fetchArticles);
     }, []);
 
     // Value object to be provided by the context
@@ -0,0 +1,171 @@
+/**
+ * Media type of the compact binary encoding of articles.
+ * @type {string}
+ */
+export const CBOR = 'application/cbor';
+
+/**
+ * Fields of an article, in the order they are sent in CBOR. Fields may only be appended.
+ * @type {string[]}
+ */
+const ARTICLE_FIELDS = [
+    'id', 'title', 'body', 'timePublished', 'timeFetched', 'source', 'articleUrl', 'imageUrl', 'category'];
+
+/**
+ * Categories by ordinal, in the order of the backend's `Category` enum.
+ * @type {string[]}
+ */
+const CATEGORIES = [
+    'UNITED_STATES_POLITICS', 'WORLD_POLITICS', 'SCIENCE', 'TECHNOLOGY', 'SPORTS', 'ENTERTAINMENT',
+    'BUSINESS', 'HEALTH', 'EDUCATION', 'ENVIRONMENT', 'TRAVEL', 'FOOD', 'LIFESTYLE', 'OPINION', 'OTHER'];
+
+/** Marks the end of an item of indefinite length. */
+const BREAK = Symbol('break');
+
+/** Decodes the text strings, which are UTF-8. */
+const textDecoder = new TextDecoder();
+
+/**
+ * Decodes a single CBOR item, as sent by the backend: integers, floats, strings, arrays, maps,
+ * booleans and null. Tags are skipped, keeping the item they tag.
+ * @param {ArrayBuffer} buffer - The encoded item.
+ * @returns {*} The decoded item, with maps as plain objects.
+ */
+export const decodeCbor = (buffer) => {
+    const view = new DataView(buffer);
+    const bytes = new Uint8Array(buffer);
+    let offset = 0;
+
+    // Reads the argument following an initial byte, which is a length, count or value
+    const readArgument = (info) => {
+        if (info < 24)
+            return info;
+
+        let value;
+        switch (info) {
+            case 24: value = view.getUint8(offset); offset += 1; break;
+            case 25: value = view.getUint16(offset); offset += 2; break;
+            case 26: value = view.getUint32(offset); offset += 4; break;
+            case 27: value = Number(view.getBigUint64(offset)); offset += 8; break;
+            case 31: return -1;  // Indefinite length
+            default: throw new Error(`Invalid CBOR argument ${info} at ${offset}`);
+        }
+        return value;
+    };
+
+    // Reads the chunks of a string of indefinite length
+    const readChunks = (major) => {
+        const chunks = [];
+        for (let chunk = readItem(); chunk !== BREAK; chunk = readItem()) {
+            chunks.push(chunk);
+        }
+        return major === 3 ? chunks.join('') : new Uint8Array(chunks.flatMap((chunk) => [...chunk]));
+    };
+
+    const readItem = () => {
+        const initial = view.getUint8(offset++);
+        const major = initial >> 5;
+        const info = initial & 0x1f;
+
+        if (major === 7) {
+            switch (info) {
+                case 20: return false;
+                case 21: return true;
+                case 22: return null;
+                case 23: return undefined;
+                case 25: {
+                    // Half-precision float
+                    const half = view.getUint16(offset);
+                    offset += 2;
+                    const exponent = (half >> 10) & 0x1f;
+                    const fraction = half & 0x3ff;
+                    const sign = half & 0x8000 ? -1 : 1;
+                    if (exponent === 0)
+                        return sign * fraction * 2 ** -24;
+                    if (exponent === 31)
+                        return fraction ? NaN : sign * Infinity;
+                    return sign * (1 + fraction / 1024) * 2 ** (exponent - 15);
+                }
+                case 26: offset += 4; return view.getFloat32(offset - 4);
+                case 27: offset += 8; return view.getFloat64(offset - 8);
+                case 31: return BREAK;
+                default: throw new Error(`Unsupported CBOR simple value ${info} at ${offset - 1}`);
+            }
+        }
+
+        const argument = readArgument(info);
+        switch (major) {
+            case 0: return argument;
+            case 1: return -1 - argument;
+            case 2:
+            case 3: {
+                if (argument < 0)
+                    return readChunks(major);
+                const chunk = bytes.subarray(offset, offset + argument);
+                offset += argument;
+                return major === 3 ? textDecoder.decode(chunk) : chunk;
+            }
+            case 4: {
+                const array = argument < 0 ? [] : new Array(argument);
+                if (argument < 0) {
+                    for (let item = readItem(); item !== BREAK; item = readItem()) {
+                        array.push(item);
+                    }
+                } else {
+                    for (let i = 0; i < argument; ++i) {
+                        array[i] = readItem();
+                    }
+                }
+                return array;
+            }
+            case 5: {
+                const map = {};
+                for (let i = 0; argument < 0 || i < argument; ++i) {
+                    const key = readItem();
+                    if (key === BREAK)
+                        break;
+                    map[key] = readItem();
+                }
+                return map;
+            }
+            default:
+                // Tags only annotate the item following them
+                return readItem();
+        }
+    };
+
+    return readItem();
+};
+
+/**
+ * Turns an article sent as an array of its fields back into an object.
+ * Times stay as epoch milliseconds, which `new Date()` accepts as readily as the JSON strings, and
+ * the category ordinal is turned back into its name.
+ * @param {Array} fields - The fields of the article, in the order of {@link ARTICLE_FIELDS}.
+ * @returns {Object} The article, with the same properties as in JSON.
+ */
+const toArticle = (fields) => {
+    const article = {};
+    for (let i = 0; i < ARTICLE_FIELDS.length; ++i) {
+        article[ARTICLE_FIELDS[i]] = fields[i];
+    }
+    article.category = article.category == null ? null : CATEGORIES[article.category];
+    return article;
+};
+
+/**
+ * Decodes a list of articles sent as CBOR.
+ * @param {ArrayBuffer} buffer - The encoded list.
+ * @returns {Object[]} The articles.
+ */
+export const decodeArticles = (buffer) => decodeCbor(buffer).map(toArticle);
+
+/**
+ * Decodes a page of articles sent as CBOR.
+ * @param {ArrayBuffer} buffer - The encoded page.
+ * @returns {{articles: Object[], nextCursor: String|null}} The page.
+ */
+export const decodeArticlePage = (buffer) => {
+    const page = decodeCbor(buffer);
+    return {...page, articles: page.articles.map(toArticle)};
+};
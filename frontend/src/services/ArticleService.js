@@ -1,11 +1,40 @@
 import axios from 'axios';
+import {CBOR, decodeArticlePage, decodeArticles} from './ArticleDecoder.js';
 
 const REST_API_BASE_URL = `${import.meta.env.VITE_API_URL}/articles`;
 
+/**
+ * Whether article lists are requested in the compact binary encoding rather than JSON, unless
+ * chosen for a call. Enabled with `VITE_ARTICLE_FORMAT=cbor`.
+ * @type {boolean}
+ */
+const BINARY_BY_DEFAULT = import.meta.env.VITE_ARTICLE_FORMAT === 'cbor';
+
+/**
+ * Returns the request options asking for CBOR, and decoding it into the same shape as JSON.
+ * Responses the backend still sends as JSON, such as errors, are parsed as JSON.
+ * @param {function(ArrayBuffer): *} decode - Decodes the CBOR response body.
+ * @returns {Object} The options to pass to axios.
+ */
+const binaryOptions = (decode) => ({
+    responseType: 'arraybuffer',
+    headers: {Accept: `${CBOR}, application/json;q=0.5`},
+    transformResponse: (data, headers) => {
+        if (String(headers['content-type']).startsWith(CBOR))
+            return decode(data);
+        const text = new TextDecoder().decode(data);
+        return text ? JSON.parse(text) : text;
+    },
+});
+
 /**
  * Retrieves articles fetched within the last 24-hours.
  * Articles will be ordered by the time at which they were published or edited. If the article's
  * publish/edit time is not available, it will be placed at the end of the list.
+ *
+ * With `binary`, the articles are sent as CBOR, roughly half the size of JSON before compression,
+ * and their times are epoch milliseconds rather than ISO strings. Both are accepted by `new Date()`.
+ * @param {{binary: Boolean}} [options] - Whether to request the binary encoding.
  * @returns {Promise<axios.AxiosResponse<
  * {
  *     articleUrl: String,
@@ -13,13 +42,41 @@ const REST_API_BASE_URL = `${import.meta.env.VITE_API_URL}/articles`;
  *     id: BigInt,
  *     imageUrl: String,
  *     source: String,
- *     timeFetched: String,
- *     timePublished: String,
+ *     timeFetched: String|Number,
+ *     timePublished: String|Number,
  *     title: String,
  * }[], status: Number>>}
  */
-export const getRecentArticles = () => axios.get(
-    `${REST_API_BASE_URL}/recent/lite`);
+export const getRecentArticles = ({binary = BINARY_BY_DEFAULT} = {}) => axios.get(
+    `${REST_API_BASE_URL}/recent/lite`, binary ? binaryOptions(decodeArticles) : undefined);
+
+/**
+ * Retrieves one page of the articles fetched within the last 24-hours.
+ * Pages are in the same order as {@link getRecentArticles}. Pass the `nextCursor` of a page to
+ * retrieve the page after it; the last page has a `nextCursor` of `null`.
+ * @param {Number} limit - The maximum number of articles on the page.
+ * @param {String|null} cursor - The cursor returned with the previous page, or `null` for the first.
+ * @param {{binary: Boolean}} [options] - Whether to request the binary encoding, as for
+ * {@link getRecentArticles}.
+ * @returns {Promise<axios.AxiosResponse<{
+ *     articles: {
+ *         articleUrl: String,
+ *         category: String,
+ *         id: BigInt,
+ *         imageUrl: String,
+ *         source: String,
+ *         timeFetched: String|Number,
+ *         timePublished: String|Number,
+ *         title: String,
+ *     }[],
+ *     nextCursor: String|null,
+ * }, status: Number>>}
+ */
+export const getRecentArticlesPage = (limit, cursor = null, {binary = BINARY_BY_DEFAULT} = {}) => axios.get(
+    `${REST_API_BASE_URL}/recent/lite`, {
+        params: cursor ? {limit, cursor} : {limit},
+        ...(binary ? binaryOptions(decodeArticlePage) : {}),
+    });
 
 /**
  * Retrieves an article by its ID.
@@ -38,3 +95,22 @@ export const getRecentArticles = () => axios.get(
  */
 export const getArticleById = (id) => axios.get(
     `${REST_API_BASE_URL}/${id}`);
+
+/**
+ * Subscribes to the articles inserted or updated from now on, pushed by the backend as they are
+ * written. Pushed articles have no body, as in {@link getRecentArticles}. Articles updated into
+ * near-duplicates of others leave the recent articles, and their IDs are passed to `onRemoved`.
+ * The browser reconnects by itself and is sent the articles it missed meanwhile, unless it missed
+ * too many, in which case `onResync` is called and the recent articles should be retrieved afresh.
+ * @param {function(Object[]): void} onArticles - Called with each list of new or updated articles.
+ * @param {function(BigInt[]): void} onRemoved - Called with each list of IDs of articles to drop.
+ * @param {function(): void} onResync - Called when articles may have been missed.
+ * @returns {function(): void} Ends the subscription.
+ */
+export const subscribeToArticles = (onArticles, onRemoved, onResync) => {
+    const source = new EventSource(`${REST_API_BASE_URL}/events`);
+    source.addEventListener('articles', (event) => onArticles(JSON.parse(event.data)));
+    source.addEventListener('articles-removed', (event) => onRemoved(JSON.parse(event.data)));
+    source.addEventListener('resync', () => onResync());
+    return () => source.close();
+};